@@ -15,4 +15,10 @@ ON CONFLICT (id) DO NOTHING;
 -- Crear organización por defecto
 INSERT INTO organization (id, name, description, active, created_at, updated_at) VALUES 
 (1, 'PYMES Demo', 'Organización de demostración', true, NOW(), NOW())
-ON CONFLICT (id) DO NOTHING;
\ No newline at end of file
+ON CONFLICT (id) DO NOTHING;
+
+-- Secuencias de ventas (allocationSize=50 en las entidades). Si una tabla ya
+-- tiene ventas, el backend adelanta la secuencia al arrancar (DatabaseMigration).
+CREATE SEQUENCE IF NOT EXISTS sale_order_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS sale_order_detail_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS sale_order_tax_seq START WITH 1 INCREMENT BY 50;
\ No newline at end of file
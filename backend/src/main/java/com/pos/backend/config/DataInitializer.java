@@ -28,8 +28,8 @@ public class DataInitializer implements CommandLineRunner {
     
     @Override
     public void run(String... args) throws Exception {
-        initializeRoles();
         initializeOrganization();
+        initializeRoles();
         initializeUsers();
         System.out.println("DataInitializer ejecutado - datos base creados");
     }
@@ -38,12 +38,14 @@ public class DataInitializer implements CommandLineRunner {
         if (roleRepository.count() == 0) {
             Role adminRole = new Role();
             adminRole.setId(1);
+            adminRole.setOrganizationId(1);
             adminRole.setName("ADMIN");
             adminRole.setDescription("Administrador del sistema");
             roleRepository.save(adminRole);
             
             Role vendedorRole = new Role();
             vendedorRole.setId(2);
+            vendedorRole.setOrganizationId(1);
             vendedorRole.setName("VENDEDOR");
             vendedorRole.setDescription("Vendedor del sistema");
             roleRepository.save(vendedorRole);
@@ -58,7 +60,7 @@ public class DataInitializer implements CommandLineRunner {
             org.setId(1);
             org.setName("PYMES Demo");
             org.setDescription("Organización de demostración");
-            org.setActive(true);
+            org.setActivo(true);
             organizationRepository.save(org);
             
             System.out.println("Organización creada: PYMES Demo");
@@ -72,10 +74,13 @@ public class DataInitializer implements CommandLineRunner {
             
             if (adminRole != null) {
                 Usuario admin = new Usuario();
+                admin.setOrganizationId(1);
                 admin.setUsername("admin");
+                admin.setNombre("Administrador");
+                admin.setApellido("Sistema");
                 admin.setEmail("nuevouser@pos.com");
                 admin.setPassword(passwordEncoder.encode("password123"));
-                admin.setActive(true);
+                admin.setActivo(true);
                 admin.setRole(adminRole);
                 usuarioRepository.save(admin);
                 
@@ -84,10 +89,13 @@ public class DataInitializer implements CommandLineRunner {
             
             if (vendedorRole != null) {
                 Usuario vendedor = new Usuario();
+                vendedor.setOrganizationId(1);
                 vendedor.setUsername("vendedor");
+                vendedor.setNombre("Vendedor");
+                vendedor.setApellido("Demo");
                 vendedor.setEmail("vendedor@pos.com");
                 vendedor.setPassword(passwordEncoder.encode("password123"));
-                vendedor.setActive(true);
+                vendedor.setActivo(true);
                 vendedor.setRole(vendedorRole);
                 usuarioRepository.save(vendedor);
                 
@@ -0,0 +1,126 @@
+package com.pos.backend.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cambios de esquema que ddl-auto=update no puede aplicar por sí solo en una
+ * base con datos. Cada paso revisa si ya se aplicó, así que se ejecuta en
+ * cada arranque antes que DataInitializer.
+ */
+@Component
+@Order(0)
+public class DatabaseMigration implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseMigration.class);
+
+    static final String CORRELATIVE_CONSTRAINT = "uk_sale_order_correlative";
+
+    // allocationSize de las secuencias de ventas
+    private static final int ALLOCATION_SIZE = 50;
+
+    // Secuencia y tabla cuyos ids entrega
+    private static final String[][] SEQUENCES = {
+        {"sale_order_seq", "SALE_Order"},
+        {"sale_order_detail_seq", "SALE_Order_Detail"},
+        {"sale_order_tax_seq", "SALE_Order_Tax"}
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void run(String... args) {
+        try {
+            alignSequences();
+        } catch (Exception e) {
+            log.error("✗ No se pudieron alinear las secuencias de ventas: {}", e.getMessage(), e);
+        }
+        try {
+            addCorrelativeConstraint();
+        } catch (Exception e) {
+            log.error("✗ No se pudo crear la restricción {}: {}", CORRELATIVE_CONSTRAINT, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adelanta las secuencias de ventas que quedaron detrás del id más alto de
+     * su tabla. Pasa cuando ddl-auto=update crea la secuencia en 1 sobre una
+     * tabla que ya tenía ventas con ids de la estrategia anterior: las
+     * siguientes ventas chocarían con la llave primaria.
+     *
+     * Hibernate toma el valor de la secuencia como el último id de un bloque
+     * de ALLOCATION_SIZE, así que el bloque siguiente debe empezar después del
+     * id más alto. Consultar el valor gasta un bloque, sin otro efecto.
+     */
+    void alignSequences() {
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        for (String[] sequence : SEQUENCES) {
+            String name = sequence[0];
+            String table = sequence[1];
+            Long next = jdbcTemplate.queryForObject(dialect.getSequenceSupport().getSequenceNextValString(name), Long.class);
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            if (next - ALLOCATION_SIZE < maxId) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + name + " RESTART WITH " + (maxId + ALLOCATION_SIZE));
+                log.warn("⚠ Secuencia {} detrás del id más alto de {} ({}): reiniciada en {}",
+                         name, table, maxId, maxId + ALLOCATION_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Crea la restricción única (sale_point_document_type_id, document_number)
+     * de SALE_Order. Los correlativos ya emitidos no se cambian: si hay ventas
+     * con el mismo correlativo se listan en el log y la restricción no se crea,
+     * hasta que se corrijan a mano. El siguiente arranque vuelve a intentarlo.
+     *
+     * @return true si la restricción existe al terminar
+     */
+    boolean addCorrelativeConstraint() {
+        if (constraintExists(CORRELATIVE_CONSTRAINT)) {
+            return true;
+        }
+        log.info("▶ Creando restricción {} en SALE_Order", CORRELATIVE_CONSTRAINT);
+
+        List<Map<String, Object>> duplicates = jdbcTemplate.queryForList(
+            "SELECT so.id, so.sale_point_document_type_id, so.document_number FROM SALE_Order so " +
+            "WHERE EXISTS (SELECT 1 FROM SALE_Order o WHERE o.sale_point_document_type_id = so.sale_point_document_type_id " +
+            "AND o.document_number = so.document_number AND o.id <> so.id) " +
+            "ORDER BY so.sale_point_document_type_id, so.document_number, so.id");
+        if (!duplicates.isEmpty()) {
+            for (Map<String, Object> duplicate : duplicates) {
+                log.error("✗ Venta {} con correlativo duplicado {} en configuración {}",
+                          duplicate.get("id"), duplicate.get("document_number"), duplicate.get("sale_point_document_type_id"));
+            }
+            log.error("✗ Restricción {} no creada: {} ventas comparten correlativo y deben corregirse a mano",
+                      CORRELATIVE_CONSTRAINT, duplicates.size());
+            return false;
+        }
+
+        jdbcTemplate.execute("ALTER TABLE SALE_Order ADD CONSTRAINT " + CORRELATIVE_CONSTRAINT +
+                             " UNIQUE (sale_point_document_type_id, document_number)");
+        log.info("✓ Restricción {} creada", CORRELATIVE_CONSTRAINT);
+        return true;
+    }
+
+    private boolean constraintExists(String name) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.table_constraints WHERE lower(constraint_name) = ?",
+            Integer.class, name);
+        return count != null && count > 0;
+    }
+}
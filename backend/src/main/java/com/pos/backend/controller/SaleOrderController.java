@@ -3,6 +3,8 @@ package com.pos.backend.controller;
 import com.pos.backend.entity.SaleOrder;
 import com.pos.backend.service.SaleOrderService;
 import com.pos.backend.dto.SaleOrderRequest;
+import com.pos.backend.dto.SaleOrderImportResult;
+import com.pos.backend.exception.IdempotencyKeyMismatchException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -32,6 +34,12 @@ public class SaleOrderController {
 
     private static final Logger log = LoggerFactory.getLogger(SaleOrderController.class);
 
+    // Máximo de ventas por importación
+    private static final int MAX_IMPORT_SIZE = 1000;
+
+    // Largo máximo de la clave Idempotency-Key (columna idempotency_key)
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
     @Autowired
     private SaleOrderService saleOrderService;
 
@@ -84,13 +92,20 @@ public class SaleOrderController {
      * 6. Actualización de inventario
      * 7. Incremento de correlativo
      * 
+     * Si el terminal envía el header Idempotency-Key y el mismo usuario ya creó
+     * una venta con esa clave, se responde con esa venta sin volver a crearla;
+     * así un reintento por timeout no duplica la venta ni consume otro
+     * correlativo. Si la clave se reutiliza con otra venta se responde 422.
+     * 
      * @param request Datos de la venta incluyendo header y detalles
      * @param authorization Token JWT para validación de permisos
+     * @param idempotencyKey Clave única generada por el terminal para esta venta (opcional)
      * @return Orden de venta creada con todos los datos fiscales
      */
     @PostMapping
     public ResponseEntity<?> createSaleOrder(@Valid @RequestBody SaleOrderRequest request,
-                                           @RequestHeader(value = "Authorization", required = false) String authorization) {
+                                           @RequestHeader(value = "Authorization", required = false) String authorization,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         log.info("=================== INICIO API CREAR VENTA ===================");
         log.info("POST /api/sale-orders - Cliente: {}, Punto Venta: {}, Documento: {}", 
                  request.getClientId(), request.getSalePointId(), request.getDocumentTypeId());
@@ -102,22 +117,53 @@ public class SaleOrderController {
                 userToken = authorization.substring(7);
             }
 
-            // Crear la orden de venta con todas las validaciones
-            SaleOrder createdSaleOrder = saleOrderService.createSaleOrder(request, userToken);
+            // Reintento de una venta ya creada: se responde con la venta original
+            if (idempotencyKey == null) {
+                idempotencyKey = request.getIdempotencyKey();
+            }
+            if (idempotencyKey != null && idempotencyKey.isBlank()) {
+                idempotencyKey = null;
+            }
+            if (idempotencyKey != null) {
+                if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                    throw new IllegalArgumentException(
+                        "La clave Idempotency-Key debe ser máximo " + MAX_IDEMPOTENCY_KEY_LENGTH + " caracteres");
+                }
+                Optional<SaleOrder> existing = saleOrderService.findByIdempotencyKey(idempotencyKey, request, userToken);
+                if (existing.isPresent()) {
+                    return replayedSaleOrder(idempotencyKey, existing.get());
+                }
+            }
 
-            // Respuesta exitosa con datos completos
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Venta creada exitosamente");
-            response.put("data", createdSaleOrder);
-            response.put("document_number", createdSaleOrder.getDocumentNumber());
-            response.put("total", createdSaleOrder.getSalesTotal());
+            // Crear la orden de venta con todas las validaciones
+            SaleOrder createdSaleOrder;
+            try {
+                createdSaleOrder = saleOrderService.createSaleOrder(request, userToken, idempotencyKey);
+            } catch (RuntimeException e) {
+                // Un intento simultáneo con la misma clave pudo guardarse primero (columna única)
+                Optional<SaleOrder> existing = idempotencyKey != null
+                    ? saleOrderService.findByIdempotencyKey(idempotencyKey, request, userToken) : Optional.empty();
+                if (existing.isPresent()) {
+                    return replayedSaleOrder(idempotencyKey, existing.get());
+                }
+                throw e;
+            }
 
             log.info("✓ API Crear Venta exitosa - ID: {}, Documento: {}, Total: ${}", 
                      createdSaleOrder.getId(), createdSaleOrder.getDocumentNumber(), createdSaleOrder.getSalesTotal());
             log.info("=================== FIN API CREAR VENTA ===================");
 
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return ResponseEntity.status(HttpStatus.CREATED).body(saleOrderResponse(createdSaleOrder));
+
+        } catch (IdempotencyKeyMismatchException e) {
+            log.warn("⚠ Idempotency-Key reutilizada con otra venta: {}", e.getMessage());
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "IDEMPOTENCY_KEY_MISMATCH");
+            errorResponse.put("message", e.getMessage());
+
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(errorResponse);
 
         } catch (IllegalArgumentException e) {
             log.warn("⚠ Error de validación en crear venta: {}", e.getMessage());
@@ -141,6 +187,103 @@ public class SaleOrderController {
         }
     }
 
+    /**
+     * Respuesta exitosa con datos completos de la venta
+     */
+    private Map<String, Object> saleOrderResponse(SaleOrder saleOrder) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Venta creada exitosamente");
+        response.put("data", saleOrder);
+        response.put("document_number", saleOrder.getDocumentNumber());
+        response.put("total", saleOrder.getSalesTotal());
+        return response;
+    }
+
+    /**
+     * Misma respuesta que al crear la venta, marcada con Idempotent-Replayed
+     */
+    private ResponseEntity<?> replayedSaleOrder(String idempotencyKey, SaleOrder saleOrder) {
+        log.info("↺ Reintento con Idempotency-Key {} - se devuelve la venta ID: {}, Documento: {}",
+                 idempotencyKey, saleOrder.getId(), saleOrder.getDocumentNumber());
+        log.info("=================== FIN API CREAR VENTA ===================");
+        return ResponseEntity.status(HttpStatus.CREATED)
+            .header("Idempotent-Replayed", "true")
+            .body(saleOrderResponse(saleOrder));
+    }
+
+    /**
+     * Importa en lote las ventas registradas por un terminal sin conexión
+     * 
+     * Cada venta se valida y se guarda de forma independiente: el error de una
+     * no impide que se guarden las demás. Los correlativos se asignan en el
+     * orden recibido.
+     * 
+     * Si el terminal reenvía el lote (por ejemplo tras un timeout), cada venta
+     * con idempotency_key que ya se guardó se informa con replayed = true y la
+     * venta original, sin crearla de nuevo.
+     * 
+     * @param requests Ventas en el orden en que se registraron
+     * @param authorization Token JWT del usuario que sincroniza
+     * @return Resultado de cada venta (index, success, sale_order_id, document_number, replayed o message)
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importSaleOrders(@RequestBody List<SaleOrderRequest> requests,
+                                              @RequestHeader(value = "Authorization", required = false) String authorization) {
+        log.info("POST /api/sale-orders/import - {} ventas", requests.size());
+
+        if (requests.isEmpty() || requests.size() > MAX_IMPORT_SIZE) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "VALIDATION_ERROR");
+            errorResponse.put("message", "La importación debe tener entre 1 y " + MAX_IMPORT_SIZE + " ventas");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        }
+
+        try {
+            String userToken = null;
+            if (authorization != null && authorization.startsWith("Bearer ")) {
+                userToken = authorization.substring(7);
+            }
+
+            List<SaleOrderImportResult> results = saleOrderService.importSaleOrders(requests, userToken);
+            long replayed = results.stream().filter(result -> Boolean.TRUE.equals(result.getReplayed())).count();
+            long created = results.stream().filter(SaleOrderImportResult::getSuccess).count() - replayed;
+            long rejected = results.size() - created - replayed;
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", rejected == 0);
+            response.put("message", "Ventas importadas: " + (created + replayed) + " de " + results.size());
+            response.put("created", created);
+            response.put("replayed", replayed);
+            response.put("rejected", rejected);
+            response.put("results", results);
+
+            log.info("✓ API Importar Ventas - Creadas: {}, Reintentos: {}, Rechazadas: {}", created, replayed, rejected);
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠ Error de validación en importar ventas: {}", e.getMessage());
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "VALIDATION_ERROR");
+            errorResponse.put("message", e.getMessage());
+
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+
+        } catch (Exception e) {
+            log.error("✗ Error interno al importar ventas: {}", e.getMessage(), e);
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "INTERNAL_ERROR");
+            errorResponse.put("message", "Error interno del servidor al importar las ventas");
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
     /**
      * Actualiza una orden de venta existente
      */
@@ -0,0 +1,82 @@
+package com.pos.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+
+/**
+ * Resultado de una venta dentro de una importación en lote
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SaleOrderImportResult {
+
+    @JsonProperty("index")
+    private Integer index; // Posición de la venta en el lote recibido
+
+    @JsonProperty("success")
+    private Boolean success;
+
+    @JsonProperty("sale_order_id")
+    private Integer saleOrderId;
+
+    @JsonProperty("document_number")
+    private Integer documentNumber;
+
+    @JsonProperty("total")
+    private BigDecimal total;
+
+    @JsonProperty("replayed")
+    private Boolean replayed; // La venta ya existía con la misma idempotency_key
+
+    @JsonProperty("message")
+    private String message; // Motivo del rechazo
+
+    // Constructor vacío
+    public SaleOrderImportResult() {}
+
+    public static SaleOrderImportResult created(Integer index, Integer saleOrderId, Integer documentNumber, BigDecimal total) {
+        SaleOrderImportResult result = new SaleOrderImportResult();
+        result.index = index;
+        result.success = true;
+        result.saleOrderId = saleOrderId;
+        result.documentNumber = documentNumber;
+        result.total = total;
+        return result;
+    }
+
+    public static SaleOrderImportResult replayed(Integer index, Integer saleOrderId, Integer documentNumber, BigDecimal total) {
+        SaleOrderImportResult result = created(index, saleOrderId, documentNumber, total);
+        result.replayed = true;
+        return result;
+    }
+
+    public static SaleOrderImportResult rejected(Integer index, String message) {
+        SaleOrderImportResult result = new SaleOrderImportResult();
+        result.index = index;
+        result.success = false;
+        result.message = message;
+        return result;
+    }
+
+    // Getters y Setters
+    public Integer getIndex() { return index; }
+    public void setIndex(Integer index) { this.index = index; }
+
+    public Boolean getSuccess() { return success; }
+    public void setSuccess(Boolean success) { this.success = success; }
+
+    public Integer getSaleOrderId() { return saleOrderId; }
+    public void setSaleOrderId(Integer saleOrderId) { this.saleOrderId = saleOrderId; }
+
+    public Integer getDocumentNumber() { return documentNumber; }
+    public void setDocumentNumber(Integer documentNumber) { this.documentNumber = documentNumber; }
+
+    public BigDecimal getTotal() { return total; }
+    public void setTotal(BigDecimal total) { this.total = total; }
+
+    public Boolean getReplayed() { return replayed; }
+    public void setReplayed(Boolean replayed) { this.replayed = replayed; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -99,6 +99,11 @@ public class SaleOrderRequest {
     @JsonProperty("income_type")
     private String incomeType;
 
+    // Clave del terminal para reintentos de importación; al crear una venta se usa el header Idempotency-Key
+    @Size(max = 100, message = "La clave idempotency_key debe ser máximo 100 caracteres")
+    @JsonProperty("idempotency_key")
+    private String idempotencyKey;
+
     // Constructor vacío
     public SaleOrderRequest() {}
 
@@ -171,4 +176,7 @@ public class SaleOrderRequest {
 
     public String getIncomeType() { return incomeType; }
     public void setIncomeType(String incomeType) { this.incomeType = incomeType; }
-}
\ No newline at end of file
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+}
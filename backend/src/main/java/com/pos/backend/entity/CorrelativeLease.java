@@ -0,0 +1,95 @@
+package com.pos.backend.entity;
+
+import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.LocalDateTime;
+
+/**
+ * Bloque de correlativos [firstNumber, lastNumber] de un SalePointDocumentType
+ * reservado por una instancia del backend. Mientras está ACTIVE, la instancia
+ * dueña (owner) lo renueva periódicamente; si deja de hacerlo, otra instancia
+ * lo recupera y entrega los números que no llegaron a usarse en una venta.
+ */
+@Entity
+@Table(name = "SALE_Correlative_Lease", indexes = {
+    @Index(name = "idx_correlative_lease_status", columnList = "status, renewed_at")
+})
+public class CorrelativeLease {
+
+    public static final String ACTIVE = "A";
+    public static final String CLOSED = "C";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "sale_point_document_type_id", nullable = false)
+    @JsonProperty("sale_point_document_type_id")
+    private Integer salePointDocumentTypeId;
+
+    @Column(name = "first_number", nullable = false)
+    @JsonProperty("first_number")
+    private Integer firstNumber;
+
+    @Column(name = "last_number", nullable = false)
+    @JsonProperty("last_number")
+    private Integer lastNumber;
+
+    @Column(name = "status", length = 1, nullable = false)
+    private String status; // A: Activo, C: Cerrado
+
+    @Column(name = "owner", length = 64, nullable = false)
+    private String owner; // Instancia que entrega los números del bloque
+
+    @Column(name = "leased_at", nullable = false)
+    @JsonProperty("leased_at")
+    private LocalDateTime leasedAt;
+
+    @Column(name = "renewed_at", nullable = false)
+    @JsonProperty("renewed_at")
+    private LocalDateTime renewedAt;
+
+    public CorrelativeLease() {}
+
+    public CorrelativeLease(Integer salePointDocumentTypeId, Integer firstNumber, Integer lastNumber, String status, String owner) {
+        this.salePointDocumentTypeId = salePointDocumentTypeId;
+        this.firstNumber = firstNumber;
+        this.lastNumber = lastNumber;
+        this.status = status;
+        this.owner = owner;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        leasedAt = LocalDateTime.now();
+        if (renewedAt == null) {
+            renewedAt = leasedAt;
+        }
+    }
+
+    // Getters and Setters
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+
+    public Integer getSalePointDocumentTypeId() { return salePointDocumentTypeId; }
+    public void setSalePointDocumentTypeId(Integer salePointDocumentTypeId) { this.salePointDocumentTypeId = salePointDocumentTypeId; }
+
+    public Integer getFirstNumber() { return firstNumber; }
+    public void setFirstNumber(Integer firstNumber) { this.firstNumber = firstNumber; }
+
+    public Integer getLastNumber() { return lastNumber; }
+    public void setLastNumber(Integer lastNumber) { this.lastNumber = lastNumber; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public LocalDateTime getLeasedAt() { return leasedAt; }
+    public void setLeasedAt(LocalDateTime leasedAt) { this.leasedAt = leasedAt; }
+
+    public LocalDateTime getRenewedAt() { return renewedAt; }
+    public void setRenewedAt(LocalDateTime renewedAt) { this.renewedAt = renewedAt; }
+}
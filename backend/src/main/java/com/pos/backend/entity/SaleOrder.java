@@ -1,5 +1,6 @@
 package com.pos.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import java.math.BigDecimal;
@@ -10,11 +11,15 @@ import java.util.List;
 import java.util.ArrayList;
 
 @Entity
-@Table(name = "SALE_Order")
+@Table(name = "SALE_Order", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_sale_order_correlative", columnNames = {"sale_point_document_type_id", "document_number"}),
+    @UniqueConstraint(name = "uk_sale_order_user_idempotency_key", columnNames = {"created_by", "idempotency_key"})
+})
 public class SaleOrder {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sale_order_seq")
+    @SequenceGenerator(name = "sale_order_seq", sequenceName = "sale_order_seq", allocationSize = 50)
     @Column(name = "id", columnDefinition = "int unsigned")
     private Integer id;
 
@@ -94,6 +99,13 @@ public class SaleOrder {
     @Column(name = "created_by", columnDefinition = "int unsigned", nullable = false)
     private Integer createdBy; // Usuario que creó la venta
 
+    @Column(name = "idempotency_key", length = 100)
+    private String idempotencyKey; // Clave Idempotency-Key enviada por el terminal, única por usuario
+
+    @JsonIgnore
+    @Column(name = "idempotency_hash", length = 64)
+    private String idempotencyHash; // SHA-256 del request que creó la venta con idempotencyKey
+
     // Campos para declaración de impuestos
     @Column(name = "operation_type", length = 2)
     private String operationType; 
@@ -348,6 +360,12 @@ public class SaleOrder {
     public Integer getCreatedBy() { return createdBy; }
     public void setCreatedBy(Integer createdBy) { this.createdBy = createdBy; }
 
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public String getIdempotencyHash() { return idempotencyHash; }
+    public void setIdempotencyHash(String idempotencyHash) { this.idempotencyHash = idempotencyHash; }
+
     public String getOperationType() { return operationType; }
     public void setOperationType(String operationType) { this.operationType = operationType; }
 
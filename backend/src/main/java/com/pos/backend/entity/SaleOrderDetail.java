@@ -9,7 +9,8 @@ import java.math.BigDecimal;
 public class SaleOrderDetail {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sale_order_detail_seq")
+    @SequenceGenerator(name = "sale_order_detail_seq", sequenceName = "sale_order_detail_seq", allocationSize = 50)
     @Column(name = "id", columnDefinition = "int unsigned")
     private Integer id;
 
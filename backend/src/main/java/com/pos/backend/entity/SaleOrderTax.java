@@ -11,7 +11,8 @@ import java.time.LocalDateTime;
 public class SaleOrderTax {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sale_order_tax_seq")
+    @SequenceGenerator(name = "sale_order_tax_seq", sequenceName = "sale_order_tax_seq", allocationSize = 50)
     private Integer id;
 
     @NotNull(message = "Order ID is required")
@@ -0,0 +1,12 @@
+package com.pos.backend.exception;
+
+/**
+ * Se reutilizó una clave Idempotency-Key con una venta distinta a la que la
+ * creó. Se responde 422 en lugar de devolver la venta original.
+ */
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+    public IdempotencyKeyMismatchException(String idempotencyKey) {
+        super("La clave Idempotency-Key " + idempotencyKey + " ya se usó con una venta distinta");
+    }
+}
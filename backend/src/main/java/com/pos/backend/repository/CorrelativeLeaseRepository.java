@@ -0,0 +1,39 @@
+package com.pos.backend.repository;
+
+import com.pos.backend.entity.CorrelativeLease;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CorrelativeLeaseRepository extends JpaRepository<CorrelativeLease, Integer> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT cl FROM CorrelativeLease cl WHERE cl.id = :id")
+    Optional<CorrelativeLease> findByIdForUpdate(@Param("id") Integer id);
+
+    // Bloques activos cuya instancia dejó de renovarlos
+    @Query("SELECT cl FROM CorrelativeLease cl WHERE cl.status = 'A' AND cl.renewedAt < :limit ORDER BY cl.firstNumber")
+    List<CorrelativeLease> findOrphaned(@Param("limit") LocalDateTime limit);
+
+    @Modifying
+    @Query("UPDATE CorrelativeLease cl SET cl.renewedAt = :now WHERE cl.id IN :ids AND cl.owner = :owner AND cl.status = 'A'")
+    int renew(@Param("ids") Collection<Integer> ids, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    // Bloques de la lista que ya no pertenecen a la instancia
+    @Query("SELECT cl.id FROM CorrelativeLease cl WHERE cl.id IN :ids AND (cl.owner <> :owner OR cl.status <> 'A')")
+    List<Integer> findLost(@Param("ids") Collection<Integer> ids, @Param("owner") String owner);
+
+    @Modifying
+    @Query("UPDATE CorrelativeLease cl SET cl.status = 'C' WHERE cl.id = :id AND cl.owner = :owner")
+    int close(@Param("id") Integer id, @Param("owner") String owner);
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.math.BigDecimal;
@@ -48,6 +49,18 @@ public interface SaleOrderRepository extends JpaRepository<SaleOrder, Integer> {
     @Query("SELECT so FROM SaleOrder so WHERE so.documentNumber = :documentNumber AND so.salePointId = :salePointId AND so.organizationId = :organizationId")
     Optional<SaleOrder> findByDocumentNumberAndSalePoint(@Param("documentNumber") Integer documentNumber, @Param("salePointId") Integer salePointId, @Param("organizationId") Integer organizationId);
     
+    // Venta creada por un usuario con una clave Idempotency-Key
+    @Query("SELECT so.id FROM SaleOrder so WHERE so.createdBy = :createdBy AND so.idempotencyKey = :idempotencyKey")
+    Optional<Integer> findIdByCreatedByAndIdempotencyKey(@Param("createdBy") Integer createdBy, @Param("idempotencyKey") String idempotencyKey);
+    
+    // Ventas creadas por un usuario con alguna de las claves de un lote importado
+    @Query("SELECT so FROM SaleOrder so WHERE so.createdBy = :createdBy AND so.idempotencyKey IN :idempotencyKeys")
+    List<SaleOrder> findByCreatedByAndIdempotencyKeyIn(@Param("createdBy") Integer createdBy, @Param("idempotencyKeys") Collection<String> idempotencyKeys);
+    
+    // Números ya usados dentro de un bloque de correlativos
+    @Query("SELECT so.documentNumber FROM SaleOrder so WHERE so.salePointDocumentTypeId = :salePointDocumentTypeId AND so.documentNumber BETWEEN :firstNumber AND :lastNumber")
+    List<Integer> findDocumentNumbersInRange(@Param("salePointDocumentTypeId") Integer salePointDocumentTypeId, @Param("firstNumber") Integer firstNumber, @Param("lastNumber") Integer lastNumber);
+    
     // Métodos para cargar con detalles
     @Query("SELECT DISTINCT so FROM SaleOrder so LEFT JOIN FETCH so.details ORDER BY so.createdAt DESC")
     List<SaleOrder> findAllWithDetails();
@@ -1,11 +1,14 @@
 package com.pos.backend.repository;
 
 import com.pos.backend.entity.SalePointDocumentType;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +26,14 @@ public interface SalePointDocumentTypeRepository extends JpaRepository<SalePoint
     @Query("SELECT spdt FROM SalePointDocumentType spdt WHERE spdt.salePoint.id = :salePointId AND spdt.documentType.id = :documentTypeId AND spdt.organizationId = :organizationId")
     Optional<SalePointDocumentType> findBySalePointAndDocumentType(@Param("salePointId") Integer salePointId, @Param("documentTypeId") Integer documentTypeId, @Param("organizationId") Integer organizationId);
     
+    // Configuración correlativa de una venta con su punto de venta; solo hay resultado si también existen el cliente y la forma de pago
+    @Query("SELECT spdt FROM SalePointDocumentType spdt JOIN FETCH spdt.salePoint sp, Client c, PaymentForm pf WHERE sp.id = :salePointId AND spdt.documentType.id = :documentTypeId AND spdt.organizationId = :organizationId AND c.id = :clientId AND pf.id = :paymentFormId")
+    Optional<SalePointDocumentType> findForSale(@Param("salePointId") Integer salePointId, @Param("documentTypeId") Integer documentTypeId, @Param("organizationId") Integer organizationId, @Param("clientId") Integer clientId, @Param("paymentFormId") Integer paymentFormId);
+    
+    // Configuraciones correlativas de un lote de ventas con su punto de venta
+    @Query("SELECT spdt FROM SalePointDocumentType spdt JOIN FETCH spdt.salePoint sp JOIN FETCH spdt.documentType dt WHERE sp.id IN :salePointIds AND dt.id IN :documentTypeIds AND spdt.organizationId = :organizationId")
+    List<SalePointDocumentType> findForSales(@Param("salePointIds") Collection<Integer> salePointIds, @Param("documentTypeIds") Collection<Integer> documentTypeIds, @Param("organizationId") Integer organizationId);
+    
     @Query("SELECT spdt FROM SalePointDocumentType spdt WHERE spdt.organizationId = :organizationId")
     List<SalePointDocumentType> findAvailableDocumentTypes(@Param("organizationId") Integer organizationId);
     
@@ -34,4 +45,9 @@ public interface SalePointDocumentTypeRepository extends JpaRepository<SalePoint
     
     @Query("SELECT spdt FROM SalePointDocumentType spdt WHERE spdt.serial = :serial AND spdt.organizationId = :organizationId")
     List<SalePointDocumentType> findBySerial(@Param("serial") String serial, @Param("organizationId") Integer organizationId);
+    
+    // Bloquea la fila mientras se reserva un bloque de correlativos
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT spdt FROM SalePointDocumentType spdt WHERE spdt.id = :id")
+    Optional<SalePointDocumentType> findByIdForUpdate(@Param("id") Integer id);
 }
\ No newline at end of file
@@ -0,0 +1,530 @@
+package com.pos.backend.service;
+
+import com.pos.backend.entity.CorrelativeLease;
+import com.pos.backend.entity.SalePointDocumentType;
+import com.pos.backend.repository.CorrelativeLeaseRepository;
+import com.pos.backend.repository.SaleOrderRepository;
+import com.pos.backend.repository.SalePointDocumentTypeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Entrega los correlativos de cada SalePointDocumentType sin bloquear su fila
+ * en cada venta.
+ *
+ * Los números se reservan en bloques (app.correlative.blockSize) dentro de una
+ * transacción corta que bloquea la fila, mueve latestNumberIssued al final del
+ * bloque y registra el bloque en SALE_Correlative_Lease. Después, cada venta
+ * toma su número del bloque en memoria. Si la transacción de la venta hace
+ * rollback el número vuelve al bloque y lo usa la siguiente venta, así que no
+ * quedan huecos.
+ *
+ * Mientras tiene bloques activos, la instancia los renueva cada
+ * app.correlative.heartbeatMs. Un bloque que no se renueva en
+ * app.correlative.leaseTimeoutMs se considera huérfano (la instancia se cayó):
+ * otra instancia lo toma y entrega los números del bloque que no tienen una
+ * orden de venta en SALE_Order.
+ *
+ * La reserva de un bloque usa su propia conexión. Para no pedirla mientras la
+ * venta tiene abierta la suya, la venta aparta sus números con
+ * {@link #reserve} antes de abrir su transacción y los asocia a ella con
+ * {@link #bind}. Si varios hilos encuentran vacía la misma configuración, solo
+ * uno reserva el bloque y los demás lo esperan.
+ */
+@Service
+public class CorrelativeAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(CorrelativeAllocator.class);
+
+    // Fecha con la que se liberan los bloques al apagar, para recuperarlos de inmediato
+    private static final LocalDateTime RELEASED = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    @Autowired
+    private SalePointDocumentTypeRepository salePointDocumentTypeRepository;
+
+    @Autowired
+    private CorrelativeLeaseRepository correlativeLeaseRepository;
+
+    @Autowired
+    private SaleOrderRepository saleOrderRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.correlative.blockSize:20}")
+    private int blockSize;
+
+    @Value("${app.correlative.leaseTimeoutMs:300000}")
+    private long leaseTimeoutMs;
+
+    // Identifica a esta instancia como dueña de sus bloques
+    private final String owner = UUID.randomUUID().toString();
+
+    private final Map<Integer, Pool> pools = new ConcurrentHashMap<>();
+
+    // Bloques agotados pendientes de cerrar en la base de datos
+    private final ConcurrentLinkedQueue<Integer> exhausted = new ConcurrentLinkedQueue<>();
+
+    private TransactionTemplate newTransaction;
+
+    @PostConstruct
+    public void init() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Entrega el siguiente correlativo para la transacción actual. Si la
+     * transacción hace rollback, el número se devuelve al bloque.
+     */
+    public Integer next(SalePointDocumentType config) {
+        return next(config, 1).get(0);
+    }
+
+    /**
+     * Entrega count correlativos para la transacción actual. Si se llama dentro
+     * de la transacción y no hay números en memoria, el bloque se reserva con
+     * una segunda conexión; las ventas usan {@link #reserve} para evitarlo.
+     */
+    public List<Integer> next(SalePointDocumentType config, int count) {
+        Reservation reservation = reserve(config.getId(), count);
+        bind(reservation);
+        return reservation.numbers();
+    }
+
+    /**
+     * Aparta count correlativos antes de abrir la transacción que los usa. Si
+     * no alcanzan los números en memoria, el bloque nuevo se reserva del
+     * tamaño que falta, así un lote grande hace una sola reserva.
+     *
+     * Los números quedan apartados hasta {@link #bind} dentro de la
+     * transacción, o hasta {@link #cancel} si la transacción no llega a usarlos.
+     */
+    public Reservation reserve(Integer salePointDocumentTypeId, int count) {
+        Pool pool = pools.computeIfAbsent(salePointDocumentTypeId, id -> new Pool());
+        Map<Integer, Lease> taken = new LinkedHashMap<>();
+        try {
+            while (true) {
+                synchronized (pool) {
+                    pool.take(taken, count);
+                }
+                if (taken.size() == count) {
+                    break;
+                }
+                refill(pool, salePointDocumentTypeId, count - taken.size());
+            }
+        } catch (RuntimeException e) {
+            release(pool, taken, false);
+            throw e;
+        }
+        log.debug("Correlativos {} apartados para configuración {}", taken.keySet(), salePointDocumentTypeId);
+        return new Reservation(pool, taken);
+    }
+
+    /**
+     * Asocia los números apartados a la transacción actual: quedan usados si
+     * hace commit y vuelven a su bloque si hace rollback. Sin transacción
+     * quedan usados de inmediato.
+     */
+    public void bind(Reservation reservation) {
+        if (!reservation.finish()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(reservation.pool, reservation.taken, status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            release(reservation.pool, reservation.taken, true);
+        }
+    }
+
+    /**
+     * Devuelve a su bloque los números apartados que no se asociaron a una
+     * transacción. No hace nada si ya se llamó a bind.
+     */
+    public void cancel(Reservation reservation) {
+        if (reservation.finish()) {
+            release(reservation.pool, reservation.taken, false);
+        }
+    }
+
+    /**
+     * Entrega un correlativo que no queda asociado a una orden de venta. Se
+     * reserva como un bloque de un solo número que nace cerrado, para que la
+     * recuperación nunca lo vuelva a entregar.
+     */
+    public Integer issueDirect(Integer salePointDocumentTypeId) {
+        return leaseBlock(salePointDocumentTypeId, 1, CorrelativeLease.CLOSED).first;
+    }
+
+    /**
+     * Renueva los bloques de esta instancia, cierra los agotados y recupera
+     * los bloques huérfanos de instancias caídas.
+     */
+    @Scheduled(fixedDelayString = "${app.correlative.heartbeatMs:30000}", initialDelayString = "${app.correlative.heartbeatMs:30000}")
+    public void heartbeat() {
+        try {
+            closeExhausted();
+            renewLeases();
+            recoverOrphaned();
+        } catch (Exception e) {
+            log.error("✗ Error al renovar bloques de correlativos: {}", e.getMessage(), e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        try {
+            recoverOrphaned();
+        } catch (Exception e) {
+            log.error("✗ Error al recuperar bloques de correlativos: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Al apagar, marca los bloques como vencidos para que otra instancia
+     * recupere sus números sin esperar app.correlative.leaseTimeoutMs.
+     */
+    @PreDestroy
+    public void shutdown() {
+        try {
+            closeExhausted();
+            Set<Integer> ids = heldLeaseIds();
+            if (!ids.isEmpty()) {
+                newTransaction.executeWithoutResult(status -> correlativeLeaseRepository.renew(ids, owner, RELEASED));
+                log.info("✓ {} bloques de correlativos liberados", ids.size());
+            }
+        } catch (Exception e) {
+            log.warn("No se pudieron liberar los bloques de correlativos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reserva el bloque siguiente del rango autorizado bloqueando la fila de
+     * la configuración solo durante esta transacción.
+     */
+    private Lease leaseBlock(Integer salePointDocumentTypeId, int size, String status) {
+        return newTransaction.execute(tx -> {
+            SalePointDocumentType config = salePointDocumentTypeRepository.findByIdForUpdate(salePointDocumentTypeId)
+                .orElseThrow(() -> new IllegalArgumentException(
+                    "No existe configuración correlativa con ID: " + salePointDocumentTypeId));
+
+            int first = Math.max(config.getLatestNumberIssued() + 1, config.getInitialNumberAuthorized());
+            if (first > config.getFinalNumberAuthorized()) {
+                throw new IllegalArgumentException(
+                    "Se ha agotado el rango de numeración. Último emitido: " + config.getLatestNumberIssued() +
+                    ", Máximo permitido: " + config.getFinalNumberAuthorized());
+            }
+            int last = (int) Math.min((long) first + size - 1, config.getFinalNumberAuthorized());
+
+            // Números del bloque que ya tienen venta (latestNumberIssued corregido a mano o datos anteriores)
+            Set<Integer> used = CorrelativeLease.ACTIVE.equals(status)
+                ? new HashSet<>(saleOrderRepository.findDocumentNumbersInRange(salePointDocumentTypeId, first, last))
+                : Set.of();
+
+            config.setLatestNumberIssued(last);
+            salePointDocumentTypeRepository.save(config);
+            CorrelativeLease saved = correlativeLeaseRepository.save(new CorrelativeLease(salePointDocumentTypeId, first, last,
+                used.size() == last - first + 1 ? CorrelativeLease.CLOSED : status, owner));
+
+            log.info("✓ Bloque de correlativos {} reservado para configuración {}: {} - {}",
+                     saved.getId(), salePointDocumentTypeId, first, last);
+            Lease lease = new Lease(saved.getId(), first, last);
+            if (!used.isEmpty()) {
+                log.warn("Bloque de correlativos {}: se omiten {} números que ya tienen venta", saved.getId(), used.size());
+                lease.skip(used);
+            }
+            return lease;
+        });
+    }
+
+    /**
+     * Reserva un bloque si la configuración tiene menos de count números
+     * disponibles. Solo un hilo por configuración reserva a la vez; los demás
+     * esperan su bloque en lugar de reservar uno cada uno.
+     */
+    private void refill(Pool pool, Integer salePointDocumentTypeId, int count) {
+        CompletableFuture<Void> refill;
+        int missing;
+        synchronized (pool) {
+            missing = count - pool.available();
+            if (missing <= 0) {
+                return;
+            }
+            refill = pool.refill;
+            if (refill == null) {
+                pool.refill = new CompletableFuture<>();
+            }
+        }
+
+        if (refill != null) {
+            try {
+                refill.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            return;
+        }
+
+        CompletableFuture<Void> own;
+        try {
+            Lease lease = leaseBlock(salePointDocumentTypeId, Math.max(blockSize, missing), CorrelativeLease.ACTIVE);
+            synchronized (pool) {
+                if (lease.hasNext()) {
+                    pool.leases.put(lease.first, lease);
+                }
+                own = pool.refill;
+                pool.refill = null;
+            }
+            own.complete(null);
+        } catch (RuntimeException e) {
+            synchronized (pool) {
+                own = pool.refill;
+                pool.refill = null;
+            }
+            own.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void release(Pool pool, Map<Integer, Lease> taken, boolean committed) {
+        synchronized (pool) {
+            for (Map.Entry<Integer, Lease> entry : taken.entrySet()) {
+                Lease lease = entry.getValue();
+                lease.pending--;
+                if (!committed) {
+                    lease.free.add(entry.getKey());
+                    log.debug("Correlativo {} devuelto al bloque {}", entry.getKey(), lease.id);
+                }
+                if (lease.exhausted() && pool.leases.remove(lease.first, lease)) {
+                    exhausted.add(lease.id);
+                }
+            }
+        }
+    }
+
+    private void closeExhausted() {
+        Integer id;
+        while ((id = exhausted.poll()) != null) {
+            Integer leaseId = id;
+            newTransaction.executeWithoutResult(status -> correlativeLeaseRepository.close(leaseId, owner));
+            log.debug("Bloque de correlativos {} cerrado", leaseId);
+        }
+    }
+
+    private void renewLeases() {
+        Set<Integer> ids = heldLeaseIds();
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Integer> lost = newTransaction.execute(status -> {
+            correlativeLeaseRepository.renew(ids, owner, LocalDateTime.now());
+            return correlativeLeaseRepository.findLost(ids, owner);
+        });
+        if (!lost.isEmpty()) {
+            // Otra instancia los recuperó: sus números ya no se entregan desde aquí
+            log.warn("Bloques de correlativos tomados por otra instancia: {}", lost);
+            for (Pool pool : pools.values()) {
+                synchronized (pool) {
+                    pool.leases.values().removeIf(lease -> lost.contains(lease.id));
+                }
+            }
+        }
+    }
+
+    private void recoverOrphaned() {
+        LocalDateTime limit = LocalDateTime.now().minusNanos(leaseTimeoutMs * 1_000_000L);
+        for (CorrelativeLease orphan : correlativeLeaseRepository.findOrphaned(limit)) {
+            if (owner.equals(orphan.getOwner())) {
+                continue;
+            }
+            Lease recovered = newTransaction.execute(status -> recover(orphan.getId(), limit));
+            if (recovered != null) {
+                Pool pool = pools.computeIfAbsent(orphan.getSalePointDocumentTypeId(), id -> new Pool());
+                synchronized (pool) {
+                    pool.leases.put(recovered.first, recovered);
+                }
+            }
+        }
+    }
+
+    /**
+     * Toma un bloque huérfano. Los números del bloque que no tienen orden de
+     * venta se vuelven a entregar; si no falta ninguno, el bloque se cierra.
+     */
+    private Lease recover(Integer leaseId, LocalDateTime limit) {
+        CorrelativeLease lease = correlativeLeaseRepository.findByIdForUpdate(leaseId).orElse(null);
+        if (lease == null || !CorrelativeLease.ACTIVE.equals(lease.getStatus()) || !lease.getRenewedAt().isBefore(limit)) {
+            // Otra instancia lo recuperó primero
+            return null;
+        }
+
+        Set<Integer> used = new HashSet<>(saleOrderRepository.findDocumentNumbersInRange(
+            lease.getSalePointDocumentTypeId(), lease.getFirstNumber(), lease.getLastNumber()));
+        int missing = lease.getLastNumber() - lease.getFirstNumber() + 1 - used.size();
+
+        if (missing == 0) {
+            lease.setStatus(CorrelativeLease.CLOSED);
+            correlativeLeaseRepository.save(lease);
+            log.info("✓ Bloque de correlativos {} de la instancia {} cerrado en la recuperación", leaseId, lease.getOwner());
+            return null;
+        }
+
+        log.warn("Recuperando bloque de correlativos {} de la instancia {}: {} números sin usar",
+                 leaseId, lease.getOwner(), missing);
+        lease.setOwner(owner);
+        lease.setRenewedAt(LocalDateTime.now());
+        correlativeLeaseRepository.save(lease);
+
+        Lease recovered = new Lease(lease.getId(), lease.getFirstNumber(), lease.getLastNumber());
+        recovered.skip(used);
+        return recovered;
+    }
+
+    private Set<Integer> heldLeaseIds() {
+        Set<Integer> ids = new HashSet<>();
+        for (Pool pool : pools.values()) {
+            synchronized (pool) {
+                for (Lease lease : pool.leases.values()) {
+                    ids.add(lease.id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Correlativos apartados con {@link #reserve}, en orden ascendente
+     */
+    public static final class Reservation {
+        private final Pool pool;
+        private final Map<Integer, Lease> taken;
+        private boolean finished;
+
+        private Reservation(Pool pool, Map<Integer, Lease> taken) {
+            this.pool = pool;
+            this.taken = taken;
+        }
+
+        public List<Integer> numbers() {
+            return new ArrayList<>(taken.keySet());
+        }
+
+        // Solo la primera llamada a bind o cancel libera los números
+        private synchronized boolean finish() {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            return true;
+        }
+    }
+
+    /**
+     * Bloques en memoria de una configuración, por primer número. Se accede
+     * siempre bajo su propio monitor.
+     */
+    private static final class Pool {
+        final TreeMap<Integer, Lease> leases = new TreeMap<>();
+        // Reserva de bloque en curso; null si no hay ninguna
+        CompletableFuture<Void> refill;
+
+        int available() {
+            int available = 0;
+            for (Lease lease : leases.values()) {
+                available += lease.available();
+            }
+            return available;
+        }
+
+        // Toma números de los bloques más bajos primero, para entregar en orden
+        void take(Map<Integer, Lease> taken, int count) {
+            for (Lease lease : leases.values()) {
+                Integer number;
+                while (taken.size() < count && (number = lease.take()) != null) {
+                    taken.put(number, lease);
+                }
+            }
+        }
+    }
+
+    private static final class Lease {
+        final Integer id;
+        final int first;
+        final int last;
+        int next;
+        // Números devueltos por rollback o recuperados de un bloque huérfano
+        final TreeSet<Integer> free = new TreeSet<>();
+        // Números entregados cuya transacción no ha terminado
+        int pending;
+
+        Lease(Integer id, int first, int last) {
+            this.id = id;
+            this.first = first;
+            this.last = last;
+            this.next = first;
+        }
+
+        // Deja disponibles solo los números del bloque que no están en used
+        void skip(Set<Integer> used) {
+            for (int number = next; number <= last; number++) {
+                if (!used.contains(number)) {
+                    free.add(number);
+                }
+            }
+            next = last + 1;
+        }
+
+        boolean hasNext() {
+            return !free.isEmpty() || next <= last;
+        }
+
+        int available() {
+            return free.size() + Math.max(0, last - next + 1);
+        }
+
+        Integer take() {
+            Integer number = !free.isEmpty() ? free.pollFirst() : next <= last ? Integer.valueOf(next++) : null;
+            if (number != null) {
+                pending++;
+            }
+            return number;
+        }
+
+        boolean exhausted() {
+            return !hasNext() && pending == 0;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.pos.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Claves Idempotency-Key vistas recientemente, como usuario:clave, y la venta
+ * que crearon. Es solo un cache acotado: la fuente de verdad es la restricción
+ * única (created_by, idempotency_key) de SALE_Order, que se consulta cuando la
+ * clave no está aquí (reinicio, otra instancia o clave desalojada).
+ */
+@Component
+public class SaleOrderIdempotencyIndex {
+
+    @Value("${app.saleOrders.idempotency.maxEntries:10000}")
+    private int maxEntries;
+
+    // En orden de acceso; al pasar maxEntries se desaloja la de uso más antiguo
+    private final Map<String, Integer> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public synchronized Integer get(String idempotencyKey) {
+        return entries.get(idempotencyKey);
+    }
+
+    public synchronized void put(String idempotencyKey, Integer saleOrderId) {
+        entries.put(idempotencyKey, saleOrderId);
+    }
+}
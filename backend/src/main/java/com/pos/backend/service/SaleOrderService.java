@@ -3,21 +3,44 @@ package com.pos.backend.service;
 import com.pos.backend.entity.*;
 import com.pos.backend.dto.SaleOrderRequest;
 import com.pos.backend.dto.SaleOrderDetailRequest;
+import com.pos.backend.dto.SaleOrderImportResult;
+import com.pos.backend.exception.IdempotencyKeyMismatchException;
 import com.pos.backend.repository.*;
 import com.pos.backend.util.JwtUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -25,6 +48,9 @@ public class SaleOrderService {
 
     private static final Logger log = LoggerFactory.getLogger(SaleOrderService.class);
 
+    // Ventas por transacción en la importación; igual a hibernate.jdbc.batch_size
+    private static final int IMPORT_CHUNK_SIZE = 50;
+
     @Autowired
     private SaleOrderRepository saleOrderRepository;
 
@@ -55,6 +81,21 @@ public class SaleOrderService {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private CorrelativeAllocator correlativeAllocator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private SaleOrderIdempotencyIndex idempotencyIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     public List<SaleOrder> getAllSaleOrders() {
         log.info("Obteniendo todas las órdenes de venta con detalles");
         return saleOrderRepository.findAllWithDetails();
@@ -102,42 +143,94 @@ public class SaleOrderService {
         return saleOrderRepository.findByCreatedByAndOrganizationIdWithDetails(userId, organizationId);
     }
 
-    @Transactional
+    /**
+     * Busca la venta que el usuario del token creó con una clave
+     * Idempotency-Key: primero en el índice en memoria y, si no está, en la
+     * columna de SALE_Order. La clave es única por usuario, así que otro
+     * usuario con la misma clave no recibe esa venta.
+     *
+     * @throws IdempotencyKeyMismatchException si la venta se creó con otro request
+     */
+    @Transactional(readOnly = true)
+    public Optional<SaleOrder> findByIdempotencyKey(String idempotencyKey, SaleOrderRequest request, String userToken) {
+        return findByIdempotencyKey(extractUserIdFromToken(userToken), idempotencyKey, requestHash(request));
+    }
+
+    private Optional<SaleOrder> findByIdempotencyKey(Integer userId, String idempotencyKey, String requestHash) {
+        String indexKey = userId + ":" + idempotencyKey;
+        Integer saleOrderId = idempotencyIndex.get(indexKey);
+        if (saleOrderId == null) {
+            Optional<Integer> storedId = saleOrderRepository.findIdByCreatedByAndIdempotencyKey(userId, idempotencyKey);
+            if (!storedId.isPresent()) {
+                return Optional.empty();
+            }
+            saleOrderId = storedId.get();
+            idempotencyIndex.put(indexKey, saleOrderId);
+        }
+        Optional<SaleOrder> saleOrder = saleOrderRepository.findByIdWithDetails(saleOrderId);
+        // Las ventas guardadas antes de registrar el hash se aceptan con cualquier request
+        if (saleOrder.isPresent() && saleOrder.get().getIdempotencyHash() != null
+                && !saleOrder.get().getIdempotencyHash().equals(requestHash)) {
+            throw new IdempotencyKeyMismatchException(idempotencyKey);
+        }
+        return saleOrder;
+    }
+
+    /**
+     * SHA-256 en hexadecimal del request serializado como JSON, sin su
+     * idempotency_key: la misma venta da el mismo hash por header o en el lote
+     */
+    private String requestHash(SaleOrderRequest request) {
+        try {
+            ObjectNode json = objectMapper.valueToTree(request);
+            json.remove("idempotency_key");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(json)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular el hash de la venta: " + e.getMessage(), e);
+        }
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public SaleOrder createSaleOrder(SaleOrderRequest request, String userToken) {
+        return createSaleOrder(request, userToken, null);
+    }
+
+    /**
+     * Crea una venta. Si se recibe idempotencyKey se guarda en la orden (columna
+     * única) y, al hacer commit, se registra en el índice de claves recientes.
+     *
+     * La configuración se consulta y el correlativo se reserva antes de abrir
+     * la transacción de la venta: si hay que reservar un bloque nuevo, su
+     * transacción no compite con la venta por una segunda conexión.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public SaleOrder createSaleOrder(SaleOrderRequest request, String userToken, String idempotencyKey) {
         log.info("=================== INICIO CREACIÓN DE VENTA ===================");
         log.info("Creando nueva orden de venta para cliente: {}, punto de venta: {}, tipo documento: {}", 
                   request.getClientId(), request.getSalePointId(), request.getDocumentTypeId());
 
         try {
-            // 1. VALIDACIONES DE ENTIDADES RELACIONADAS
-            validateRelatedEntities(request);
+            // 1. OBTENER CONFIGURACIÓN CORRELATIVA Y VALIDAR ENTIDADES RELACIONADAS (una sola consulta)
+            SalePointDocumentType salePointDocType = validateAndGetCorrelativeConfig(request);
 
             // 2. VALIDACIÓN DE PERMISOS DE USUARIO EN PUNTO DE VENTA
-            validateUserPermissions(request.getSalePointId(), userToken);
-
-            // 3. OBTENER Y VALIDAR CONFIGURACIÓN CORRELATIVA
-            SalePointDocumentType salePointDocType = validateAndGetCorrelativeConfig(
-                request.getSalePointId(), request.getDocumentTypeId());
-
-            // 4. VALIDAR INVENTARIO Y CALCULAR PRECIOS
-            List<SaleOrderDetailCalculation> detailCalculations = validateInventoryAndCalculatePrices(request.getDetails());
-
-            // 5. CREAR LA ORDEN PRINCIPAL
-            SaleOrder saleOrder = createMainOrder(request, salePointDocType, userToken);
-
-            // 6. CALCULAR Y ASIGNAR TOTALES DESDE DETALLES
-            calculateAndSetTotals(saleOrder, detailCalculations);
-
-            // 7. GUARDAR LA ORDEN PRINCIPAL
-            SaleOrder savedOrder = saleOrderRepository.save(saleOrder);
-            log.info("✓ Orden principal guardada con ID: {} y número de documento: {}", 
-                     savedOrder.getId(), savedOrder.getDocumentNumber());
-
-            // 8. CREAR Y GUARDAR DETALLES CON CÁLCULOS FISCALES
-            createAndSaveDetails(savedOrder, request.getDetails(), detailCalculations);
-
-            // 9. INCREMENTAR CORRELATIVO
-            updateCorrelative(salePointDocType);
+            validateUserPermissions(salePointDocType.getSalePoint(), userToken);
+
+            // 3. APARTAR EL CORRELATIVO FUERA DE LA TRANSACCIÓN DE LA VENTA
+            CorrelativeAllocator.Reservation reservation = correlativeAllocator.reserve(salePointDocType.getId(), 1);
+
+            SaleOrder savedOrder;
+            try {
+                savedOrder = new TransactionTemplate(transactionManager).execute(status -> {
+                    // Se devuelve al bloque si la venta hace rollback
+                    correlativeAllocator.bind(reservation);
+                    return saveSaleOrder(request, salePointDocType, userToken, idempotencyKey,
+                                         reservation.numbers().get(0));
+                });
+            } finally {
+                correlativeAllocator.cancel(reservation);
+            }
 
             log.info("✓ Venta creada exitosamente - ID: {}, Documento: {}, Total: ${}", 
                      savedOrder.getId(), savedOrder.getDocumentNumber(), savedOrder.getSalesTotal());
@@ -152,7 +245,331 @@ public class SaleOrderService {
     }
 
     /**
-     * Valida que existan todas las entidades relacionadas
+     * Guarda la venta en la transacción actual
+     */
+    private SaleOrder saveSaleOrder(SaleOrderRequest request, SalePointDocumentType salePointDocType,
+                                    String userToken, String idempotencyKey, Integer documentNumber) {
+        // 4. VALIDAR INVENTARIO Y CALCULAR PRECIOS (artículos en una sola consulta)
+        List<SaleOrderDetailCalculation> detailCalculations = validateInventoryAndCalculatePrices(
+            request.getDetails(), loadArticles(request.getDetails()));
+
+        // 5. CREAR LA ORDEN PRINCIPAL
+        Integer createdByUserId = extractUserIdFromToken(userToken);
+        SaleOrder saleOrder = createMainOrder(request, salePointDocType, createdByUserId, documentNumber);
+        if (idempotencyKey != null) {
+            saleOrder.setIdempotencyKey(idempotencyKey);
+            saleOrder.setIdempotencyHash(requestHash(request));
+        }
+
+        // 6. CALCULAR Y ASIGNAR TOTALES DESDE DETALLES
+        calculateAndSetTotals(saleOrder, detailCalculations);
+
+        // 7. GUARDAR LA ORDEN PRINCIPAL
+        SaleOrder savedOrder = saleOrderRepository.save(saleOrder);
+        log.info("✓ Orden principal guardada con ID: {} y número de documento: {}", 
+                 savedOrder.getId(), savedOrder.getDocumentNumber());
+
+        // 8. CREAR Y GUARDAR DETALLES CON CÁLCULOS FISCALES
+        createAndSaveDetails(savedOrder, request.getDetails(), detailCalculations);
+
+        if (idempotencyKey != null) {
+            registerIdempotencyKey(createdByUserId + ":" + idempotencyKey, savedOrder.getId());
+        }
+        return savedOrder;
+    }
+
+    /**
+     * Registra la clave (usuario:clave) en el índice solo si la venta llega a guardarse
+     */
+    private void registerIdempotencyKey(String indexKey, Integer saleOrderId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                idempotencyIndex.put(indexKey, saleOrderId);
+            }
+        });
+    }
+
+    /**
+     * Importa en lote las ventas que los terminales encolaron sin conexión.
+     *
+     * Las referencias de todo el lote se cargan en consultas por conjunto y cada
+     * venta se valida por separado. Las válidas se guardan en transacciones de
+     * hasta IMPORT_CHUNK_SIZE ventas, pidiendo de una vez los correlativos de
+     * cada configuración. Si una transacción falla, sus ventas se reintentan una
+     * por una, así el error de una venta no deshace las demás.
+     *
+     * Una venta con idempotency_key que el usuario ya guardó, en un envío
+     * anterior o antes en el mismo lote, se informa como reintento con la venta
+     * existente, sin crearla ni gastar otro correlativo.
+     *
+     * @return resultado de cada venta, en el orden recibido
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<SaleOrderImportResult> importSaleOrders(List<SaleOrderRequest> requests, String userToken) {
+        log.info("=================== INICIO IMPORTACIÓN DE VENTAS ===================");
+        log.info("Importando {} ventas", requests.size());
+
+        Integer createdByUserId = extractUserIdFromToken(userToken);
+        SaleOrderImportResult[] results = new SaleOrderImportResult[requests.size()];
+
+        // 1. VALIDAR CAMPOS DE CADA VENTA
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String violations = validateImportRequest(requests.get(i));
+            if (violations == null) {
+                validIndexes.add(i);
+            } else {
+                results[i] = SaleOrderImportResult.rejected(i, violations);
+            }
+        }
+
+        // 2. RESPONDER LOS REINTENTOS CON LA VENTA YA GUARDADA
+        Map<Integer, Integer> repeatedInBatch = new LinkedHashMap<>();
+        validIndexes = replayImportedSales(requests, validIndexes, results, createdByUserId, repeatedInBatch);
+
+        // 3. VALIDAR REFERENCIAS Y CALCULAR PRECIOS CON CONSULTAS POR CONJUNTO
+        List<ImportedSale> pending = prepareImportedSales(requests, validIndexes, results);
+
+        // 4. GUARDAR POR BLOQUES
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int from = 0; from < pending.size(); from += IMPORT_CHUNK_SIZE) {
+            List<ImportedSale> chunk = pending.subList(from, Math.min(from + IMPORT_CHUNK_SIZE, pending.size()));
+            try {
+                saveImportedSales(transaction, chunk, createdByUserId);
+                for (ImportedSale sale : chunk) {
+                    results[sale.index] = sale.created();
+                }
+            } catch (Exception e) {
+                log.warn("⚠ Falló el bloque de {} ventas, reintentando una por una: {}", chunk.size(), e.getMessage());
+                for (ImportedSale sale : chunk) {
+                    try {
+                        saveImportedSales(transaction, List.of(sale), createdByUserId);
+                        results[sale.index] = sale.created();
+                    } catch (Exception saleError) {
+                        results[sale.index] = replayedAfterError(sale, createdByUserId, saleError);
+                    }
+                }
+            }
+        }
+
+        // 5. LAS CLAVES REPETIDAS EN EL LOTE RECIBEN LA VENTA DE LA PRIMERA
+        for (Map.Entry<Integer, Integer> repeated : repeatedInBatch.entrySet()) {
+            SaleOrderImportResult first = results[repeated.getValue()];
+            results[repeated.getKey()] = first.getSuccess()
+                ? SaleOrderImportResult.replayed(repeated.getKey(), first.getSaleOrderId(), first.getDocumentNumber(), first.getTotal())
+                : SaleOrderImportResult.rejected(repeated.getKey(), first.getMessage());
+        }
+
+        long replayed = Arrays.stream(results).filter(result -> Boolean.TRUE.equals(result.getReplayed())).count();
+        long created = Arrays.stream(results).filter(SaleOrderImportResult::getSuccess).count() - replayed;
+        log.info("✓ Importación terminada - Creadas: {}, Reintentos: {}, Rechazadas: {}",
+                 created, replayed, requests.size() - created - replayed);
+        log.info("=================== FIN IMPORTACIÓN DE VENTAS ===================");
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Busca de una vez las ventas que el usuario ya guardó con las claves del
+     * lote. Las encontradas se responden como reintento (o se rechazan si el
+     * request cambió) y las claves repetidas dentro del lote quedan en
+     * repeatedInBatch apuntando a la primera venta con esa clave.
+     *
+     * @return índices que todavía deben guardarse
+     */
+    private List<Integer> replayImportedSales(List<SaleOrderRequest> requests, List<Integer> validIndexes,
+                                              SaleOrderImportResult[] results, Integer createdByUserId,
+                                              Map<Integer, Integer> repeatedInBatch) {
+        Set<String> keys = validIndexes.stream()
+            .map(index -> requests.get(index).getIdempotencyKey())
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        if (keys.isEmpty()) {
+            return validIndexes;
+        }
+        Map<String, SaleOrder> existing = saleOrderRepository.findByCreatedByAndIdempotencyKeyIn(createdByUserId, keys)
+            .stream()
+            .collect(Collectors.toMap(SaleOrder::getIdempotencyKey, Function.identity()));
+
+        List<Integer> pending = new ArrayList<>();
+        Map<String, Integer> firstIndexes = new HashMap<>();
+        Map<String, String> firstHashes = new HashMap<>();
+        for (Integer index : validIndexes) {
+            String key = requests.get(index).getIdempotencyKey();
+            if (key == null) {
+                pending.add(index);
+                continue;
+            }
+            String hash = requestHash(requests.get(index));
+            SaleOrder saleOrder = existing.get(key);
+            if (saleOrder != null) {
+                // Las ventas guardadas antes de registrar el hash se aceptan con cualquier request
+                if (saleOrder.getIdempotencyHash() != null && !saleOrder.getIdempotencyHash().equals(hash)) {
+                    results[index] = SaleOrderImportResult.rejected(index, new IdempotencyKeyMismatchException(key).getMessage());
+                } else {
+                    log.info("↺ Venta {} con idempotency_key {} ya guardada - ID: {}", index, key, saleOrder.getId());
+                    results[index] = SaleOrderImportResult.replayed(index, saleOrder.getId(),
+                                                                    saleOrder.getDocumentNumber(), saleOrder.getSalesTotal());
+                }
+            } else if (firstIndexes.containsKey(key)) {
+                if (firstHashes.get(key).equals(hash)) {
+                    repeatedInBatch.put(index, firstIndexes.get(key));
+                } else {
+                    results[index] = SaleOrderImportResult.rejected(index, new IdempotencyKeyMismatchException(key).getMessage());
+                }
+            } else {
+                firstIndexes.put(key, index);
+                firstHashes.put(key, hash);
+                pending.add(index);
+            }
+        }
+        log.info("✓ Claves del lote revisadas - Ya guardadas: {}, Repetidas en el lote: {}", existing.size(), repeatedInBatch.size());
+        return pending;
+    }
+
+    /**
+     * Resultado de una venta que falló al guardarse sola. Si tiene
+     * idempotency_key, otra importación simultánea pudo guardarla primero
+     * (restricción única por usuario y clave): entonces es un reintento.
+     */
+    private SaleOrderImportResult replayedAfterError(ImportedSale sale, Integer createdByUserId, Exception saleError) {
+        String key = sale.request.getIdempotencyKey();
+        if (key != null) {
+            try {
+                Optional<SaleOrder> existing = findByIdempotencyKey(createdByUserId, key, requestHash(sale.request));
+                if (existing.isPresent()) {
+                    log.info("↺ Venta {} con idempotency_key {} guardada por otra importación - ID: {}",
+                             sale.index, key, existing.get().getId());
+                    return SaleOrderImportResult.replayed(sale.index, existing.get().getId(),
+                                                          existing.get().getDocumentNumber(), existing.get().getSalesTotal());
+                }
+            } catch (IdempotencyKeyMismatchException e) {
+                return SaleOrderImportResult.rejected(sale.index, e.getMessage());
+            }
+        }
+        log.warn("⚠ Venta {} rechazada: {}", sale.index, saleError.getMessage());
+        return SaleOrderImportResult.rejected(sale.index, saleError.getMessage());
+    }
+
+    /**
+     * Valida las anotaciones del request, como @Valid en createSaleOrder
+     */
+    private String validateImportRequest(SaleOrderRequest request) {
+        if (request == null) {
+            return "La venta está vacía";
+        }
+        Set<ConstraintViolation<SaleOrderRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+            .map(ConstraintViolation::getMessage)
+            .sorted()
+            .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Carga configuraciones, clientes, formas de pago y artículos de todo el
+     * lote y calcula los detalles de cada venta válida
+     */
+    private List<ImportedSale> prepareImportedSales(List<SaleOrderRequest> requests, List<Integer> validIndexes,
+                                                    SaleOrderImportResult[] results) {
+        List<ImportedSale> pending = new ArrayList<>();
+        if (validIndexes.isEmpty()) {
+            return pending;
+        }
+
+        List<SaleOrderRequest> valid = validIndexes.stream().map(requests::get).collect(Collectors.toList());
+        Map<String, SalePointDocumentType> configs = salePointDocumentTypeRepository
+            .findForSales(collectIds(valid, SaleOrderRequest::getSalePointId),
+                          collectIds(valid, SaleOrderRequest::getDocumentTypeId), 1) // organizationId = 1
+            .stream()
+            .collect(Collectors.toMap(
+                config -> config.getSalePoint().getId() + ":" + config.getDocumentType().getId(),
+                Function.identity(), (first, second) -> first));
+        Set<Integer> clientIds = clientRepository.findAllById(collectIds(valid, SaleOrderRequest::getClientId))
+            .stream().map(Client::getId).collect(Collectors.toSet());
+        Set<Integer> paymentFormIds = paymentFormRepository.findAllById(collectIds(valid, SaleOrderRequest::getPaymentTermId))
+            .stream().map(PaymentForm::getId).collect(Collectors.toSet());
+        Map<Integer, Article> articles = loadArticles(valid.stream()
+            .flatMap(request -> request.getDetails().stream())
+            .collect(Collectors.toList()));
+        log.info("✓ Referencias del lote cargadas - Configuraciones: {}, Artículos: {}", configs.size(), articles.size());
+
+        for (Integer index : validIndexes) {
+            SaleOrderRequest request = requests.get(index);
+            try {
+                if (!clientIds.contains(request.getClientId())) {
+                    throw new IllegalArgumentException("Cliente no encontrado con ID: " + request.getClientId());
+                }
+                if (!paymentFormIds.contains(request.getPaymentTermId())) {
+                    throw new IllegalArgumentException("Forma de pago no encontrada con ID: " + request.getPaymentTermId());
+                }
+                SalePointDocumentType config = configs.get(request.getSalePointId() + ":" + request.getDocumentTypeId());
+                if (config == null) {
+                    throw new IllegalArgumentException(
+                        "No existe configuración correlativa para punto de venta " + request.getSalePointId() +
+                        " y tipo de documento " + request.getDocumentTypeId());
+                }
+                pending.add(new ImportedSale(index, request, config,
+                    validateInventoryAndCalculatePrices(request.getDetails(), articles)));
+            } catch (IllegalArgumentException e) {
+                log.warn("⚠ Venta {} rechazada: {}", index, e.getMessage());
+                results[index] = SaleOrderImportResult.rejected(index, e.getMessage());
+            }
+        }
+        return pending;
+    }
+
+    private Set<Integer> collectIds(List<SaleOrderRequest> requests, Function<SaleOrderRequest, Integer> id) {
+        return requests.stream().map(id).collect(Collectors.toSet());
+    }
+
+    /**
+     * Guarda un bloque de ventas en una transacción. Los correlativos de cada
+     * configuración se apartan de una vez antes de abrirla; las órdenes y
+     * detalles se insertan en lote al hacer commit.
+     */
+    private void saveImportedSales(TransactionTemplate transaction, List<ImportedSale> sales, Integer createdByUserId) {
+        Map<Integer, List<ImportedSale>> byConfig = sales.stream()
+            .collect(Collectors.groupingBy(sale -> sale.config.getId(), LinkedHashMap::new, Collectors.toList()));
+        List<CorrelativeAllocator.Reservation> reservations = new ArrayList<>();
+        try {
+            for (Map.Entry<Integer, List<ImportedSale>> group : byConfig.entrySet()) {
+                CorrelativeAllocator.Reservation reservation = correlativeAllocator.reserve(group.getKey(), group.getValue().size());
+                reservations.add(reservation);
+                List<Integer> numbers = reservation.numbers();
+                for (int i = 0; i < numbers.size(); i++) {
+                    group.getValue().get(i).documentNumber = numbers.get(i);
+                }
+            }
+
+            transaction.executeWithoutResult(status -> {
+                // Los correlativos se devuelven a sus bloques si el bloque de ventas hace rollback
+                reservations.forEach(correlativeAllocator::bind);
+                for (ImportedSale sale : sales) {
+                    SaleOrder saleOrder = createMainOrder(sale.request, sale.config, createdByUserId, sale.documentNumber);
+                    String idempotencyKey = sale.request.getIdempotencyKey();
+                    if (idempotencyKey != null) {
+                        saleOrder.setIdempotencyKey(idempotencyKey);
+                        saleOrder.setIdempotencyHash(requestHash(sale.request));
+                    }
+                    calculateAndSetTotals(saleOrder, sale.calculations);
+                    sale.saleOrder = saleOrderRepository.save(saleOrder);
+                    createAndSaveDetails(sale.saleOrder, sale.request.getDetails(), sale.calculations);
+                    if (idempotencyKey != null) {
+                        registerIdempotencyKey(createdByUserId + ":" + idempotencyKey, sale.saleOrder.getId());
+                    }
+                }
+            });
+        } finally {
+            reservations.forEach(correlativeAllocator::cancel);
+        }
+    }
+
+    /**
+     * Identifica qué entidad relacionada no existe. Solo se usa cuando la
+     * consulta de la configuración correlativa no devolvió resultado.
      */
     private void validateRelatedEntities(SaleOrderRequest request) {
         log.info("▶ Validando entidades relacionadas...");
@@ -179,64 +596,68 @@ public class SaleOrderService {
     /**
      * Valida que el usuario tenga permisos en el punto de venta
      */
-    private void validateUserPermissions(Integer salePointId, String userToken) {
-        log.info("▶ Validando permisos de usuario en punto de venta: {}", salePointId);
+    private void validateUserPermissions(SalePoint salePoint, String userToken) {
+        log.info("▶ Validando permisos de usuario en punto de venta: {}", salePoint.getId());
         
         // TODO: Implementar validación real con JWT token
         // Por ahora, simulamos que siempre tiene permisos
-        Optional<SalePoint> salePoint = salePointRepository.findById(salePointId);
-        if (salePoint.isPresent()) {
-            log.info("✓ Usuario autorizado para punto de venta: {}", salePointId);
-        } else {
-            throw new IllegalArgumentException("Punto de venta no encontrado: " + salePointId);
-        }
+        log.info("✓ Usuario autorizado para punto de venta: {}", salePoint.getId());
     }
 
     /**
-     * Obtiene y valida la configuración correlativa, genera el siguiente número
+     * Obtiene la configuración correlativa con su punto de venta, validando en
+     * la misma consulta que existan el cliente y la forma de pago
      */
-    private SalePointDocumentType validateAndGetCorrelativeConfig(Integer salePointId, Integer documentTypeId) {
+    private SalePointDocumentType validateAndGetCorrelativeConfig(SaleOrderRequest request) {
+        Integer salePointId = request.getSalePointId();
+        Integer documentTypeId = request.getDocumentTypeId();
         log.info("▶ Validando configuración correlativa para punto: {}, documento: {}", salePointId, documentTypeId);
 
-        // Buscar configuración usando el repository existente
         Optional<SalePointDocumentType> configOpt = salePointDocumentTypeRepository
-            .findBySalePointAndDocumentType(salePointId, documentTypeId, 1); // organizationId = 1
+            .findForSale(salePointId, documentTypeId, 1, request.getClientId(), request.getPaymentTermId()); // organizationId = 1
 
         if (!configOpt.isPresent()) {
+            // Sin resultado: se revisa una por una para informar qué falta
+            validateRelatedEntities(request);
             throw new IllegalArgumentException(
                 "No existe configuración correlativa para punto de venta " + salePointId + 
                 " y tipo de documento " + documentTypeId);
         }
 
         SalePointDocumentType config = configOpt.get();
-        
-        // Verificar que no hayamos excedido el rango usando finalNumberAuthorized
-        if (config.getLatestNumberIssued() >= config.getFinalNumberAuthorized()) {
-            throw new IllegalArgumentException(
-                "Se ha agotado el rango de numeración. Último emitido: " + config.getLatestNumberIssued() + 
-                ", Máximo permitido: " + config.getFinalNumberAuthorized());
-        }
 
-        log.info("✓ Configuración correlativa válida - Siguiente número: {}", config.getLatestNumberIssued() + 1);
+        // El rango autorizado lo valida CorrelativeAllocator al reservar cada bloque
+        log.info("✓ Configuración correlativa válida - ID: {}", config.getId());
         return config;
     }
 
+    /**
+     * Carga los artículos de los detalles en una consulta IN
+     */
+    private Map<Integer, Article> loadArticles(List<SaleOrderDetailRequest> details) {
+        Set<Integer> articleIds = details.stream()
+            .map(SaleOrderDetailRequest::getArticleId)
+            .collect(Collectors.toSet());
+        return articleRepository.findAllById(articleIds)
+            .stream()
+            .collect(Collectors.toMap(Article::getId, Function.identity()));
+    }
+
     /**
      * Valida inventario disponible y calcula precios desde el catálogo
      */
-    private List<SaleOrderDetailCalculation> validateInventoryAndCalculatePrices(List<SaleOrderDetailRequest> details) {
+    private List<SaleOrderDetailCalculation> validateInventoryAndCalculatePrices(List<SaleOrderDetailRequest> details,
+                                                                                Map<Integer, Article> articles) {
         log.info("▶ Validando inventario y calculando precios para {} artículos", details.size());
         
         List<SaleOrderDetailCalculation> calculations = new ArrayList<>();
 
         for (SaleOrderDetailRequest detail : details) {
-            Optional<Article> articleOpt = articleRepository.findById(detail.getArticleId());
-            if (!articleOpt.isPresent()) {
+            Article article = articles.get(detail.getArticleId());
+            if (article == null) {
                 throw new IllegalArgumentException("Artículo no encontrado con ID: " + detail.getArticleId());
             }
 
-            Article article = articleOpt.get();
-
             // Por simplicidad, asumimos que siempre hay stock disponible
             log.info("Artículo encontrado: {} - {}", article.getId(), article.getName());
 
@@ -295,12 +716,10 @@ public class SaleOrderService {
     /**
      * Crea la orden principal con número de documento
      */
-    private SaleOrder createMainOrder(SaleOrderRequest request, SalePointDocumentType salePointDocType, String userToken) {
+    private SaleOrder createMainOrder(SaleOrderRequest request, SalePointDocumentType salePointDocType,
+                                      Integer createdByUserId, Integer documentNumber) {
         log.info("▶ Creando orden principal...");
 
-        // Extraer usuario del token JWT
-        Integer createdByUserId = extractUserIdFromToken(userToken);
-
         SaleOrder saleOrder = new SaleOrder();
         
         // Datos básicos requeridos
@@ -311,9 +730,8 @@ public class SaleOrderService {
         saleOrder.setOrganizationId(request.getOrganizationId());
         saleOrder.setCreatedBy(createdByUserId); // Extraído del token JWT
 
-        // Generar número de documento correlativo
-        Integer nextDocumentNumber = salePointDocType.getLatestNumberIssued() + 1;
-        saleOrder.setDocumentNumber(nextDocumentNumber);
+        // Número de documento correlativo
+        saleOrder.setDocumentNumber(documentNumber);
 
         // Fechas y tiempos
         saleOrder.setEmissionDate(request.getEmissionDate() != null ? request.getEmissionDate() : LocalDate.now());
@@ -330,7 +748,7 @@ public class SaleOrderService {
         saleOrder.setOperationType(request.getOperationType());
         saleOrder.setIncomeType(request.getIncomeType());
 
-        log.info("✓ Orden principal creada con número de documento: {}", nextDocumentNumber);
+        log.info("✓ Orden principal creada con número de documento: {}", documentNumber);
         return saleOrder;
     }
 
@@ -404,19 +822,6 @@ public class SaleOrderService {
         log.info("✓ {} detalles guardados correctamente", details.size());
     }
 
-    /**
-     * Incrementa el correlativo del punto de venta
-     */
-    private void updateCorrelative(SalePointDocumentType salePointDocType) {
-        log.info("▶ Incrementando correlativo desde {} a {}", 
-                 salePointDocType.getLatestNumberIssued(), salePointDocType.getLatestNumberIssued() + 1);
-
-        salePointDocType.setLatestNumberIssued(salePointDocType.getLatestNumberIssued() + 1);
-        salePointDocumentTypeRepository.save(salePointDocType);
-
-        log.info("✓ Correlativo actualizado a: {}", salePointDocType.getLatestNumberIssued());
-    }
-
     public SaleOrder updateSaleOrder(Integer id, SaleOrderRequest request) {
         log.info("Actualizando orden de venta con ID: {}", id);
         
@@ -445,6 +850,30 @@ public class SaleOrderService {
         saleOrderRepository.deleteById(id);
     }
 
+    /**
+     * Clase interna para una venta válida de una importación en lote
+     */
+    private static class ImportedSale {
+        private final int index;
+        private final SaleOrderRequest request;
+        private final SalePointDocumentType config;
+        private final List<SaleOrderDetailCalculation> calculations;
+        private Integer documentNumber;
+        private SaleOrder saleOrder;
+
+        ImportedSale(int index, SaleOrderRequest request, SalePointDocumentType config,
+                     List<SaleOrderDetailCalculation> calculations) {
+            this.index = index;
+            this.request = request;
+            this.config = config;
+            this.calculations = calculations;
+        }
+
+        SaleOrderImportResult created() {
+            return SaleOrderImportResult.created(index, saleOrder.getId(), saleOrder.getDocumentNumber(), saleOrder.getSalesTotal());
+        }
+    }
+
     /**
      * Clase interna para los cálculos de detalles
      */
@@ -31,6 +31,9 @@ public class SalePointDocumentTypeService {
     @Autowired
     private DocumentTypeRepository documentTypeRepository;
     
+    @Autowired
+    private CorrelativeAllocator correlativeAllocator;
+    
     // Get all sale point document types by organization
     public List<SalePointDocumentType> getAllByOrganization(Integer organizationId) {
         return salePointDocumentTypeRepository.findByOrganizationId(organizationId);
@@ -87,14 +90,9 @@ public class SalePointDocumentTypeService {
     public Integer issueNextNumber(Integer salePointId, Integer documentTypeId, Integer organizationId) {
         Optional<SalePointDocumentType> spdt = getBySalePointAndDocumentType(salePointId, documentTypeId, organizationId);
         if (spdt.isPresent()) {
-            SalePointDocumentType documentType = spdt.get();
-            int nextNumber = documentType.getLatestNumberIssued() + 1;
-            
-            if (nextNumber <= documentType.getFinalNumberAuthorized()) {
-                documentType.setLatestNumberIssued(nextNumber);
-                salePointDocumentTypeRepository.save(documentType);
-                return nextNumber;
-            } else {
+            try {
+                return correlativeAllocator.issueDirect(spdt.get().getId());
+            } catch (IllegalArgumentException e) {
                 throw new RuntimeException("No more correlative numbers available for this document type. Authorized range exhausted.");
             }
         } else {
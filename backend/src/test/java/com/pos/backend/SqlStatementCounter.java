@@ -0,0 +1,57 @@
+package com.pos.backend;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cuenta las sentencias que Hibernate prepara en el perfil test (un lote JDBC
+ * de inserts cuenta una vez). Las llamadas a secuencias se cuentan aparte:
+ * con allocationSize=50 dependen de cuántos ids ya se tomaron, no de la venta.
+ *
+ * Como listener de sesión (hibernate.session.events.auto) cuenta además cada
+ * executeBatch: sin batch_size los inserts dejan de ir en lotes y el número
+ * de lotes ya no corresponde a las líneas de la venta.
+ */
+public class SqlStatementCounter implements StatementInspector, SessionEventListener {
+
+    private static final AtomicInteger statements = new AtomicInteger();
+    private static final AtomicInteger sequenceCalls = new AtomicInteger();
+    private static final AtomicInteger batches = new AtomicInteger();
+
+    @Override
+    public String inspect(String sql) {
+        String lower = sql.toLowerCase(Locale.ROOT);
+        if (lower.contains("next value for") || lower.contains("nextval(")) {
+            sequenceCalls.incrementAndGet();
+        } else {
+            statements.incrementAndGet();
+        }
+        return sql;
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batches.incrementAndGet();
+    }
+
+    public static void reset() {
+        statements.set(0);
+        sequenceCalls.set(0);
+        batches.set(0);
+    }
+
+    public static int statements() {
+        return statements.get();
+    }
+
+    public static int sequenceCalls() {
+        return sequenceCalls.get();
+    }
+
+    public static int batches() {
+        return batches.get();
+    }
+}
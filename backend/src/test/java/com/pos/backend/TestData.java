@@ -0,0 +1,142 @@
+package com.pos.backend;
+
+import com.pos.backend.dto.SaleOrderDetailRequest;
+import com.pos.backend.dto.SaleOrderRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filas de prueba insertadas directamente en la base H2 del perfil test.
+ *
+ * Las pruebas solo indican las columnas que les importan; las demás columnas
+ * NOT NULL sin valor por defecto ni identity se completan con un valor de su tipo. Las
+ * llaves foráneas se desactivan para no tener que crear todo el catálogo.
+ */
+public final class TestData {
+
+    // Usuario que crea DataInitializer
+    public static final String SELLER_EMAIL = "vendedor@pos.com";
+
+    // Artículos 1..ARTICLES con precio 1.13
+    public static final int ARTICLES = 200;
+
+    private TestData() {
+    }
+
+    public static void disableForeignKeys(JdbcTemplate jdbc) {
+        jdbc.execute("SET REFERENTIAL_INTEGRITY FALSE");
+    }
+
+    public static void row(JdbcTemplate jdbc, String table, Map<String, Object> values) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        values.forEach((column, value) -> row.put(column.toUpperCase(), value));
+
+        for (Map<String, Object> column : jdbc.queryForList(
+                "SELECT column_name, data_type, column_default FROM information_schema.columns " +
+                "WHERE upper(table_name) = upper(?) AND is_nullable = 'NO' AND is_identity = 'NO'", table)) {
+            String name = (String) column.get("COLUMN_NAME");
+            String type = (String) column.get("DATA_TYPE");
+            if (row.containsKey(name) || column.get("COLUMN_DEFAULT") != null) {
+                continue;
+            }
+            row.put(name, defaultValue(type));
+        }
+
+        jdbc.update("INSERT INTO " + table + " (" + String.join(", ", row.keySet()) + ") VALUES (" +
+                    String.join(", ", Collections.nCopies(row.size(), "?")) + ")", row.values().toArray());
+    }
+
+    /**
+     * Configuración correlativa del tipo de documento 1 con el rango
+     * [initial, last] y latestNumberIssued = latest. Cada configuración usa el
+     * punto de venta de su mismo id, para que las pruebas no compartan ventas.
+     */
+    public static void correlativeConfig(JdbcTemplate jdbc, int id, int initial, int last, int latest) {
+        row(jdbc, "SALE_Sale_Point_Document_Type", Map.of(
+            "id", id, "organization_id", 1, "sale_point_id", id, "document_type_id", 1,
+            "initial_number_authorized", initial, "final_number_authorized", last, "latest_number_issued", latest));
+    }
+
+    /**
+     * Cliente 1, forma de pago 1, tipo de documento 1, los artículos y una
+     * configuración correlativa con su punto de venta salePointId. Lo que ya
+     * existe no se vuelve a insertar, porque la base se comparte entre pruebas.
+     */
+    public static void saleCatalog(JdbcTemplate jdbc, int salePointId) {
+        disableForeignKeys(jdbc);
+        rowIfAbsent(jdbc, "SALE_Client", 1);
+        rowIfAbsent(jdbc, "purch_payment_form", 1);
+        rowIfAbsent(jdbc, "PURCH_Document_Type", 1);
+        if (rowIfAbsent(jdbc, "SALE_Sale_Point", salePointId)) {
+            correlativeConfig(jdbc, salePointId, 1, 1000000, 0);
+        }
+        for (int id = 1; id <= ARTICLES; id++) {
+            if (!exists(jdbc, "INV_Article", id)) {
+                row(jdbc, "INV_Article", Map.of("id", id, "retail_price", new BigDecimal("1.13")));
+            }
+        }
+    }
+
+    /**
+     * Venta del cliente 1 con los artículos 1..lines, una unidad de cada uno
+     */
+    public static SaleOrderRequest saleRequest(int salePointId, int lines) {
+        SaleOrderRequest request = new SaleOrderRequest();
+        request.setClientId(1);
+        request.setSalePointId(salePointId);
+        request.setDocumentTypeId(1);
+        request.setPaymentTermId(1);
+        request.setPaymentFormId(1);
+        request.setOrganizationId(1);
+        List<SaleOrderDetailRequest> details = new ArrayList<>();
+        for (int articleId = 1; articleId <= lines; articleId++) {
+            SaleOrderDetailRequest detail = new SaleOrderDetailRequest();
+            detail.setArticleId(articleId);
+            detail.setQuantity(BigDecimal.ONE);
+            details.add(detail);
+        }
+        request.setDetails(details);
+        return request;
+    }
+
+    private static boolean rowIfAbsent(JdbcTemplate jdbc, String table, int id) {
+        if (exists(jdbc, table, id)) {
+            return false;
+        }
+        row(jdbc, table, Map.of("id", id));
+        return true;
+    }
+
+    private static boolean exists(JdbcTemplate jdbc, String table, int id) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE id = ?", Integer.class, id) > 0;
+    }
+
+    private static Object defaultValue(String type) {
+        long now = System.currentTimeMillis();
+        if (type.contains("TIMESTAMP")) {
+            return new Timestamp(now);
+        }
+        if (type.contains("DATE")) {
+            return new Date(now);
+        }
+        if (type.contains("TIME")) {
+            return new Time(now);
+        }
+        if (type.contains("CHAR")) {
+            return "X";
+        }
+        if (type.contains("BOOL")) {
+            return Boolean.TRUE;
+        }
+        return 1;
+    }
+}
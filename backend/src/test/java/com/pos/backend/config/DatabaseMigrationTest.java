@@ -0,0 +1,80 @@
+package com.pos.backend.config;
+
+import com.pos.backend.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DatabaseMigrationTest {
+
+    @Autowired
+    private DatabaseMigration databaseMigration;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void duplicatedCorrelativesAreReportedAndNotRenumbered() {
+        int configId = 301;
+        TestData.disableForeignKeys(jdbc);
+        TestData.correlativeConfig(jdbc, configId, 1, 100000, 3);
+
+        // Base anterior a la restricción, con el correlativo 2 repetido tres veces
+        jdbc.execute("ALTER TABLE SALE_Order DROP CONSTRAINT " + DatabaseMigration.CORRELATIVE_CONSTRAINT);
+        int[][] orders = {{910001, 1}, {910002, 2}, {910003, 2}, {910004, 3}, {910005, 2}};
+        for (int[] order : orders) {
+            TestData.row(jdbc, "SALE_Order", Map.of("id", order[0], "sale_point_document_type_id", configId, "document_number", order[1]));
+        }
+
+        assertFalse(databaseMigration.addCorrelativeConstraint());
+
+        // Los correlativos emitidos y la configuración quedan como estaban
+        assertEquals(List.of(1, 2, 2, 3, 2), documentNumbers(configId));
+        assertEquals(3, jdbc.queryForObject(
+            "SELECT latest_number_issued FROM SALE_Sale_Point_Document_Type WHERE id = ?", Integer.class, configId));
+
+        // Corregidos a mano, el siguiente arranque crea la restricción
+        jdbc.update("DELETE FROM SALE_Order WHERE id IN (910003, 910005)");
+        assertTrue(databaseMigration.addCorrelativeConstraint());
+        assertThrows(Exception.class, () -> TestData.row(jdbc, "SALE_Order",
+            Map.of("id", 910006, "sale_point_document_type_id", configId, "document_number", 1)));
+
+        // Con la restricción creada no hace nada
+        assertTrue(databaseMigration.addCorrelativeConstraint());
+    }
+
+    @Test
+    void sequenceBehindTheTableIsMovedPastTheHighestId() {
+        // Secuencia creada en 1 sobre una tabla con ids de la estrategia anterior
+        TestData.disableForeignKeys(jdbc);
+        TestData.row(jdbc, "SALE_Order_Tax", Map.of("id", 75000));
+        jdbc.execute("ALTER SEQUENCE sale_order_tax_seq RESTART WITH 1");
+
+        databaseMigration.alignSequences();
+
+        // El bloque de 50 que entrega el siguiente valor empieza después de 75000
+        long next = jdbc.queryForObject("SELECT NEXT VALUE FOR sale_order_tax_seq", Long.class);
+        assertTrue(next - 50 >= 75000, "Siguiente valor: " + next);
+
+        // Una secuencia ya alineada no se reinicia: solo avanza el bloque que consulta
+        databaseMigration.alignSequences();
+        assertEquals(next + 100, jdbc.queryForObject("SELECT NEXT VALUE FOR sale_order_tax_seq", Long.class));
+    }
+
+    private List<Integer> documentNumbers(int configId) {
+        return jdbc.queryForList(
+            "SELECT document_number FROM SALE_Order WHERE sale_point_document_type_id = ? ORDER BY id", Integer.class, configId);
+    }
+}
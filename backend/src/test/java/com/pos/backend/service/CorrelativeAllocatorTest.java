@@ -0,0 +1,212 @@
+package com.pos.backend.service;
+
+import com.pos.backend.TestData;
+import com.pos.backend.entity.SalePointDocumentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Entrega de correlativos con bloques de 7 números (perfil test) y un pool de
+ * 4 conexiones. Cada prueba usa su propia configuración correlativa, porque
+ * el contexto y la base se comparten entre pruebas.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CorrelativeAllocatorTest {
+
+    @Autowired
+    private CorrelativeAllocator correlativeAllocator;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        TestData.disableForeignKeys(jdbc);
+        // Números que llegaron a commit, como lo haría SALE_Order
+        jdbc.execute("CREATE TABLE IF NOT EXISTS test_used_correlative (config_id INT, number INT, PRIMARY KEY (config_id, number))");
+    }
+
+    @Test
+    void concurrentSalesGetUniqueNumbersWithoutGaps() throws Exception {
+        int configId = 201;
+        TestData.correlativeConfig(jdbc, configId, 1, 100000, 0);
+
+        // 8 cajeros con 4 conexiones; uno de cada cinco hace rollback
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> cashiers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            cashiers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    sale(configId, ThreadLocalRandom.current().nextInt(5) == 0);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> cashier : cashiers) {
+            cashier.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Los números devueltos por rollback se entregan antes que los del bloque siguiente
+        int latest = latestNumberIssued(configId);
+        while (used(configId).size() < latest) {
+            sale(configId, false);
+        }
+        assertEquals(IntStream.rangeClosed(1, latest).boxed().collect(Collectors.toList()), used(configId));
+        assertEquals(latest, latestNumberIssued(configId));
+    }
+
+    @Test
+    void concurrentRefillReservesOneBlock() throws Exception {
+        int configId = 202;
+        TestData.correlativeConfig(jdbc, configId, 1, 100000, 0);
+
+        // 7 ventas a la vez con la configuración vacía caben en un bloque de 7
+        ExecutorService executor = Executors.newFixedThreadPool(7);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CorrelativeAllocator.Reservation>> reservations = new ArrayList<>();
+        for (int t = 0; t < 7; t++) {
+            reservations.add(executor.submit(() -> {
+                start.await();
+                return correlativeAllocator.reserve(configId, 1);
+            }));
+        }
+        start.countDown();
+        List<Integer> numbers = new ArrayList<>();
+        for (Future<CorrelativeAllocator.Reservation> reservation : reservations) {
+            numbers.addAll(reservation.get(30, TimeUnit.SECONDS).numbers());
+        }
+        executor.shutdown();
+
+        assertEquals(1, leases(configId).size());
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), numbers.stream().sorted().collect(Collectors.toList()));
+        for (Future<CorrelativeAllocator.Reservation> reservation : reservations) {
+            correlativeAllocator.cancel(reservation.get());
+        }
+    }
+
+    @Test
+    void rolledBackAndCancelledNumbersAreReused() {
+        int configId = 203;
+        TestData.correlativeConfig(jdbc, configId, 1, 100000, 0);
+
+        Integer rolledBack = transaction.execute(status -> {
+            Integer number = correlativeAllocator.next(config(configId));
+            status.setRollbackOnly();
+            return number;
+        });
+        assertEquals(1, rolledBack);
+
+        CorrelativeAllocator.Reservation reservation = correlativeAllocator.reserve(configId, 2);
+        assertEquals(List.of(1, 2), reservation.numbers());
+        correlativeAllocator.cancel(reservation);
+        // Solo la primera llamada devuelve los números
+        correlativeAllocator.cancel(reservation);
+
+        assertEquals(1, sale(configId, false));
+        assertEquals(2, sale(configId, false));
+        assertEquals(3, sale(configId, false));
+    }
+
+    @Test
+    void orphanedLeaseIsRecoveredSkippingUsedNumbers() {
+        int configId = 204;
+        TestData.correlativeConfig(jdbc, configId, 1, 100000, 510);
+
+        // Bloque 501-510 de una instancia caída; 502 y 505 ya tienen venta
+        LocalDateTime abandoned = LocalDateTime.now().minusHours(1);
+        TestData.row(jdbc, "SALE_Correlative_Lease", Map.of(
+            "sale_point_document_type_id", configId, "first_number", 501, "last_number", 510,
+            "status", "A", "owner", "instancia-caida", "leased_at", abandoned, "renewed_at", abandoned));
+        TestData.row(jdbc, "SALE_Order", Map.of("id", 900001, "sale_point_document_type_id", configId, "document_number", 502));
+        TestData.row(jdbc, "SALE_Order", Map.of("id", 900002, "sale_point_document_type_id", configId, "document_number", 505));
+
+        correlativeAllocator.recoverOnStartup();
+
+        List<Integer> recovered = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            recovered.add(sale(configId, false));
+        }
+        assertEquals(List.of(501, 503, 504, 506, 507, 508, 509, 510), recovered);
+        assertEquals(511, sale(configId, false));
+
+        // El heartbeat cierra el bloque recuperado, que ya se agotó
+        correlativeAllocator.heartbeat();
+        Map<String, Object> lease = jdbc.queryForMap(
+            "SELECT owner, status FROM SALE_Correlative_Lease WHERE sale_point_document_type_id = ? AND first_number = 501", configId);
+        assertTrue(!"instancia-caida".equals(lease.get("OWNER")));
+        assertEquals("C", lease.get("STATUS"));
+    }
+
+    /**
+     * Venta como en SaleOrderService: el número se aparta antes de abrir la
+     * transacción, que lo guarda o hace rollback
+     */
+    private Integer sale(int configId, boolean rollback) {
+        CorrelativeAllocator.Reservation reservation = correlativeAllocator.reserve(configId, 1);
+        try {
+            return transaction.execute(status -> {
+                correlativeAllocator.bind(reservation);
+                Integer number = reservation.numbers().get(0);
+                if (rollback) {
+                    status.setRollbackOnly();
+                } else {
+                    jdbc.update("INSERT INTO test_used_correlative VALUES (?, ?)", configId, number);
+                }
+                return number;
+            });
+        } finally {
+            correlativeAllocator.cancel(reservation);
+        }
+    }
+
+    private SalePointDocumentType config(int configId) {
+        SalePointDocumentType config = new SalePointDocumentType();
+        config.setId(configId);
+        return config;
+    }
+
+    private List<Integer> used(int configId) {
+        return jdbc.queryForList("SELECT number FROM test_used_correlative WHERE config_id = ? ORDER BY number", Integer.class, configId);
+    }
+
+    private List<Integer> leases(int configId) {
+        return jdbc.queryForList("SELECT id FROM SALE_Correlative_Lease WHERE sale_point_document_type_id = ?", Integer.class, configId);
+    }
+
+    private int latestNumberIssued(int configId) {
+        return jdbc.queryForObject("SELECT latest_number_issued FROM SALE_Sale_Point_Document_Type WHERE id = ?", Integer.class, configId);
+    }
+}
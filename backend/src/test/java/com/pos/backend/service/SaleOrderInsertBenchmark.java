@@ -0,0 +1,90 @@
+package com.pos.backend.service;
+
+import com.pos.backend.SqlStatementCounter;
+import com.pos.backend.TestData;
+import com.pos.backend.dto.SaleOrderRequest;
+import com.pos.backend.util.JwtUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+
+/**
+ * Mide createSaleOrder con 1, 20 y 200 líneas sobre H2 en memoria: sentencias
+ * SQL, llamadas a secuencias y milisegundos por venta, después de
+ * benchmark.sales ventas de calentamiento por tamaño.
+ *
+ * No corre con mvn test (el nombre no termina en Test). Con inserts en lote,
+ * como en producción:
+ *
+ *   mvn test -Dtest=SaleOrderInsertBenchmark
+ *
+ * Sin inserts en lote, para comparar:
+ *
+ *   mvn test -Dtest=SaleOrderInsertBenchmark -Dspring.jpa.properties.hibernate.jdbc.batch_size=1
+ *
+ * Otros tamaños: -Dbenchmark.lines=1,40,400 -Dbenchmark.sales=100 (hasta
+ * TestData.ARTICLES líneas). H2 no tiene latencia de red: en PostgreSQL cada
+ * sentencia ahorrada pesa más que aquí.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SaleOrderInsertBenchmark {
+
+    private static final int SALE_POINT_ID = 402;
+
+    @Autowired
+    private SaleOrderService saleOrderService;
+
+    @Autowired
+    private CorrelativeAllocator correlativeAllocator;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Value("${benchmark.lines:1,20,200}")
+    private String lineCounts;
+
+    @Value("${benchmark.sales:50}")
+    private int sales;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:0}")
+    private int batchSize;
+
+    @Test
+    void createSaleOrder() {
+        TestData.saleCatalog(jdbc, SALE_POINT_ID);
+        String token = jwtUtil.generateToken(TestData.SELLER_EMAIL);
+
+        System.out.printf("%ncreateSaleOrder, hibernate.jdbc.batch_size=%d, %d ventas por tamaño%n", batchSize, sales);
+        System.out.printf("%8s %16s %16s %12s %10s%n", "líneas", "sentencias/venta", "secuencias/venta", "lotes/venta", "ms/venta");
+        for (int lines : Arrays.stream(lineCounts.split(",")).mapToInt(Integer::parseInt).toArray()) {
+            SaleOrderRequest request = TestData.saleRequest(SALE_POINT_ID, lines);
+            // Correlativos en memoria para calentamiento y medición: las reservas de bloque no se miden
+            correlativeAllocator.cancel(correlativeAllocator.reserve(SALE_POINT_ID, 2 * sales));
+            for (int i = 0; i < sales; i++) {
+                saleOrderService.createSaleOrder(request, token);
+            }
+
+            SqlStatementCounter.reset();
+            long start = System.nanoTime();
+            for (int i = 0; i < sales; i++) {
+                saleOrderService.createSaleOrder(request, token);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%8d %16.1f %16.1f %12.1f %10.2f%n", lines,
+                              SqlStatementCounter.statements() / (double) sales,
+                              SqlStatementCounter.sequenceCalls() / (double) sales,
+                              SqlStatementCounter.batches() / (double) sales,
+                              elapsed / 1e6 / sales);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.pos.backend.service;
+
+import com.pos.backend.SqlStatementCounter;
+import com.pos.backend.TestData;
+import com.pos.backend.dto.SaleOrderImportResult;
+import com.pos.backend.dto.SaleOrderRequest;
+import com.pos.backend.entity.SaleOrder;
+import com.pos.backend.exception.IdempotencyKeyMismatchException;
+import com.pos.backend.util.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SaleOrderServiceTest {
+
+    private static final int SALE_POINT_ID = 401;
+
+    // Usuario que crea DataInitializer, además del vendedor
+    private static final String OTHER_USER_EMAIL = "nuevouser@pos.com";
+
+    @Autowired
+    private SaleOrderService saleOrderService;
+
+    @Autowired
+    private CorrelativeAllocator correlativeAllocator;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:0}")
+    private int batchSize;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        TestData.saleCatalog(jdbc, SALE_POINT_ID);
+        token = jwtUtil.generateToken(TestData.SELLER_EMAIL);
+    }
+
+    @Test
+    void statementsPerSaleDoNotGrowWithLineCount() {
+        assertTrue(batchSize > 1, "hibernate.jdbc.batch_size debe agrupar los inserts");
+        Map<Integer, Integer> statementsByLines = new LinkedHashMap<>();
+        Map<Integer, Integer> batchesByLines = new LinkedHashMap<>();
+        Map<Integer, Integer> expectedBatches = new LinkedHashMap<>();
+        for (int lines : new int[] {1, 20, 200}) {
+            // Deja un correlativo en memoria: la reserva de un bloque no es parte de la venta
+            correlativeAllocator.cancel(correlativeAllocator.reserve(SALE_POINT_ID, 1));
+
+            SqlStatementCounter.reset();
+            SaleOrder saleOrder = saleOrderService.createSaleOrder(TestData.saleRequest(SALE_POINT_ID, lines), token);
+            statementsByLines.put(lines, SqlStatementCounter.statements());
+            batchesByLines.put(lines, SqlStatementCounter.batches());
+            // Un lote para la venta y los detalles de batch_size en batch_size
+            expectedBatches.put(lines, 1 + (lines + batchSize - 1) / batchSize);
+
+            // Cada llamada a una secuencia entrega allocationSize=50 ids
+            assertTrue(SqlStatementCounter.sequenceCalls() <= 2 + (lines + 49) / 50,
+                "Llamadas a secuencias con " + lines + " líneas: " + SqlStatementCounter.sequenceCalls());
+
+            assertEquals(lines, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM SALE_Order_Detail WHERE order_id = ?", Integer.class, saleOrder.getId()));
+        }
+
+        int oneLine = statementsByLines.get(1);
+        assertEquals(Map.of(1, oneLine, 20, oneLine, 200, oneLine), statementsByLines, "Sentencias por venta según líneas");
+        assertEquals(expectedBatches, batchesByLines, "Lotes JDBC por venta según líneas");
+    }
+
+    @Test
+    void idempotencyKeyIsScopedToUserAndRequest() {
+        String key = "caja-401-venta-1";
+        SaleOrderRequest request = TestData.saleRequest(SALE_POINT_ID, 2);
+        SaleOrder created = saleOrderService.createSaleOrder(request, token, key);
+
+        // Mismo usuario y mismo request: reintento de la misma venta
+        assertEquals(created.getId(), saleOrderService.findByIdempotencyKey(key, request, token).get().getId());
+
+        // Mismo usuario con otro request: la clave ya se usó
+        assertThrows(IdempotencyKeyMismatchException.class,
+            () -> saleOrderService.findByIdempotencyKey(key, TestData.saleRequest(SALE_POINT_ID, 3), token));
+
+        // Otro usuario con la misma clave no recibe esa venta y puede crear la suya
+        String otherToken = jwtUtil.generateToken(OTHER_USER_EMAIL);
+        assertTrue(saleOrderService.findByIdempotencyKey(key, request, otherToken).isEmpty());
+        SaleOrder other = saleOrderService.createSaleOrder(request, otherToken, key);
+        assertNotEquals(created.getId(), other.getId());
+        assertEquals(other.getId(), saleOrderService.findByIdempotencyKey(key, request, otherToken).get().getId());
+    }
+
+    @Test
+    void resentImportReplaysSalesWithIdempotencyKey() {
+        SaleOrderRequest first = importRequest("lote-401-1", 1);
+        SaleOrderRequest second = importRequest("lote-401-2", 2);
+        SaleOrderRequest withoutKey = importRequest(null, 1);
+
+        List<SaleOrderImportResult> sent = saleOrderService.importSaleOrders(List.of(first, second, withoutKey), token);
+        sent.forEach(result -> assertNull(result.getReplayed()));
+        int saved = salesCount();
+
+        // Reenvío tras un timeout, con la misma clave repetida en el lote y otra reutilizada con otra venta
+        List<SaleOrderImportResult> resent = saleOrderService.importSaleOrders(List.of(
+            first, second, importRequest("lote-401-1", 1), importRequest("lote-401-2", 3),
+            importRequest("lote-401-3", 1), importRequest("lote-401-3", 1)), token);
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(resent.get(i).getReplayed());
+            assertEquals(sent.get(i).getSaleOrderId(), resent.get(i).getSaleOrderId());
+            assertEquals(sent.get(i).getDocumentNumber(), resent.get(i).getDocumentNumber());
+        }
+        assertTrue(resent.get(2).getReplayed());
+        assertEquals(sent.get(0).getSaleOrderId(), resent.get(2).getSaleOrderId());
+        assertFalse(resent.get(3).getSuccess());
+        assertNull(resent.get(4).getReplayed());
+        assertTrue(resent.get(5).getReplayed());
+        assertEquals(resent.get(4).getSaleOrderId(), resent.get(5).getSaleOrderId());
+
+        // Solo la venta con clave nueva se guarda y gasta un correlativo
+        assertEquals(saved + 1, salesCount());
+        assertEquals(1, jdbc.queryForObject(
+            "SELECT COUNT(*) FROM SALE_Order WHERE idempotency_key = 'lote-401-1'", Integer.class));
+    }
+
+    @Test
+    void importBatchesInsertsAcrossSales() {
+        int sales = 10;
+        int lines = 3;
+        List<SaleOrderRequest> requests = new ArrayList<>();
+        for (int i = 0; i < sales; i++) {
+            requests.add(importRequest(null, lines));
+        }
+        // Correlativos en memoria: la reserva de bloques no es parte de la importación
+        correlativeAllocator.cancel(correlativeAllocator.reserve(SALE_POINT_ID, sales));
+
+        SqlStatementCounter.reset();
+        List<SaleOrderImportResult> results = saleOrderService.importSaleOrders(requests, token);
+
+        results.forEach(result -> assertTrue(result.getSuccess()));
+        // Con order_inserts las órdenes y los detalles de todas las ventas van en sus propios lotes;
+        // sin él cada venta alterna orden y detalles y corta el lote
+        int expected = (sales + batchSize - 1) / batchSize + (sales * lines + batchSize - 1) / batchSize;
+        assertEquals(expected, SqlStatementCounter.batches(), "Lotes JDBC al importar " + sales + " ventas");
+    }
+
+    private SaleOrderRequest importRequest(String idempotencyKey, int lines) {
+        SaleOrderRequest request = TestData.saleRequest(SALE_POINT_ID, lines);
+        request.setIdempotencyKey(idempotencyKey);
+        return request;
+    }
+
+    private int salesCount() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM SALE_Order WHERE sale_point_document_type_id = ?", Integer.class, SALE_POINT_ID);
+    }
+}
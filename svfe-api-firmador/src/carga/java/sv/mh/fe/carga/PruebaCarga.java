@@ -0,0 +1,126 @@
+package sv.mh.fe.carga;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generador de carga para comparar la latencia del firmador con hilos de
+ * plataforma y con hilos virtuales.
+ *
+ * <pre>
+ * # 1. iniciar el firmador en el modo a medir, sin límite por NIT ni idempotencia
+ * mvn spring-boot:run -Dspring-boot.run.arguments="--spring.threads.virtual.enabled=false --firmador.limite.habilitado=false --firmador.idempotencia.habilitado=false"
+ * # 2. ejecutar la carga
+ * mvn -Pcarga test-compile exec:java -Dcarga.nit=06141234567890 -Dcarga.password=... -Dcarga.etiqueta=plataforma
+ * # 3. repetir con --spring.threads.virtual.enabled=true y -Dcarga.etiqueta=virtual
+ * </pre>
+ *
+ * Cada cliente es un hilo virtual que envía peticiones seguidas a
+ * /firmardocumento/; se descarta una fase de calentamiento y se reportan
+ * throughput, p50, p90, p99 y máximo. Todas las peticiones llevan el mismo NIT
+ * y el mismo DTE: con el límite activo casi todas serían 429 y con la
+ * idempotencia activa se mediría el JWS guardado, no la firma.
+ */
+public class PruebaCarga {
+
+	public static void main(String[] args) throws Exception {
+		String url = System.getProperty("carga.url", "http://localhost:8081/firma/firmardocumento/");
+		String nit = System.getProperty("carga.nit", "06141234567890");
+		String password = System.getProperty("carga.password", "");
+		String etiqueta = System.getProperty("carga.etiqueta", "firmador");
+		int clientes = Integer.getInteger("carga.clientes", 200);
+		int peticiones = Integer.getInteger("carga.peticiones", 20000);
+		int calentamiento = Integer.getInteger("carga.calentamiento", 2000);
+		int items = Integer.getInteger("carga.items", 50);
+
+		String cuerpo = "{\"nit\":\"" + nit + "\",\"passwordPri\":\"" + password + "\",\"dteJson\":" + dte(items) + "}";
+		HttpClient cliente = HttpClient.newBuilder()
+				.executor(Executors.newVirtualThreadPerTaskExecutor())
+				.connectTimeout(Duration.ofSeconds(10))
+				.build();
+		HttpRequest peticion = HttpRequest.newBuilder(URI.create(url))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+				.build();
+
+		System.out.println("Calentamiento: " + calentamiento + " peticiones");
+		ejecutar(cliente, peticion, clientes, calentamiento, new long[calentamiento]);
+
+		long[] latencias = new long[peticiones];
+		long inicio = System.nanoTime();
+		int errores = ejecutar(cliente, peticion, clientes, peticiones, latencias);
+		long total = System.nanoTime() - inicio;
+
+		Arrays.sort(latencias);
+		System.out.printf("%s: clientes=%d peticiones=%d items=%d errores=%d%n", etiqueta, clientes, peticiones, items, errores);
+		System.out.printf("%s: throughput=%.1f firmas/s p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms%n", etiqueta,
+				peticiones / (total / 1e9), ms(percentil(latencias, 50)), ms(percentil(latencias, 90)),
+				ms(percentil(latencias, 99)), ms(latencias[latencias.length - 1]));
+		System.exit(0);
+	}
+
+	private static int ejecutar(HttpClient cliente, HttpRequest peticion, int clientes, int total, long[] latencias)
+			throws InterruptedException {
+		AtomicInteger siguiente = new AtomicInteger();
+		AtomicInteger errores = new AtomicInteger();
+		try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int c = 0; c < clientes; c++) {
+				hilos.submit(() -> {
+					int i;
+					while ((i = siguiente.getAndIncrement()) < total) {
+						long inicio = System.nanoTime();
+						try {
+							HttpResponse<String> respuesta = cliente.send(peticion, HttpResponse.BodyHandlers.ofString());
+							if (respuesta.statusCode() != 200 || !respuesta.body().startsWith("{\"status\":\"OK\"")) {
+								errores.incrementAndGet();
+							}
+						} catch (Exception e) {
+							errores.incrementAndGet();
+						}
+						latencias[i] = System.nanoTime() - inicio;
+					}
+				});
+			}
+		}
+		return errores.get();
+	}
+
+	private static long percentil(long[] ordenadas, int p) {
+		int indice = (int) Math.ceil(p / 100.0 * ordenadas.length) - 1;
+		return ordenadas[Math.max(0, indice)];
+	}
+
+	private static double ms(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * DTE de prueba con la cantidad de líneas indicada.
+	 */
+	static String dte(int items) {
+		StringBuilder json = new StringBuilder(256 + items * 200);
+		json.append("{\"identificacion\":{\"version\":1,\"ambiente\":\"00\",\"tipoDte\":\"01\",")
+				.append("\"numeroControl\":\"DTE-01-00000000-000000000000001\",\"codigoGeneracion\":\"")
+				.append("5A1B2C3D-0000-4000-8000-000000000001\",\"fecEmi\":\"2024-01-01\",\"horEmi\":\"10:00:00\"},")
+				.append("\"cuerpoDocumento\":[");
+		for (int i = 1; i <= items; i++) {
+			if (i > 1) {
+				json.append(',');
+			}
+			json.append("{\"numItem\":").append(i)
+					.append(",\"tipoItem\":1,\"cantidad\":2,\"codigo\":\"ART-").append(i)
+					.append("\",\"uniMedida\":59,\"descripcion\":\"Articulo de prueba ").append(i)
+					.append("\",\"precioUni\":1.25,\"montoDescu\":0,\"ventaGravada\":2.50,\"ivaItem\":0.29}");
+		}
+		json.append("],\"resumen\":{\"totalGravada\":").append(items * 2.5).append(",\"totalPagar\":")
+				.append(items * 2.5).append("}}");
+		return json.toString();
+	}
+}
@@ -0,0 +1,52 @@
+package sv.mh.fe.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sv.mh.fe.security.AlgoritmoFirma;
+import sv.mh.fe.security.ContextoFirma;
+
+/**
+ * Firmas por segundo de ContextoFirma con cada AlgoritmoFirma, con el proveedor
+ * de la JVM y con BouncyCastle, para un DTE de 50 ítems.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlgoritmoFirmaBenchmark {
+
+	@Param({ "RS512", "PS512", "ES256", "ES384" })
+	private AlgoritmoFirma algoritmo;
+
+	@Param({ ContextoFirma.PROVEEDOR_JDK, ContextoFirma.PROVEEDOR_BC })
+	private String proveedor;
+
+	private ContextoFirma contexto;
+
+	private String dte;
+
+	@Setup
+	public void preparar() throws Exception {
+		contexto = new ContextoFirma(algoritmo.generarLlaves().getPrivate(), ContextoFirma.proveedor(proveedor));
+		dte = DatosPrueba.dte(50);
+	}
+
+	@Benchmark
+	public String firmar() throws Exception {
+		return contexto.firmar(dte);
+	}
+}
@@ -0,0 +1,78 @@
+package sv.mh.fe.benchmark;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import sv.mh.fe.almacen.DirectorioAlmacenCertificados;
+import sv.mh.fe.models.CertificadoMH;
+
+/**
+ * Costo de cargar un certificado en un cache miss de CertificadoBusiness: leer el
+ * .crt del directorio y deserializar el XML, solo la deserialización, y leer el
+ * snapshot binario .crtb que reemplaza al XML.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertificadoXmlBenchmark {
+
+	private DirectorioAlmacenCertificados almacen;
+
+	private DirectorioAlmacenCertificados almacenSnapshot;
+
+	private XmlMapper xmlMapper;
+
+	private String xml;
+
+	@Setup
+	public void preparar() throws Exception {
+		CertificadoMH certificado = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD);
+		Path uploads = DatosPrueba.uploads(certificado);
+		almacen = new DirectorioAlmacenCertificados(uploads.toString());
+		almacenSnapshot = new DirectorioAlmacenCertificados(uploads.toString(), true);
+		// genera el .crtb
+		almacenSnapshot.cargar(DatosPrueba.NIT);
+		xmlMapper = new XmlMapper();
+		xmlMapper.registerModule(new JavaTimeModule());
+		xml = DatosPrueba.xml(certificado);
+	}
+
+	@Benchmark
+	public CertificadoMH leerYParsear() throws Exception {
+		return almacen.cargar(DatosPrueba.NIT);
+	}
+
+	@Benchmark
+	public CertificadoMH leerSnapshot() throws Exception {
+		return almacenSnapshot.cargar(DatosPrueba.NIT);
+	}
+
+	@Benchmark
+	public CertificadoMH parsear() throws Exception {
+		return xmlMapper.readValue(xml, CertificadoMH.class);
+	}
+
+	@Benchmark
+	public CertificadoMH parsearConMapperNuevo() throws Exception {
+		XmlMapper nuevo = new XmlMapper();
+		nuevo.registerModule(new JavaTimeModule());
+		return nuevo.readValue(xml, CertificadoMH.class);
+	}
+}
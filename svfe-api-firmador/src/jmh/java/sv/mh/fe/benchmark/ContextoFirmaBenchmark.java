@@ -0,0 +1,71 @@
+package sv.mh.fe.benchmark;
+
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sv.mh.fe.security.ContextoFirma;
+import sv.mh.fe.security.KeyGenerator;
+
+/**
+ * ContextoFirma preparado por emisor frente a un JsonWebSignature nuevo por
+ * documento, con el proveedor de la JVM y con BouncyCastle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextoFirmaBenchmark {
+
+	@Param({ "1", "50", "500" })
+	private int items;
+
+	@Param({ ContextoFirma.PROVEEDOR_JDK, ContextoFirma.PROVEEDOR_BC })
+	private String proveedor;
+
+	private PrivateKey llave;
+
+	private ContextoFirma contexto;
+
+	private String dte;
+
+	@Setup
+	public void preparar() throws Exception {
+		byte[] pkcs8 = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD).getPrivateKey().getEncodied();
+		llave = new KeyGenerator().ByteToPrivateKey(pkcs8);
+		contexto = new ContextoFirma(llave, ContextoFirma.proveedor(proveedor));
+		dte = DatosPrueba.dte(items);
+		if (!jose4j().equals(contexto())) {
+			throw new IllegalStateException("ContextoFirma no produce el mismo JWS que jose4j");
+		}
+	}
+
+	@Benchmark
+	public String jose4j() throws Exception {
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setPayload(dte);
+		jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA512);
+		jws.setKey(llave);
+		return jws.getCompactSerialization();
+	}
+
+	@Benchmark
+	public String contexto() throws Exception {
+		return contexto.firmar(dte);
+	}
+}
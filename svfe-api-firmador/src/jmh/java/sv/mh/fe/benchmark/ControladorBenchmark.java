@@ -0,0 +1,90 @@
+package sv.mh.fe.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import sv.mh.fe.Application;
+import sv.mh.fe.controller.FirmarDocumentoController;
+import sv.mh.fe.filter.FirmarDocumentoFilter;
+
+/**
+ * Camino completo del controlador con el contexto de Spring y el certificado en
+ * un directorio temporal: validación, certificado en cache, contraseña,
+ * serialización del DTE y firma. Incluye el camino /crudo/ que firma los bytes
+ * recibidos; con -prof gc se comparan las asignaciones por documento. El límite
+ * por NIT y la idempotencia se desactivan: todas las invocaciones usan el mismo
+ * NIT y el mismo DTE, y se mediría el 429 o el JWS guardado en lugar de la firma.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControladorBenchmark {
+
+	@Param({ "1", "50", "500" })
+	private int items;
+
+	private ConfigurableApplicationContext contexto;
+
+	private FirmarDocumentoController controller;
+
+	private FirmarDocumentoFilter filter;
+
+	private byte[] cuerpo;
+
+	@Setup
+	public void preparar() throws Exception {
+		Path uploads = DatosPrueba.uploads(DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD));
+		contexto = new SpringApplicationBuilder(Application.class)
+				.web(WebApplicationType.NONE)
+				.run("--firmador.almacen.directorio=" + uploads, "--logging.level.root=WARN",
+						"--firmador.limite.habilitado=false", "--firmador.idempotencia.habilitado=false");
+		controller = contexto.getBean(FirmarDocumentoController.class);
+
+		String dte = DatosPrueba.dte(items);
+		filter = new FirmarDocumentoFilter();
+		filter.setNit(DatosPrueba.NIT);
+		filter.setPasswordPri(DatosPrueba.PASSWORD);
+		filter.setDteJson(new ObjectMapper().readValue(dte, Map.class));
+		cuerpo = ("{\"nit\":\"" + DatosPrueba.NIT + "\",\"passwordPri\":\"" + DatosPrueba.PASSWORD
+				+ "\",\"dteJson\":" + dte + "}").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@TearDown
+	public void cerrar() {
+		contexto.close();
+	}
+
+	@Benchmark
+	public ResponseEntity<?> firmar() {
+		return controller.firmar(filter);
+	}
+
+	@Benchmark
+	public ResponseEntity<?> firmarCrudo() {
+		return controller.firmarCrudo(cuerpo);
+	}
+}
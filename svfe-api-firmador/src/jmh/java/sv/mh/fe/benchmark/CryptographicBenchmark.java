@@ -0,0 +1,56 @@
+package sv.mh.fe.benchmark;
+
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sv.mh.fe.security.Cryptographic;
+
+/**
+ * Verificación de la contraseña del certificado: hash hexadecimal con
+ * Cryptographic.encrypt y comparación de cadenas, contra hash en bytes con
+ * comparación en tiempo constante.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptographicBenchmark {
+
+	private Cryptographic cryptographic;
+
+	private String clave;
+
+	@Setup
+	public void preparar() throws Exception {
+		cryptographic = new Cryptographic();
+		clave = cryptographic.encrypt(DatosPrueba.PASSWORD, Cryptographic.SHA512);
+	}
+
+	@Benchmark
+	public boolean encryptSha512() throws Exception {
+		return cryptographic.encrypt(DatosPrueba.PASSWORD, Cryptographic.SHA512).equals(clave);
+	}
+
+	@Benchmark
+	public boolean digestSha512() throws Exception {
+		return Cryptographic.isEqual(cryptographic.digest(DatosPrueba.PASSWORD, Cryptographic.SHA512), clave);
+	}
+
+	@Benchmark
+	public byte[] digestSinPool() throws Exception {
+		return MessageDigest.getInstance(Cryptographic.SHA512).digest(DatosPrueba.PASSWORD.getBytes());
+	}
+}
@@ -0,0 +1,112 @@
+package sv.mh.fe.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import sv.mh.fe.constantes.TipoLlave;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.models.Llave;
+import sv.mh.fe.models.minec.BasicEstructure;
+import sv.mh.fe.models.minec.Certificado;
+import sv.mh.fe.models.minec.Subject;
+import sv.mh.fe.security.Cryptographic;
+
+/**
+ * Certificados y DTE de prueba para los benchmarks.
+ */
+public final class DatosPrueba {
+
+	public static final String NIT = "06141234567890";
+	public static final String PASSWORD = "benchmark";
+
+	private DatosPrueba() {
+	}
+
+	/**
+	 * Certificado con el mismo formato que los archivos .crt de uploads.
+	 */
+	public static CertificadoMH certificado(String nit, String password) throws NoSuchAlgorithmException {
+		KeyPairGenerator generador = KeyPairGenerator.getInstance("RSA");
+		generador.initialize(2048);
+		KeyPair par = generador.generateKeyPair();
+		String clave = new Cryptographic().encrypt(password, Cryptographic.SHA512);
+
+		Llave privada = new Llave();
+		privada.setKeyType(TipoLlave.PRIVATE);
+		privada.setAlgorithm("RSA");
+		privada.setFormat("PKCS#8");
+		privada.setEncodied(par.getPrivate().getEncoded());
+		privada.setClave(clave);
+
+		Llave publica = new Llave();
+		publica.setKeyType(TipoLlave.PUBLIC);
+		publica.setAlgorithm("RSA");
+		publica.setFormat("X.509");
+		publica.setEncodied(par.getPublic().getEncoded());
+		publica.setClave(clave);
+
+		Certificado detalle = new Certificado();
+		detalle.setBasicEstructure(new BasicEstructure(new Subject(), publica));
+
+		CertificadoMH certificado = new CertificadoMH();
+		certificado.setNit(nit);
+		certificado.setActivo(true);
+		certificado.setPrivateKey(privada);
+		certificado.setPublicKey(publica);
+		certificado.setCertificado(detalle);
+		return certificado;
+	}
+
+	public static String xml(CertificadoMH certificado) throws Exception {
+		XmlMapper mapper = new XmlMapper();
+		mapper.registerModule(new JavaTimeModule());
+		return mapper.writeValueAsString(certificado);
+	}
+
+	/**
+	 * Crea un directorio de uploads temporal con el certificado de prueba.
+	 */
+	public static Path uploads(CertificadoMH certificado) throws Exception {
+		Path directorio = Files.createTempDirectory("svfe-jmh");
+		Files.writeString(directorio.resolve(certificado.getNit() + ".crt"), xml(certificado));
+		return directorio;
+	}
+
+	/**
+	 * DTE con la cantidad de líneas indicada en cuerpoDocumento.
+	 */
+	public static String dte(int items) {
+		StringBuilder json = new StringBuilder(512 + items * 220);
+		json.append("{\"identificacion\":{\"version\":1,\"ambiente\":\"00\",\"tipoDte\":\"01\",")
+				.append("\"numeroControl\":\"DTE-01-00000000-000000000000001\",\"codigoGeneracion\":\"")
+				.append("5A1B2C3D-0000-4000-8000-000000000001\",\"tipoModelo\":1,\"tipoOperacion\":1,")
+				.append("\"fecEmi\":\"2024-01-01\",\"horEmi\":\"10:00:00\",\"tipoMoneda\":\"USD\"},")
+				.append("\"emisor\":{\"nit\":\"").append(NIT).append("\",\"nrc\":\"1234567\",")
+				.append("\"nombre\":\"EMISOR DE PRUEBA S.A. DE C.V.\",\"codActividad\":\"47190\",")
+				.append("\"direccion\":{\"departamento\":\"06\",\"municipio\":\"14\",\"complemento\":\"San Salvador\"}},")
+				.append("\"receptor\":{\"tipoDocumento\":\"13\",\"numDocumento\":\"00000000-0\",\"nombre\":\"CONSUMIDOR FINAL\"},")
+				.append("\"cuerpoDocumento\":[");
+		for (int i = 1; i <= items; i++) {
+			if (i > 1) {
+				json.append(',');
+			}
+			json.append("{\"numItem\":").append(i)
+					.append(",\"tipoItem\":1,\"cantidad\":2,\"codigo\":\"ART-").append(i)
+					.append("\",\"uniMedida\":59,\"descripcion\":\"Articulo de prueba numero ").append(i)
+					.append("\",\"precioUni\":1.25,\"montoDescu\":0.00,\"ventaNoSuj\":0,\"ventaExenta\":0,")
+					.append("\"ventaGravada\":2.50,\"tributos\":null,\"psv\":0,\"noGravado\":0,\"ivaItem\":0.29}");
+		}
+		json.append("],\"resumen\":{\"totalGravada\":").append(items * 2.5)
+				.append(",\"subTotal\":").append(items * 2.5)
+				.append(",\"totalIva\":").append(items * 0.29)
+				.append(",\"totalPagar\":").append(items * 2.5)
+				.append(",\"condicionOperacion\":1}}");
+		return json.toString();
+	}
+}
@@ -0,0 +1,55 @@
+package sv.mh.fe.benchmark;
+
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sv.mh.fe.security.KeyGenerator;
+
+/**
+ * JsonWebSignature.getCompactSerialization con RS512 sobre DTE de distintos tamaños.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwsBenchmark {
+
+	@Param({ "1", "50", "500" })
+	private int items;
+
+	private PrivateKey llave;
+
+	private String dte;
+
+	@Setup
+	public void preparar() throws Exception {
+		byte[] pkcs8 = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD).getPrivateKey().getEncodied();
+		llave = new KeyGenerator().ByteToPrivateKey(pkcs8);
+		dte = DatosPrueba.dte(items);
+	}
+
+	@Benchmark
+	public String rs512() throws Exception {
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setPayload(dte);
+		jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA512);
+		jws.setKey(llave);
+		return jws.getCompactSerialization();
+	}
+}
@@ -0,0 +1,44 @@
+package sv.mh.fe.benchmark;
+
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sv.mh.fe.security.KeyGenerator;
+
+/**
+ * Costo de KeyGenerator.ByteToPrivateKey para una llave RSA 2048 en PKCS#8.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LlavePrivadaBenchmark {
+
+	private KeyGenerator keyGenerator;
+
+	private byte[] pkcs8;
+
+	@Setup
+	public void preparar() throws Exception {
+		keyGenerator = new KeyGenerator();
+		pkcs8 = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD).getPrivateKey().getEncodied();
+	}
+
+	@Benchmark
+	public PrivateKey byteToPrivateKey() {
+		return keyGenerator.ByteToPrivateKey(pkcs8);
+	}
+}
@@ -0,0 +1,272 @@
+package sv.mh.fe.admision;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import sv.mh.fe.metricas.MetricasFirma;
+
+/**
+ * Control de admisión por NIT con una cubeta de fichas: cada emisor puede
+ * firmar hasta firmador.limite.rafaga documentos seguidos y luego
+ * firmador.limite.tasa por segundo, sin afectar a los demás emisores.
+ *
+ * Cada cubeta es un solo AtomicLong con el instante teórico en que la cubeta
+ * vuelve a estar llena (GCRA), así que consumir fichas es una comparación y un
+ * compareAndSet, sin locks ni objetos nuevos. Cada petición se cobra completa:
+ * un lote de más documentos que la ráfaga nunca cabe en la cubeta y se rechaza
+ * sin Retry-After.
+ *
+ * Hay a lo más firmador.limite.maximo cubetas: al llegar al límite se quitan
+ * las que ya están llenas y, si no alcanza, las de uso más antiguo.
+ */
+@Component
+public class LimitadorFirmas {
+
+	/** espera devuelta cuando el costo supera la ráfaga y reintentar no sirve */
+	public static final long EXCEDE_RAFAGA = Long.MAX_VALUE;
+
+	/** al desalojar se baja a este porcentaje del máximo, para no desalojar con cada NIT nuevo */
+	private static final int PORCENTAJE_DESALOJO = 90;
+
+	/** una cubeta llena no puede representar más tiempo, para que los instantes no se desborden */
+	private static final long TOLERANCIA_MAXIMA = TimeUnit.DAYS.toNanos(365);
+
+	@Autowired
+	private MetricasFirma metricas;
+
+	@Value("${firmador.limite.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${firmador.limite.tasa:50}")
+	private double tasa;
+
+	@Value("${firmador.limite.rafaga:100}")
+	private int rafaga;
+
+	@Value("${firmador.limite.maximo:10000}")
+	private int maximo;
+
+	private final Map<String, Cubeta> cubetas = new ConcurrentHashMap<>();
+
+	/** un solo hilo desaloja a la vez */
+	private final ReentrantLock desalojo = new ReentrantLock();
+
+	/** nanosegundos para reponer una ficha */
+	private long intervalo;
+
+	/** nanosegundos que representa una cubeta llena */
+	private long tolerancia;
+
+	/**
+	 * @throws IllegalStateException si la tasa, la ráfaga o el máximo no son válidos
+	 */
+	@PostConstruct
+	public void iniciar() {
+		if (!(tasa > 0) || tasa > TimeUnit.SECONDS.toNanos(1)) {
+			throw new IllegalStateException("firmador.limite.tasa debe ser mayor que 0 y máximo 1e9 por segundo: " + tasa);
+		}
+		if (rafaga <= 0) {
+			throw new IllegalStateException("firmador.limite.rafaga debe ser mayor que 0: " + rafaga);
+		}
+		if (maximo <= 0) {
+			throw new IllegalStateException("firmador.limite.maximo debe ser mayor que 0: " + maximo);
+		}
+		double reposicion = TimeUnit.SECONDS.toNanos(1) / tasa;
+		if (reposicion * rafaga > TOLERANCIA_MAXIMA) {
+			throw new IllegalStateException("firmador.limite.rafaga / firmador.limite.tasa no puede pasar de un año: "
+					+ rafaga + " / " + tasa);
+		}
+		intervalo = (long) reposicion;
+		tolerancia = intervalo * rafaga;
+		metricas.medidor("firmador.limite.nits", "NIT con cubeta de admisión", cubetas::size);
+	}
+
+	/**
+	 * Método para admitir una petición de un emisor.
+	 * @param nit
+	 * @param costo, documentos de la petición
+	 * @return 0 si se admite, los nanosegundos que el cliente debe esperar, o
+	 * EXCEDE_RAFAGA si el costo no cabe en la cubeta
+	 */
+	public long admitir(String nit, int costo) {
+		if (!habilitado) {
+			return 0;
+		}
+		Cubeta cubeta = cubeta(nit);
+		long espera = costo > rafaga ? EXCEDE_RAFAGA : cubeta.consumir(costo, System.nanoTime());
+		if (espera == 0) {
+			cubeta.aceptados.add(costo);
+		} else {
+			cubeta.rechazados.add(costo);
+		}
+		metricas.admision(espera == 0, costo);
+		return espera;
+	}
+
+	/**
+	 * Método para esperar hasta que el emisor tenga fichas, usado por las firmas
+	 * en stream en lugar de rechazar documentos a media respuesta. Un costo mayor
+	 * que la ráfaga se cobra por partes del tamaño de la ráfaga.
+	 * @param nit
+	 * @param costo
+	 * @throws InterruptedException
+	 */
+	public void esperar(String nit, int costo) throws InterruptedException {
+		if (!habilitado) {
+			return;
+		}
+		Cubeta cubeta = cubeta(nit);
+		for (int pendiente = costo; pendiente > 0; pendiente -= rafaga) {
+			int parte = Math.min(pendiente, rafaga);
+			long espera;
+			while ((espera = cubeta.consumir(parte, System.nanoTime())) > 0) {
+				TimeUnit.NANOSECONDS.sleep(espera);
+			}
+		}
+		cubeta.aceptados.add(costo);
+		metricas.admision(true, costo);
+	}
+
+	/**
+	 * @return uso por NIT, de mayor a menor cantidad de documentos aceptados
+	 */
+	public List<UsoNit> uso() {
+		long ahora = System.nanoTime();
+		List<UsoNit> uso = new ArrayList<>(cubetas.size());
+		for (Map.Entry<String, Cubeta> e : cubetas.entrySet()) {
+			Cubeta cubeta = e.getValue();
+			long vacio = Math.max(cubeta.lleno.get(), ahora) - ahora;
+			uso.add(new UsoNit(e.getKey(), cubeta.aceptados.sum(), cubeta.rechazados.sum(),
+					(tolerancia - vacio) / (double) intervalo));
+		}
+		uso.sort(Comparator.comparingLong(UsoNit::getAceptados).reversed());
+		return uso;
+	}
+
+	public int size() {
+		return cubetas.size();
+	}
+
+	private Cubeta cubeta(String nit) {
+		long ahora = System.nanoTime();
+		Cubeta cubeta = cubetas.get(nit);
+		if (cubeta == null) {
+			if (cubetas.size() >= maximo) {
+				desalojar(ahora);
+			}
+			cubeta = cubetas.computeIfAbsent(nit, k -> new Cubeta(ahora));
+		}
+		cubeta.accedido = ahora;
+		return cubeta;
+	}
+
+	/**
+	 * Quita las cubetas llenas, que equivalen a no tener cubeta, y luego las de
+	 * uso más antiguo hasta bajar de PORCENTAJE_DESALOJO del máximo. Los hilos
+	 * que llegan mientras otro desaloja lo esperan, así el máximo se respeta.
+	 */
+	private void desalojar(long ahora) {
+		desalojo.lock();
+		try {
+			if (cubetas.size() < maximo) {
+				return;
+			}
+			cubetas.values().removeIf(c -> c.lleno.get() - ahora <= 0);
+			long limite = (long) maximo * PORCENTAJE_DESALOJO / 100;
+			if (cubetas.size() <= limite) {
+				return;
+			}
+			List<Candidata> candidatas = new ArrayList<>(cubetas.size());
+			for (Map.Entry<String, Cubeta> e : cubetas.entrySet()) {
+				// el acceso se copia: ordenar por un valor que cambia rompe el sort
+				candidatas.add(new Candidata(e.getKey(), e.getValue(), e.getValue().accedido));
+			}
+			candidatas.sort(Comparator.comparingLong(c -> c.accedido - ahora));
+			for (int i = 0; i < candidatas.size() && cubetas.size() > limite; i++) {
+				cubetas.remove(candidatas.get(i).nit, candidatas.get(i).cubeta);
+			}
+		} finally {
+			desalojo.unlock();
+		}
+	}
+
+	private final class Cubeta {
+		/** instante (System.nanoTime) en que la cubeta vuelve a estar llena */
+		final AtomicLong lleno;
+		final LongAdder aceptados = new LongAdder();
+		final LongAdder rechazados = new LongAdder();
+		/** último uso (System.nanoTime), para desalojar la de uso más antiguo */
+		volatile long accedido;
+
+		Cubeta(long ahora) {
+			this.lleno = new AtomicLong(ahora);
+			this.accedido = ahora;
+		}
+
+		long consumir(int costo, long ahora) {
+			while (true) {
+				long actual = lleno.get();
+				long nuevo = Math.max(actual, ahora) + costo * intervalo;
+				long espera = nuevo - tolerancia - ahora;
+				if (espera > 0) {
+					return espera;
+				}
+				if (lleno.compareAndSet(actual, nuevo)) {
+					return 0;
+				}
+			}
+		}
+	}
+
+	private static final class Candidata {
+		final String nit;
+		final Cubeta cubeta;
+		final long accedido;
+
+		Candidata(String nit, Cubeta cubeta, long accedido) {
+			this.nit = nit;
+			this.cubeta = cubeta;
+			this.accedido = accedido;
+		}
+	}
+
+	public static class UsoNit {
+
+		private final String nit;
+		private final long aceptados;
+		private final long rechazados;
+		private final double disponibles;
+
+		UsoNit(String nit, long aceptados, long rechazados, double disponibles) {
+			this.nit = nit;
+			this.aceptados = aceptados;
+			this.rechazados = rechazados;
+			this.disponibles = disponibles;
+		}
+
+		public String getNit() {
+			return nit;
+		}
+		public long getAceptados() {
+			return aceptados;
+		}
+		public long getRechazados() {
+			return rechazados;
+		}
+		public double getDisponibles() {
+			return disponibles;
+		}
+	}
+}
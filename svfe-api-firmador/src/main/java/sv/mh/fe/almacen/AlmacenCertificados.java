@@ -0,0 +1,65 @@
+package sv.mh.fe.almacen;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import sv.mh.fe.models.CertificadoMH;
+
+/**
+ * Origen de los certificados de los emisores. {@link sv.mh.fe.cache.CertificadoCache}
+ * lo consulta solo cuando no tiene el certificado en memoria o cuando cambia su
+ * versión.
+ */
+public interface AlmacenCertificados {
+
+	/** Valor de {@link #afectado(String)} cuando un cambio afecta a todos los NIT. */
+	String TODOS = "*";
+
+	/**
+	 * Método para leer el certificado de un NIT.
+	 * @param nit
+	 * @return certificado
+	 * @throws IOException si no existe o no se puede leer
+	 */
+	CertificadoMH cargar(String nit) throws IOException;
+
+	/**
+	 * Método para leer el certificado con todo su detalle (sujeto, emisor,
+	 * extensiones). La firma no lo necesita, por eso solo se usa en las consultas
+	 * del certificado.
+	 * @param nit
+	 * @return certificado con el detalle, o sin él si el almacén no lo guarda
+	 * @throws IOException si no existe o no se puede leer
+	 */
+	default CertificadoMH detalle(String nit) throws IOException {
+		return cargar(nit);
+	}
+
+	/**
+	 * Versión actual del certificado de un NIT; cambia cuando el certificado se
+	 * modifica.
+	 * @param nit
+	 * @return
+	 * @throws IOException si no existe
+	 */
+	long version(String nit) throws IOException;
+
+	/**
+	 * @return todos los NIT disponibles en el almacén
+	 * @throws IOException
+	 */
+	List<String> nits() throws IOException;
+
+	/**
+	 * @return directorio donde se guardan los archivos del almacén, para vigilar cambios
+	 */
+	Path directorio();
+
+	/**
+	 * Método para saber qué NIT se ve afectado por un cambio en un archivo del directorio.
+	 * @param archivo, nombre del archivo modificado
+	 * @return NIT afectado, {@link #TODOS} o null si el archivo no pertenece al almacén
+	 */
+	String afectado(String archivo);
+}
@@ -0,0 +1,166 @@
+package sv.mh.fe.almacen;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.metricas.MetricasFirma.Etapa;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.utils.FileUtils;
+
+/**
+ * Almacén con un archivo XML &lt;nit&gt;.crt por emisor en el directorio de uploads.
+ *
+ * La primera vez que se carga un certificado se guarda a su lado un snapshot
+ * binario &lt;nit&gt;.crtb ({@link RegistroCertificado}) con lo que necesita la
+ * firma; las cargas siguientes leen el snapshot de una vez sin pasar por el XML.
+ * El snapshot lleva la misma fecha de modificación que el .crt y guarda su
+ * tamaño y un CRC32 del registro; si algo no coincide, o el archivo está
+ * truncado, se descarta y se vuelve a generar.
+ */
+@Component
+@ConditionalOnProperty(name = "firmador.almacen.tipo", havingValue = "directorio", matchIfMissing = true)
+public class DirectorioAlmacenCertificados implements AlmacenCertificados {
+
+	private static Logger logger = LoggerFactory.getLogger(DirectorioAlmacenCertificados.class);
+
+	public static final String EXTENSION = ".crt";
+
+	public static final String EXTENSION_SNAPSHOT = ".crtb";
+
+	private final Path directorio;
+
+	private final boolean snapshot;
+
+	private final XmlMapper xmlMapper;
+
+	private final FileUtils fileUtils = new FileUtils();
+
+	private MetricasFirma metricas;
+
+	/**
+	 * Sin snapshots, para leer un directorio sin escribir en él (ImportarAlmacen).
+	 * @param directorio
+	 */
+	public DirectorioAlmacenCertificados(String directorio) {
+		this(directorio, false);
+	}
+
+	@Autowired
+	public DirectorioAlmacenCertificados(@Value("${firmador.almacen.directorio:${user.dir}/uploads}") String directorio,
+			@Value("${firmador.almacen.snapshot:true}") boolean snapshot) {
+		this.directorio = Paths.get(directorio);
+		this.snapshot = snapshot;
+		this.xmlMapper = new XmlMapper();
+		this.xmlMapper.registerModule(new JavaTimeModule());
+	}
+
+	/**
+	 * Opcional, para poder usar el almacén fuera de Spring (ImportarAlmacen).
+	 */
+	@Autowired(required = false)
+	public void setMetricas(MetricasFirma metricas) {
+		this.metricas = metricas;
+	}
+
+	@Override
+	public CertificadoMH cargar(String nit) throws IOException {
+		if (!snapshot) {
+			return detalle(nit);
+		}
+		Path xml = ruta(nit);
+		Path binario = directorio.resolve(nit + EXTENSION_SNAPSHOT);
+		FileTime modificado = Files.getLastModifiedTime(xml);
+		long tamano = Files.size(xml);
+		if (Files.isRegularFile(binario) && modificado.equals(Files.getLastModifiedTime(binario))) {
+			long inicio = MetricasFirma.iniciar();
+			CertificadoMH certificado = RegistroCertificado.leerSnapshot(Files.readAllBytes(binario), tamano);
+			if (metricas != null) {
+				metricas.registrar(Etapa.DISCO, inicio);
+			}
+			if (certificado != null && nit.equals(certificado.getNit())) {
+				return certificado;
+			}
+			logger.warn("Snapshot del certificado " + nit + " desactualizado o dañado, se regenera");
+		}
+		CertificadoMH certificado = detalle(nit);
+		try {
+			RegistroCertificado.escribirSnapshot(binario, certificado, modificado, tamano);
+		} catch (IOException | RuntimeException e) {
+			// sin snapshot se sigue leyendo el XML
+			logger.warn("No se pudo guardar el snapshot del certificado " + nit + ": " + e.getMessage());
+		}
+		return certificado;
+	}
+
+	/**
+	 * Lee y procesa el XML completo.
+	 */
+	@Override
+	public CertificadoMH detalle(String nit) throws IOException {
+		long inicio = MetricasFirma.iniciar();
+		String contenido = fileUtils.LeerArchivo(ruta(nit));
+		if (metricas != null) {
+			metricas.registrar(Etapa.DISCO, inicio);
+			inicio = MetricasFirma.iniciar();
+		}
+		CertificadoMH certificado = xmlMapper.readValue(contenido, CertificadoMH.class);
+		if (metricas != null) {
+			metricas.registrar(Etapa.XML, inicio);
+		}
+		return certificado;
+	}
+
+	@Override
+	public long version(String nit) throws IOException {
+		return Files.getLastModifiedTime(ruta(nit)).toMillis();
+	}
+
+	@Override
+	public List<String> nits() throws IOException {
+		List<String> nits = new ArrayList<>();
+		if (!Files.isDirectory(directorio)) {
+			return nits;
+		}
+		try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "*" + EXTENSION)) {
+			for (Path archivo : archivos) {
+				String nombre = archivo.getFileName().toString();
+				nits.add(nombre.substring(0, nombre.length() - EXTENSION.length()));
+			}
+		}
+		return nits;
+	}
+
+	@Override
+	public Path directorio() {
+		return directorio;
+	}
+
+	@Override
+	public String afectado(String archivo) {
+		if (archivo.endsWith(EXTENSION)) {
+			return archivo.substring(0, archivo.length() - EXTENSION.length());
+		}
+		return null;
+	}
+
+	private Path ruta(String nit) {
+		return directorio.resolve(nit + EXTENSION);
+	}
+}
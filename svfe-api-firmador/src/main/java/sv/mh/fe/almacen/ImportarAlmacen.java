@@ -0,0 +1,45 @@
+package sv.mh.fe.almacen;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import sv.mh.fe.constantes.Constantes;
+import sv.mh.fe.models.CertificadoMH;
+
+/**
+ * Herramienta para generar el almacén mapeado a partir del directorio de uploads.
+ *
+ * Uso desde el jar de la aplicación:
+ * <pre>
+ * java -cp svfe-api-firmador.jar -Dloader.main=sv.mh.fe.almacen.ImportarAlmacen \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher [uploads] [certificados.svks]
+ * </pre>
+ * Luego iniciar el firmador con firmador.almacen.tipo=mapeado.
+ */
+public class ImportarAlmacen {
+
+	public static void main(String[] args) throws Exception {
+		Path origen = Paths.get(args.length > 0 ? args[0] : Constantes.DIRECTORY_UPLOADS);
+		Path destino = args.length > 1 ? Paths.get(args[1]) : origen.resolve("certificados.svks");
+
+		DirectorioAlmacenCertificados directorio = new DirectorioAlmacenCertificados(origen.toString());
+		Map<String, CertificadoMH> certificados = new LinkedHashMap<>();
+		int errores = 0;
+		for (String nit : directorio.nits()) {
+			try {
+				certificados.put(nit, directorio.cargar(nit));
+			} catch (Exception e) {
+				errores++;
+				System.err.println("No se pudo importar " + nit + ": " + e.getMessage());
+			}
+		}
+		MapeadoAlmacenCertificados.escribir(destino, certificados);
+		System.out.println("Certificados importados: " + certificados.size() + " en " + destino);
+		if (errores > 0) {
+			System.err.println("Certificados con error: " + errores);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package sv.mh.fe.almacen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import sv.mh.fe.models.CertificadoMH;
+
+/**
+ * Almacén con todos los emisores en un solo archivo indexado que se mapea en
+ * memoria. Cada registro guarda las llaves ya decodificadas
+ * ({@link RegistroCertificado}), por lo que cargar un certificado no toca el
+ * sistema de archivos ni parsea XML.
+ *
+ * Formato: MAGIC, FORMATO, cantidad, índice (nit, posición, largo) y registros.
+ * El archivo se genera con {@link ImportarAlmacen} y se reemplaza completo; al
+ * cambiar su fecha de modificación se vuelve a mapear.
+ */
+@Component
+@ConditionalOnProperty(name = "firmador.almacen.tipo", havingValue = "mapeado")
+public class MapeadoAlmacenCertificados implements AlmacenCertificados {
+
+	private static Logger logger = LoggerFactory.getLogger(MapeadoAlmacenCertificados.class);
+
+	public static final int MAGIC = 0x53564B53;
+	/** versión de {@link RegistroCertificado} de los registros; se leen también archivos de formato 1 */
+	public static final int FORMATO = RegistroCertificado.FORMATO;
+
+	private final Path archivo;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private volatile Contenido contenido;
+
+	public MapeadoAlmacenCertificados(@Value("${firmador.almacen.archivo:${user.dir}/uploads/certificados.svks}") String archivo) {
+		this.archivo = Paths.get(archivo);
+	}
+
+	@Override
+	public CertificadoMH cargar(String nit) throws IOException {
+		Contenido actual = abrir();
+		Integer posicion = actual.indice.get(nit);
+		if (posicion == null) {
+			throw new NoSuchFileException(archivo + ":" + nit);
+		}
+		ByteBuffer registro = actual.datos.duplicate();
+		registro.position(posicion);
+		return RegistroCertificado.leer(registro, actual.formato);
+	}
+
+	@Override
+	public long version(String nit) throws IOException {
+		Contenido actual = abrir();
+		if (!actual.indice.containsKey(nit)) {
+			throw new NoSuchFileException(archivo + ":" + nit);
+		}
+		return actual.modificado;
+	}
+
+	@Override
+	public List<String> nits() throws IOException {
+		return new ArrayList<>(abrir().indice.keySet());
+	}
+
+	@Override
+	public Path directorio() {
+		return archivo.toAbsolutePath().getParent();
+	}
+
+	@Override
+	public String afectado(String nombre) {
+		return archivo.getFileName().toString().equals(nombre) ? TODOS : null;
+	}
+
+	private Contenido abrir() throws IOException {
+		long modificado = Files.getLastModifiedTime(archivo).toMillis();
+		Contenido actual = contenido;
+		if (actual != null && actual.modificado == modificado) {
+			return actual;
+		}
+		lock.lock();
+		try {
+			actual = contenido;
+			if (actual == null || actual.modificado != modificado) {
+				actual = mapear(modificado);
+				contenido = actual;
+				logger.info("Almacen de certificados mapeado: " + archivo + " (" + actual.indice.size() + " emisores)");
+			}
+			return actual;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Contenido mapear(long modificado) throws IOException {
+		ByteBuffer datos;
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+			datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+		}
+		try {
+			int formato = datos.getInt() == MAGIC ? datos.getInt() : -1;
+			if (formato < 1 || formato > FORMATO) {
+				throw new IOException("Formato de almacen no valido: " + archivo);
+			}
+			int cantidad = datos.getInt();
+			if (cantidad < 0) {
+				throw new IOException("Almacen de certificados dañado: " + archivo);
+			}
+			Map<String, Integer> indice = new HashMap<>(Math.min(cantidad, datos.remaining()) * 2);
+			for (int i = 0; i < cantidad; i++) {
+				String nit = RegistroCertificado.leerTexto(datos);
+				int posicion = datos.getInt();
+				int largo = datos.getInt();
+				// cada registro debe estar completo dentro del archivo
+				if (posicion < datos.position() || largo < 0 || (long) posicion + largo > datos.limit()) {
+					throw new IOException("Almacen de certificados truncado o dañado: " + archivo);
+				}
+				indice.put(nit, posicion);
+			}
+			return new Contenido(modificado, formato, datos.asReadOnlyBuffer(), indice);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Almacen de certificados truncado: " + archivo, e);
+		}
+	}
+
+	/**
+	 * Método para escribir un almacén completo. Se escribe en un archivo temporal
+	 * que luego reemplaza al destino, así los lectores nunca ven un archivo a medias.
+	 * @param destino
+	 * @param certificados
+	 * @throws IOException
+	 */
+	public static void escribir(Path destino, Map<String, CertificadoMH> certificados) throws IOException {
+		List<String> nits = new ArrayList<>(certificados.keySet());
+		List<byte[]> registros = new ArrayList<>(nits.size());
+		int largoIndice = 0;
+		for (String nit : nits) {
+			registros.add(RegistroCertificado.escribir(certificados.get(nit)));
+			largoIndice += 4 + nit.getBytes(StandardCharsets.UTF_8).length + 8;
+		}
+		ByteArrayOutputStream bytesIndice = new ByteArrayOutputStream(largoIndice);
+		DataOutputStream indice = new DataOutputStream(bytesIndice);
+		int posicion = 12 + largoIndice;
+		for (int i = 0; i < nits.size(); i++) {
+			RegistroCertificado.escribirTexto(indice, nits.get(i));
+			indice.writeInt(posicion);
+			indice.writeInt(registros.get(i).length);
+			posicion += registros.get(i).length;
+		}
+		indice.flush();
+
+		Path temporal = Files.createTempFile(destino.toAbsolutePath().getParent(), destino.getFileName().toString(), ".tmp");
+		try (OutputStream salida = Files.newOutputStream(temporal);
+				DataOutputStream datos = new DataOutputStream(salida)) {
+			datos.writeInt(MAGIC);
+			datos.writeInt(FORMATO);
+			datos.writeInt(nits.size());
+			bytesIndice.writeTo(datos);
+			for (byte[] registro : registros) {
+				datos.write(registro);
+			}
+		}
+		Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static final class Contenido {
+		final long modificado;
+		final int formato;
+		final ByteBuffer datos;
+		final Map<String, Integer> indice;
+
+		Contenido(long modificado, int formato, ByteBuffer datos, Map<String, Integer> indice) {
+			this.modificado = modificado;
+			this.formato = formato;
+			this.datos = datos;
+			this.indice = indice;
+		}
+	}
+}
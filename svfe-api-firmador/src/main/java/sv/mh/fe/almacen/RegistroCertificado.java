@@ -0,0 +1,207 @@
+package sv.mh.fe.almacen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+import sv.mh.fe.constantes.TipoLlave;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.models.Llave;
+
+/**
+ * Formato binario de la parte del certificado que se usa para firmar: NIT, hash
+ * de la contraseña, llaves ya decodificadas (PKCS#8 / X.509) y fechas de
+ * vigencia, sin XML ni base64.
+ *
+ * Se usa como registro del almacén mapeado y como snapshot &lt;nit&gt;.crtb de
+ * cada certificado del directorio de uploads.
+ */
+public final class RegistroCertificado {
+
+	/** 1: sin fechas de vigencia; 2: con fechas de vigencia */
+	public static final int FORMATO = 2;
+
+	/** 0x53564342 era el snapshot sin tamaño del XML ni CRC; se descarta y se regenera */
+	public static final int MAGIC_SNAPSHOT = 0x53564343;
+
+	/** magic, formato, tamaño del XML y CRC32 del registro */
+	private static final int CABECERA_SNAPSHOT = 20;
+
+	private static final long SIN_FECHA = Long.MIN_VALUE;
+
+	private RegistroCertificado() {
+	}
+
+	/**
+	 * @param certificado
+	 * @return bytes del registro
+	 * @throws IOException
+	 */
+	public static byte[] escribir(CertificadoMH certificado) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		DataOutputStream salida = new DataOutputStream(bytes);
+		escribirTexto(salida, certificado.getNit());
+		salida.writeByte(certificado.getActivo() == null ? -1 : certificado.getActivo() ? 1 : 0);
+		escribirLlave(salida, certificado.getPrivateKey());
+		escribirLlave(salida, certificado.getPublicKey());
+		escribirFecha(salida, certificado.getInicioVigencia());
+		escribirFecha(salida, certificado.getFinVigencia());
+		salida.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param buffer, posicionado al inicio del registro
+	 * @param formato, versión con la que se escribió el registro
+	 * @return certificado con nit, activo, llaves y vigencia
+	 */
+	public static CertificadoMH leer(ByteBuffer buffer, int formato) {
+		CertificadoMH certificado = new CertificadoMH();
+		certificado.setNit(leerTexto(buffer));
+		byte activo = buffer.get();
+		certificado.setActivo(activo < 0 ? null : activo == 1);
+		certificado.setPrivateKey(leerLlave(buffer));
+		certificado.setPublicKey(leerLlave(buffer));
+		if (formato >= 2) {
+			certificado.setInicioVigencia(leerFecha(buffer));
+			certificado.setFinVigencia(leerFecha(buffer));
+		}
+		return certificado;
+	}
+
+	/**
+	 * Método para guardar el snapshot de un certificado. Se escribe en un archivo
+	 * temporal que luego reemplaza al destino.
+	 * @param destino
+	 * @param certificado
+	 * @param modificado, fecha de modificación del XML del que se generó
+	 * @param tamano, tamaño en bytes del XML del que se generó
+	 * @throws IOException
+	 */
+	public static void escribirSnapshot(Path destino, CertificadoMH certificado, FileTime modificado, long tamano) throws IOException {
+		byte[] registro = escribir(certificado);
+		CRC32 crc = new CRC32();
+		crc.update(registro);
+		ByteBuffer contenido = ByteBuffer.allocate(CABECERA_SNAPSHOT + registro.length);
+		contenido.putInt(MAGIC_SNAPSHOT).putInt(FORMATO).putLong(tamano).putInt((int) crc.getValue()).put(registro);
+		Path temporal = destino.resolveSibling("." + destino.getFileName() + "." + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE) + ".tmp");
+		try {
+			Files.write(temporal, contenido.array(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			Files.setLastModifiedTime(temporal, modificado);
+			Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporal);
+		}
+	}
+
+	/**
+	 * @param contenido, bytes completos del snapshot
+	 * @param tamano, tamaño actual del XML
+	 * @return certificado, o null si no es un snapshot de un formato conocido,
+	 * se generó de un XML de otro tamaño o está truncado o dañado
+	 */
+	public static CertificadoMH leerSnapshot(byte[] contenido, long tamano) {
+		if (contenido.length < CABECERA_SNAPSHOT) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(contenido);
+		if (buffer.getInt() != MAGIC_SNAPSHOT) {
+			return null;
+		}
+		int formato = buffer.getInt();
+		if (formato < 1 || formato > FORMATO || buffer.getLong() != tamano) {
+			return null;
+		}
+		int esperado = buffer.getInt();
+		CRC32 crc = new CRC32();
+		crc.update(contenido, CABECERA_SNAPSHOT, contenido.length - CABECERA_SNAPSHOT);
+		if ((int) crc.getValue() != esperado) {
+			return null;
+		}
+		try {
+			return leer(buffer, formato);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			// largos o tipo de llave fuera de rango
+			return null;
+		}
+	}
+
+	private static void escribirFecha(DataOutputStream salida, Instant fecha) throws IOException {
+		salida.writeLong(fecha == null ? SIN_FECHA : fecha.toEpochMilli());
+	}
+
+	private static Instant leerFecha(ByteBuffer buffer) {
+		long fecha = buffer.getLong();
+		return fecha == SIN_FECHA ? null : Instant.ofEpochMilli(fecha);
+	}
+
+	private static void escribirLlave(DataOutputStream salida, Llave llave) throws IOException {
+		if (llave == null) {
+			salida.writeBoolean(false);
+			return;
+		}
+		salida.writeBoolean(true);
+		escribirTexto(salida, llave.getKeyType() == null ? null : llave.getKeyType().name());
+		escribirTexto(salida, llave.getAlgorithm());
+		escribirTexto(salida, llave.getFormat());
+		escribirTexto(salida, llave.getClave());
+		escribirBytes(salida, llave.getEncodied());
+	}
+
+	private static Llave leerLlave(ByteBuffer buffer) {
+		if (buffer.get() == 0) {
+			return null;
+		}
+		Llave llave = new Llave();
+		String tipo = leerTexto(buffer);
+		llave.setKeyType(tipo == null ? null : TipoLlave.valueOf(tipo));
+		llave.setAlgorithm(leerTexto(buffer));
+		llave.setFormat(leerTexto(buffer));
+		llave.setClave(leerTexto(buffer));
+		llave.setEncodied(leerBytes(buffer));
+		return llave;
+	}
+
+	static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+		escribirBytes(salida, texto == null ? null : texto.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String leerTexto(ByteBuffer buffer) {
+		byte[] bytes = leerBytes(buffer);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void escribirBytes(DataOutputStream salida, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			salida.writeInt(-1);
+			return;
+		}
+		salida.writeInt(bytes.length);
+		salida.write(bytes);
+	}
+
+	static byte[] leerBytes(ByteBuffer buffer) {
+		int largo = buffer.getInt();
+		if (largo < 0) {
+			return null;
+		}
+		if (largo > buffer.remaining()) {
+			// largo dañado: no se reserva memoria para bytes que no existen
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[largo];
+		buffer.get(bytes);
+		return bytes;
+	}
+}
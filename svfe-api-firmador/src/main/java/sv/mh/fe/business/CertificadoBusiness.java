@@ -1,49 +1,61 @@
 package sv.mh.fe.business;
 
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
-import sv.mh.fe.constantes.Constantes;
+import sv.mh.fe.almacen.AlmacenCertificados;
+import sv.mh.fe.cache.CertificadoCache;
+import sv.mh.fe.cache.CredencialCache;
 import sv.mh.fe.filter.FirmarDocumentoFilter;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.metricas.MetricasFirma.Etapa;
 import sv.mh.fe.models.CertificadoMH;
-import sv.mh.fe.security.Cryptographic;
-import sv.mh.fe.utils.FileUtils;
+import sv.mh.fe.models.minec.Certificado;
 
 @Service
 public class CertificadoBusiness {
 	
 	@Autowired
-	private Cryptographic cryptographic;
+	private CertificadoCache certificadoCache;
 	
 	@Autowired
-	private FileUtils fileUtilis;
+	private CredencialCache credencialCache;
+	
+	@Autowired
+	private MetricasFirma metricas;
+	
+	@Autowired
+	private AlmacenCertificados almacen;
 	
 	private static Logger logger = LoggerFactory.getLogger(CertificadoBusiness.class);		
 	
 	public CertificadoMH recuperarCertifiado(FirmarDocumentoFilter filter) throws IOException, NoSuchAlgorithmException {		
-		XmlMapper xmlMapper = new XmlMapper();
-		JavaTimeModule module = new JavaTimeModule();
-		xmlMapper.registerModule(module);
-
-		CertificadoMH certificado = null;
-		String crypto = cryptographic.encrypt(filter.getPasswordPri(), Cryptographic.SHA512);
+		CertificadoMH certificado = certificadoCache.obtener(filter.getNit());
 		
-		Path path = Paths.get(Constantes.DIRECTORY_UPLOADS,filter.getNit()+".crt");
-		String contenido = fileUtilis.LeerArchivo(path);
-		certificado = xmlMapper.readValue(contenido, CertificadoMH.class);
+		long inicio = MetricasFirma.iniciar();
+		boolean valido = credencialCache.verificar(certificado, filter.getPasswordPri());
+		metricas.registrar(Etapa.PASSWORD, inicio);
 		
-		if(certificado.getPrivateKey().getClave().equals(crypto)){
+		if(valido){
 			return certificado;			
 		}
 		logger.info("Password no valido: "+certificado.getNit());
 		return null;
 	}
+	
+	/**
+	 * Método para consultar el detalle público del certificado de un emisor. Se
+	 * lee el XML del almacén en cada consulta; la firma no lo usa y por eso no
+	 * se guarda en el cache.
+	 * @param nit
+	 * @return sujeto, emisor, vigencia y extensiones, o null si el almacén no guarda el detalle
+	 * @throws IOException si el certificado no existe o no se puede leer
+	 */
+	public Certificado detalle(String nit) throws IOException {
+		return almacen.detalle(nit).getCertificado();
+	}
 }
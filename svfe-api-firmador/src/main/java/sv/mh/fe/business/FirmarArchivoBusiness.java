@@ -0,0 +1,228 @@
+package sv.mh.fe.business;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import sv.mh.fe.admision.LimitadorFirmas;
+import sv.mh.fe.cache.CertificadoCache;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.metricas.MetricasFirma.Etapa;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.security.ContextoFirma;
+
+/**
+ * Firma de DTE guardados en archivos. El contenido se lee con FileChannel y se
+ * firma tal como está en disco, sin decodificarlo ni quitar saltos de línea; los
+ * archivos grandes se mapean en memoria en lugar de copiarse. El JWS se escribe
+ * en un temporal del mismo directorio que luego se renombra, así el destino
+ * nunca queda a medias.
+ */
+@Service
+public class FirmarArchivoBusiness {
+
+	final static Logger logger = LoggerFactory.getLogger(FirmarArchivoBusiness.class);
+
+	public static final String EXTENSION = ".json";
+
+	@Autowired
+	private CertificadoCache certificadoCache;
+
+	@Autowired
+	private MetricasFirma metricas;
+
+	@Autowired
+	private LimitadorFirmas limitador;
+
+	@Autowired
+	@Qualifier("firmaExecutor")
+	private ExecutorService firmaExecutor;
+
+	@Value("${firmador.archivos.base:${user.dir}/dte}")
+	private String base;
+
+	@Value("${firmador.archivos.mapeo:1MB}")
+	private DataSize mapeo;
+
+	@Value("${firmador.stream.ventana:0}")
+	private int ventana;
+
+	/**
+	 * Método para resolver una ruta recibida en una petición dentro del directorio
+	 * base configurado.
+	 * @param ruta, relativa al directorio base
+	 * @return ruta absoluta, o null si queda fuera del directorio base
+	 * @throws IOException si el directorio base no existe
+	 */
+	public Path resolver(String ruta) throws IOException {
+		Path raiz = Paths.get(base).toRealPath();
+		Path resuelta = raiz.resolve(ruta).normalize();
+		if (!resuelta.startsWith(raiz)) {
+			return null;
+		}
+		// un enlace simbólico dentro de la base no debe llevar fuera de ella, tampoco
+		// en un directorio intermedio de un destino que todavía no existe
+		Path existente = resuelta;
+		while (!Files.exists(existente, LinkOption.NOFOLLOW_LINKS)) {
+			existente = existente.getParent();
+		}
+		try {
+			if (!existente.toRealPath().startsWith(raiz)) {
+				return null;
+			}
+		} catch (NoSuchFileException e) {
+			// enlace roto
+			return null;
+		}
+		return resuelta;
+	}
+
+	/**
+	 * Método para firmar un archivo y escribir el JWS en otro, o en el mismo.
+	 * @param certificado, certificado ya autenticado
+	 * @param origen, DTE a firmar
+	 * @param destino, archivo donde se escribe el JWS
+	 * @throws IOException si no se puede leer el origen o escribir el destino
+	 * @throws GeneralSecurityException si la llave no sirve para firmar
+	 */
+	public void firmarArchivo(CertificadoMH certificado, Path origen, Path destino) throws IOException, GeneralSecurityException {
+		ContextoFirma contexto = certificadoCache.contexto(certificado);
+		byte[] jws;
+		try (FileChannel canal = FileChannel.open(origen, StandardOpenOption.READ)) {
+			long tamano = canal.size();
+			ByteBuffer contenido;
+			if (tamano >= mapeo.toBytes()) {
+				contenido = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+			} else {
+				contenido = ByteBuffer.allocate((int) tamano);
+				while (contenido.hasRemaining() && canal.read(contenido) >= 0) {
+					// lectura completa
+				}
+				contenido.flip();
+			}
+			long inicio = MetricasFirma.iniciar();
+			jws = contexto.firmar(contenido);
+			metricas.registrar(Etapa.RSA, inicio);
+			metricas.tamano((int) tamano);
+		}
+		escribir(destino, jws);
+	}
+
+	/**
+	 * Método para firmar en paralelo todos los archivos .json de un directorio.
+	 * Solo se mantienen en proceso los archivos de una ventana, igual que en el
+	 * stream, para no abrir todo el directorio a la vez. Cada archivo consume una
+	 * ficha del límite del emisor; sin fichas se espera en lugar de rechazar.
+	 * @param certificado, certificado ya autenticado
+	 * @param origen, directorio con los DTE
+	 * @param destino, directorio donde se escriben los JWS con el mismo nombre
+	 * @return cantidad de archivos firmados y el motivo de cada archivo con error
+	 * @throws IOException si no se puede leer el directorio
+	 */
+	public ResumenArchivos firmarDirectorio(CertificadoMH certificado, Path origen, Path destino) throws IOException {
+		Files.createDirectories(destino);
+		int limite = ventana > 0 ? ventana : 2 * Runtime.getRuntime().availableProcessors();
+		Deque<Map.Entry<String, CompletableFuture<String>>> enProceso = new ArrayDeque<>(limite);
+		ResumenArchivos resumen = new ResumenArchivos();
+		try (DirectoryStream<Path> archivos = Files.newDirectoryStream(origen, "*" + EXTENSION)) {
+			for (Path archivo : archivos) {
+				if (!Files.isRegularFile(archivo)) {
+					continue;
+				}
+				try {
+					limitador.esperar(certificado.getNit(), 1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Firma de directorio interrumpida");
+				}
+				Path salida = destino.resolve(archivo.getFileName());
+				CompletableFuture<String> tarea = CompletableFuture.supplyAsync(() -> {
+					try {
+						firmarArchivo(certificado, archivo, salida);
+						return null;
+					} catch (Exception e) {
+						logger.info("No se pudo firmar " + archivo + ": " + e.getMessage());
+						return String.valueOf(e.getMessage());
+					}
+				}, firmaExecutor);
+				enProceso.add(new SimpleImmutableEntry<>(archivo.getFileName().toString(), tarea));
+				if (enProceso.size() >= limite) {
+					resumen.agregar(enProceso.poll());
+				}
+			}
+		}
+		while (!enProceso.isEmpty()) {
+			resumen.agregar(enProceso.poll());
+		}
+		return resumen;
+	}
+
+	private static void escribir(Path destino, byte[] contenido) throws IOException {
+		// no se usa Files.createTempFile para que el archivo tenga los permisos por defecto y no 600
+		Path temporal = destino.resolveSibling("." + destino.getFileName() + "." + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE) + ".tmp");
+		try {
+			try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.wrap(contenido);
+				while (buffer.hasRemaining()) {
+					canal.write(buffer);
+				}
+			}
+			Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporal);
+		}
+	}
+
+	/**
+	 * Resultado de firmar un directorio.
+	 */
+	public static class ResumenArchivos {
+
+		private int firmados;
+
+		private final Map<String, String> errores = new LinkedHashMap<>();
+
+		void agregar(Map.Entry<String, CompletableFuture<String>> archivo) {
+			String error = archivo.getValue().join();
+			if (error == null) {
+				firmados++;
+			} else {
+				errores.put(archivo.getKey(), error);
+			}
+		}
+
+		public int getFirmados() {
+			return firmados;
+		}
+
+		public Map<String, String> getErrores() {
+			return errores;
+		}
+	}
+}
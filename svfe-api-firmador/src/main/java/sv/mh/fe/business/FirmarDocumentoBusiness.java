@@ -1,16 +1,41 @@
 package sv.mh.fe.business;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
 import java.nio.file.Path;
-import java.security.PrivateKey;
-import org.jose4j.jws.AlgorithmIdentifiers;
-import org.jose4j.jws.JsonWebSignature;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import sv.mh.fe.admision.LimitadorFirmas;
+import sv.mh.fe.cache.CertificadoCache;
+import sv.mh.fe.cache.FirmaCache;
+import sv.mh.fe.constantes.Errores;
+import sv.mh.fe.constantes.Errores.errores;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.metricas.MetricasFirma.Etapa;
 import sv.mh.fe.models.CertificadoMH;
-import sv.mh.fe.security.KeyGenerator;
-import sv.mh.fe.utils.FileUtils;
+import sv.mh.fe.security.ContextoFirma;
+import sv.mh.fe.utils.Mensaje;
+import sv.mh.fe.utils.ResponseBody;
+import sv.mh.fe.validations.AbstractValidations;
 
 @Service
 public class FirmarDocumentoBusiness {
@@ -18,39 +43,192 @@ public class FirmarDocumentoBusiness {
 	final static Logger logger = LoggerFactory.getLogger(FirmarDocumentoBusiness.class);
 	
 	@Autowired
-	private FileUtils fileUtils;
+	private FirmarArchivoBusiness firmarArchivoBusiness;
+	
+	@Autowired
+	private CertificadoCache certificadoCache;
+	
+	@Autowired
+	private FirmaCache firmaCache;
+	
+	@Autowired
+	private Mensaje mensaje;
 	
 	@Autowired
-	private KeyGenerator keyGenerator;
+	private MetricasFirma metricas;
+	
+	@Autowired
+	private LimitadorFirmas limitador;
+	
+	@Autowired
+	@Qualifier("firmaExecutor")
+	private ExecutorService firmaExecutor;
+	
+	@Value("${firmador.stream.ventana:0}")
+	private int ventanaStream;
+	
+	private final ObjectMapper mapper = new ObjectMapper();
+	
+	private final ObjectWriter dteWriter = mapper.writer().withDefaultPrettyPrinter();
+	
+	private final ObjectWriter dteWriterCompacto = mapper.writer();
 		
 	/**
-	 * Método para crear un JSON Web Signing (JWS).
+	 * Método para crear un JSON Web Signing (JWS) de un archivo, reemplazando su
+	 * contenido. Se firman los bytes del archivo sin modificarlos.
 	 * @param certificado
 	 * @param ruta
 	 * @throws Exception
 	 */
 	public void firmarJSON(CertificadoMH certificado, Path ruta) throws Exception {		
-		String contenido = fileUtils.LeerArchivo(ruta);		
-		JsonWebSignature jws = new JsonWebSignature();		
-		jws.setPayload(contenido);	
-		jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA512);				
-		PrivateKey key =  keyGenerator.ByteToPrivateKey(certificado.getPrivateKey().getEncodied());		
-		jws.setKey(key);
-		fileUtils.crearArchivo(ruta.toString(), jws.getCompactSerialization());
+		firmarArchivoBusiness.firmarArchivo(certificado, ruta, ruta);
 	}	
 	
 	/**
-	 * Método para crear un JSON Web Signing (JWS).
+	 * Método para crear un JSON Web Signing (JWS). Si el mismo emisor ya firmó el
+	 * mismo contenido dentro de la ventana de idempotencia, o lo está firmando en
+	 * este momento, se devuelve ese JWS.
 	 * @param certificado
 	 * @param contenido, DTE que se quiere firmar
 	 * @throws Exception
 	 */
 	public String firmarJSON(CertificadoMH certificado, String contenido) throws Exception {
-		JsonWebSignature jws = new JsonWebSignature();		
-		jws.setPayload(contenido);	
-		jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA512);	
-		PrivateKey key =  keyGenerator.ByteToPrivateKey(certificado.getPrivateKey().getEncodied());		
-		jws.setKey(key);
-		return jws.getCompactSerialization();
+		ContextoFirma contexto = certificadoCache.contexto(certificado);
+		String clave = firmaCache.clave(certificado.getNit(), contenido);
+		return firmaCache.firmar(clave, contexto, () -> {
+			long inicio = MetricasFirma.iniciar();
+			String firma = contexto.firmar(contenido);
+			metricas.registrar(Etapa.RSA, inicio);
+			metricas.tamano(contenido);
+			return firma;
+		});
 	}			
+	
+	/**
+	 * Método para convertir el dteJson recibido en el texto que se firma. Por
+	 * compatibilidad el formato por defecto es indentado.
+	 * @param dte
+	 * @param compacto, true para omitir la indentación y reducir el tamaño del JWS
+	 * @return
+	 * @throws JsonProcessingException
+	 */
+	public String serializar(Object dte, boolean compacto) throws JsonProcessingException {
+		return (compacto ? dteWriterCompacto : dteWriter).writeValueAsString(dte);
+	}
+	
+	/**
+	 * Método para firmar un lote de DTE con un mismo certificado. Los documentos se
+	 * firman en paralelo y el resultado de cada uno se devuelve en el mismo orden
+	 * de entrada; un error en un documento no detiene el resto del lote.
+	 * @param certificado, certificado ya autenticado
+	 * @param dtes, documentos que se quieren firmar
+	 * @param compacto, true para firmar el JSON sin formato
+	 * @return resultado por documento
+	 */
+	public List<ResponseBody> firmarLote(CertificadoMH certificado, List<Object> dtes, boolean compacto) {
+		List<CompletableFuture<ResponseBody>> tareas = new ArrayList<>(dtes.size());
+		for (Object dte : dtes) {
+			tareas.add(CompletableFuture.supplyAsync(() -> firmarElemento(certificado, dte, compacto), firmaExecutor));
+		}
+		List<ResponseBody> resultados = new ArrayList<>(tareas.size());
+		for (CompletableFuture<ResponseBody> tarea : tareas) {
+			resultados.add(tarea.join());
+		}
+		return resultados;
+	}
+	
+	private ResponseBody firmarElemento(CertificadoMH certificado, Object dte, boolean compacto) {
+		if (dte == null) {
+			return mensaje.error(errores.COD_809_DATOS_REQUERIDOS, AbstractValidations.REQ_JSON_DTE);
+		}
+		if (!(dte instanceof Map)) {
+			return mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON);
+		}
+		String dteString;
+		try {
+			dteString = serializar(dte, compacto);
+		} catch (JsonProcessingException e) {
+			logger.info(errores.COD_810_CONVERTIR_JSON_A_STRING, e.getMessage());
+			return mensaje.error(Errores.COD_810_CONVERTIR_JSON_A_STRING);
+		}
+		try {
+			return mensaje.ok(firmarJSON(certificado, dteString));
+		} catch (Exception e) {
+			logger.info(errores.COD_811_CONVERTIR_STRING_A_JSON, e.getMessage());
+			return mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON);
+		}
+	}
+	
+	/**
+	 * Método para firmar un flujo NDJSON: cada línea de la entrada es un DTE y por
+	 * cada una se escribe una línea con su resultado, en el mismo orden. Solo se
+	 * mantienen en memoria los documentos de la ventana en proceso; si el cliente
+	 * no consume la respuesta, la escritura bloquea y se deja de leer la entrada. Si
+	 * el emisor llega a su límite de firmas se espera en lugar de rechazar líneas.
+	 * @param certificado, certificado ya autenticado
+	 * @param entrada, documentos uno por línea
+	 * @param salida, resultados uno por línea
+	 * @return cantidad de documentos procesados
+	 * @throws IOException
+	 */
+	public long firmarStream(CertificadoMH certificado, BufferedReader entrada, Writer salida) throws IOException {
+		int ventana = ventanaStream > 0 ? ventanaStream : 2 * Runtime.getRuntime().availableProcessors();
+		Deque<CompletableFuture<ResponseBody>> enProceso = new ArrayDeque<>(ventana);
+		long total = 0;
+		String linea;
+		while ((linea = entrada.readLine()) != null) {
+			if (linea.isBlank()) {
+				continue;
+			}
+			String dte = linea;
+			try {
+				limitador.esperar(certificado.getNit(), 1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Firma en stream interrumpida");
+			}
+			enProceso.add(CompletableFuture.supplyAsync(() -> firmarTexto(certificado, dte), firmaExecutor));
+			total++;
+			if (enProceso.size() >= ventana) {
+				escribirLinea(salida, enProceso);
+			}
+		}
+		while (!enProceso.isEmpty()) {
+			escribirLinea(salida, enProceso);
+		}
+		salida.flush();
+		return total;
+	}
+	
+	/**
+	 * Escribe el resultado más antiguo. Antes de esperar por el siguiente se hace
+	 * flush para que el cliente reciba lo que ya está firmado.
+	 */
+	private void escribirLinea(Writer salida, Deque<CompletableFuture<ResponseBody>> enProceso) throws IOException {
+		salida.write(mapper.writeValueAsString(enProceso.poll().join()));
+		salida.write('\n');
+		CompletableFuture<ResponseBody> siguiente = enProceso.peek();
+		if (siguiente == null || !siguiente.isDone()) {
+			salida.flush();
+		}
+	}
+	
+	/**
+	 * Método para firmar un DTE ya serializado, devolviendo el error como
+	 * respuesta en lugar de lanzarlo.
+	 * @param certificado, certificado ya autenticado
+	 * @param dte, texto JSON del documento
+	 * @return JWS o error por documento
+	 */
+	public ResponseBody firmarTexto(CertificadoMH certificado, String dte) {
+		if (dte.stripLeading().charAt(0) != '{') {
+			return mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON);
+		}
+		try {
+			return mensaje.ok(firmarJSON(certificado, dte));
+		} catch (Exception e) {
+			logger.info(errores.COD_811_CONVERTIR_STRING_A_JSON, e.getMessage());
+			return mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON);
+		}
+	}
 }
@@ -0,0 +1,124 @@
+package sv.mh.fe.business;
+
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import org.jose4j.jwa.AlgorithmConstraints;
+import org.jose4j.jwa.AlgorithmConstraints.ConstraintType;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.lang.JoseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import sv.mh.fe.constantes.Errores;
+import sv.mh.fe.constantes.Errores.errores;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.metricas.MetricasFirma.Etapa;
+import sv.mh.fe.security.AlgoritmoFirma;
+import sv.mh.fe.utils.Mensaje;
+import sv.mh.fe.utils.ResponseBody;
+import sv.mh.fe.validations.AbstractValidations;
+
+@Service
+public class VerificarFirmaBusiness {
+
+	final static Logger logger = LoggerFactory.getLogger(VerificarFirmaBusiness.class);
+
+	/**
+	 * Solo se acepta el algoritmo con el que firma este servicio para el tipo de
+	 * llave del emisor, así un JWS no puede elegir otro algoritmo en su encabezado.
+	 */
+	private static final Map<AlgoritmoFirma, AlgorithmConstraints> ALGORITMOS = new EnumMap<>(AlgoritmoFirma.class);
+
+	static {
+		for (AlgoritmoFirma algoritmo : AlgoritmoFirma.values()) {
+			ALGORITMOS.put(algoritmo, new AlgorithmConstraints(ConstraintType.WHITELIST, algoritmo.getJws()));
+		}
+	}
+
+	@Autowired
+	private Mensaje mensaje;
+
+	@Autowired
+	private MetricasFirma metricas;
+
+	@Autowired
+	@Qualifier("firmaExecutor")
+	private ExecutorService firmaExecutor;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Método para verificar un JSON Web Signing (JWS) con la llave pública del
+	 * emisor.
+	 * @param llave, llave pública del emisor
+	 * @param compactSerialization, JWS que se quiere verificar
+	 * @return el DTE firmado si la firma es válida, o el error correspondiente
+	 */
+	public ResponseBody verificar(PublicKey llave, String compactSerialization) {
+		if (compactSerialization == null || compactSerialization.isBlank()) {
+			return mensaje.error(errores.COD_809_DATOS_REQUERIDOS, AbstractValidations.REQ_JWS);
+		}
+		AlgoritmoFirma algoritmo;
+		try {
+			algoritmo = AlgoritmoFirma.de(llave);
+		} catch (InvalidKeyException e) {
+			logger.info(e.getMessage());
+			return mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA);
+		}
+		long inicio = MetricasFirma.iniciar();
+		String payload;
+		try {
+			JsonWebSignature jws = new JsonWebSignature();
+			jws.setAlgorithmConstraints(ALGORITMOS.get(algoritmo));
+			jws.setCompactSerialization(compactSerialization);
+			jws.setKey(llave);
+			if (!jws.verifySignature()) {
+				return mensaje.error(Errores.COD_802_NO_VALIDO);
+			}
+			payload = jws.getUnverifiedPayload();
+		} catch (JoseException e) {
+			logger.info(errores.COD_811_CONVERTIR_STRING_A_JSON, e.getMessage());
+			return mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON);
+		} finally {
+			metricas.registrar(Etapa.VERIFICACION, inicio);
+		}
+		try {
+			return mensaje.ok(mapper.readTree(payload));
+		} catch (JsonProcessingException e) {
+			return mensaje.ok(payload);
+		}
+	}
+
+	/**
+	 * Método para verificar un lote de JWS de un mismo emisor. Las firmas se
+	 * verifican en paralelo y el resultado de cada una se devuelve en el mismo
+	 * orden de entrada.
+	 * @param llave, llave pública del emisor
+	 * @param firmas, JWS que se quieren verificar
+	 * @return resultado por documento
+	 */
+	public List<ResponseBody> verificarLote(PublicKey llave, List<String> firmas) {
+		List<CompletableFuture<ResponseBody>> tareas = new ArrayList<>(firmas.size());
+		for (String firma : firmas) {
+			tareas.add(CompletableFuture.supplyAsync(() -> verificar(llave, firma), firmaExecutor));
+		}
+		List<ResponseBody> resultados = new ArrayList<>(tareas.size());
+		for (CompletableFuture<ResponseBody> tarea : tareas) {
+			resultados.add(tarea.join());
+		}
+		return resultados;
+	}
+}
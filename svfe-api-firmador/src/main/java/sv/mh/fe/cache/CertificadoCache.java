@@ -0,0 +1,340 @@
+package sv.mh.fe.cache;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import sv.mh.fe.almacen.AlmacenCertificados;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.metricas.MetricasFirma.Cache;
+import sv.mh.fe.metricas.MetricasFirma.Etapa;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.models.Llave;
+import sv.mh.fe.security.ContextoFirma;
+import sv.mh.fe.security.KeyGenerator;
+import sv.mh.fe.vigencia.IndiceVigencia;
+
+/**
+ * Cache en memoria de certificados por NIT. Guarda el {@link CertificadoMH} ya
+ * deserializado, las llaves {@link PrivateKey} y {@link PublicKey} decodificadas y
+ * el {@link ContextoFirma} del emisor para que las firmas y verificaciones
+ * sucesivas de un mismo emisor no lean disco ni XML ni vuelvan a preparar la
+ * firma.
+ *
+ * Los certificados se leen del {@link AlmacenCertificados} configurado. Las
+ * entradas se descartan por tamaño (la de acceso más antiguo), por TTL, cuando
+ * cambia la versión del certificado en el almacén o cuando el WatchService del
+ * directorio del almacén reporta un cambio.
+ */
+@Component
+public class CertificadoCache {
+
+	private static Logger logger = LoggerFactory.getLogger(CertificadoCache.class);
+
+	private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+	@Autowired
+	private AlmacenCertificados almacen;
+
+	@Autowired
+	private KeyGenerator keyGenerator;
+
+	@Autowired
+	private MetricasFirma metricas;
+
+	@Autowired
+	private IndiceVigencia indiceVigencia;
+
+	@Value("${firmador.cache.maximo:256}")
+	private int maximo;
+
+	@Value("${firmador.cache.ttl:30m}")
+	private Duration ttl;
+
+	@Value("${firmador.cache.verificacion:5s}")
+	private Duration verificacion;
+
+	@Value("${firmador.firma.proveedor:jdk}")
+	private String nombreProveedor;
+
+	private volatile Provider proveedor;
+
+	private WatchService watchService;
+
+	/**
+	 * Método para recuperar el certificado de un NIT, leyéndolo del almacén solo si
+	 * no está en cache o si la entrada ya no es vigente.
+	 * @param nit
+	 * @return certificado deserializado
+	 * @throws IOException si el certificado no existe o no se puede leer
+	 */
+	public CertificadoMH obtener(String nit) throws IOException {
+		return entrada(nit).certificado;
+	}
+
+	/**
+	 * Método para obtener la llave pública del certificado de un NIT. Se decodifica
+	 * una sola vez mientras el certificado siga en cache.
+	 * @param nit
+	 * @return llave pública, o null si el certificado no tiene una válida
+	 * @throws IOException si el certificado no existe o no se puede leer
+	 */
+	public PublicKey llavePublica(String nit) throws IOException {
+		Entrada entrada = entrada(nit);
+		PublicKey llave = entrada.llavePublica;
+		if (llave == null) {
+			long inicio = MetricasFirma.iniciar();
+			llave = keyGenerator.ByteToPublicKey(entrada.certificado.getPublicKey().getEncodied(), algoritmo(entrada.certificado.getPublicKey()));
+			metricas.registrar(Etapa.LLAVE, inicio);
+			entrada.llavePublica = llave;
+		}
+		return llave;
+	}
+
+	private Entrada entrada(String nit) throws IOException {
+		long ahora = System.nanoTime();
+		Entrada entrada = entradas.get(nit);
+		if (entrada != null && vigente(nit, entrada, ahora)) {
+			entrada.accedido = ahora;
+			metricas.cache(Cache.CERTIFICADO, true);
+			return entrada;
+		}
+		metricas.cache(Cache.CERTIFICADO, false);
+		return cargar(nit, ahora);
+	}
+
+	/**
+	 * Método para obtener la llave privada decodificada del certificado. Si el
+	 * certificado es el que está en cache se decodifica una sola vez.
+	 * @param certificado
+	 * @return llave privada
+	 */
+	public PrivateKey llavePrivada(CertificadoMH certificado) {
+		Entrada entrada = entradas.get(certificado.getNit());
+		if (entrada == null || entrada.certificado != certificado) {
+			return decodificar(certificado);
+		}
+		PrivateKey llave = entrada.llavePrivada;
+		if (llave == null) {
+			llave = decodificar(certificado);
+			entrada.llavePrivada = llave;
+		}
+		return llave;
+	}
+
+	/**
+	 * Método para obtener el contexto de firma del certificado. Si el certificado
+	 * es el que está en cache se prepara una sola vez.
+	 * @param certificado
+	 * @return contexto de firma con el algoritmo de la llave
+	 * @throws GeneralSecurityException si la llave no sirve para firmar
+	 */
+	public ContextoFirma contexto(CertificadoMH certificado) throws GeneralSecurityException {
+		Entrada entrada = entradas.get(certificado.getNit());
+		if (entrada == null || entrada.certificado != certificado) {
+			return new ContextoFirma(decodificar(certificado), proveedor());
+		}
+		ContextoFirma contexto = entrada.contexto;
+		if (contexto == null) {
+			contexto = new ContextoFirma(llavePrivada(certificado), proveedor());
+			entrada.contexto = contexto;
+		}
+		return contexto;
+	}
+
+	/**
+	 * @return proveedor JCA configurado en firmador.firma.proveedor
+	 * @throws GeneralSecurityException
+	 */
+	public Provider proveedor() throws GeneralSecurityException {
+		Provider resuelto = proveedor;
+		if (resuelto == null) {
+			resuelto = ContextoFirma.proveedor(nombreProveedor);
+			proveedor = resuelto;
+			logger.info("Proveedor de firma: " + resuelto.getName());
+		}
+		return resuelto;
+	}
+
+	private PrivateKey decodificar(CertificadoMH certificado) {
+		long inicio = MetricasFirma.iniciar();
+		PrivateKey llave = keyGenerator.ByteToPrivateKey(certificado.getPrivateKey().getEncodied(), algoritmo(certificado.getPrivateKey()));
+		metricas.registrar(Etapa.LLAVE, inicio);
+		return llave;
+	}
+
+	/**
+	 * @return algoritmo de la llave según el certificado; RSA si no lo indica
+	 */
+	private static String algoritmo(Llave llave) {
+		String algoritmo = llave.getAlgorithm();
+		return algoritmo == null || algoritmo.isBlank() ? KeyGenerator.RSA : algoritmo;
+	}
+
+	public void invalidar(String nit) {
+		if (entradas.remove(nit) != null) {
+			logger.info("Certificado removido de cache: " + nit);
+		}
+	}
+
+	public void invalidarTodo() {
+		entradas.clear();
+	}
+
+	public int size() {
+		return entradas.size();
+	}
+
+	private boolean vigente(String nit, Entrada entrada, long ahora) {
+		if (ahora - entrada.cargado > ttl.toNanos()) {
+			return false;
+		}
+		if (ahora - entrada.verificado > verificacion.toNanos()) {
+			try {
+				if (almacen.version(nit) != entrada.modificado) {
+					return false;
+				}
+			} catch (IOException e) {
+				entradas.remove(nit, entrada);
+				return false;
+			}
+			entrada.verificado = ahora;
+		}
+		return true;
+	}
+
+	private Entrada cargar(String nit, long ahora) throws IOException {
+		long modificado;
+		try {
+			modificado = almacen.version(nit);
+		} catch (NoSuchFileException e) {
+			entradas.remove(nit);
+			throw e;
+		}
+		long inicio = MetricasFirma.iniciar();
+		CertificadoMH certificado = almacen.cargar(nit);
+		metricas.registrar(Etapa.ALMACEN, inicio);
+		indiceVigencia.registrar(certificado);
+		Entrada entrada = new Entrada(certificado, modificado, ahora);
+		entradas.put(nit, entrada);
+		if (entradas.size() > maximo) {
+			desalojar();
+		}
+		return entrada;
+	}
+
+	/**
+	 * Elimina las entradas de acceso más antiguo hasta respetar el máximo. Solo se
+	 * ejecuta al cargar un certificado nuevo, nunca en el camino de firma en cache.
+	 */
+	private void desalojar() {
+		while (entradas.size() > maximo) {
+			Map.Entry<String, Entrada> antigua = null;
+			for (Map.Entry<String, Entrada> e : entradas.entrySet()) {
+				if (antigua == null || e.getValue().accedido < antigua.getValue().accedido) {
+					antigua = e;
+				}
+			}
+			if (antigua == null) {
+				return;
+			}
+			entradas.remove(antigua.getKey(), antigua.getValue());
+		}
+	}
+
+	@PostConstruct
+	public void iniciarVigilancia() {
+		Path directorio = almacen.directorio();
+		if (directorio == null || !Files.isDirectory(directorio)) {
+			logger.info("No existe el directorio de certificados, solo se validará la fecha de modificación: " + directorio);
+			return;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			directorio.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			logger.error("No se pudo vigilar el directorio de certificados: " + e.getMessage());
+			return;
+		}
+		Thread hilo = new Thread(this::vigilar, "certificado-cache-watcher");
+		hilo.setDaemon(true);
+		hilo.start();
+	}
+
+	@PreDestroy
+	public void detenerVigilancia() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+		}
+	}
+
+	private void vigilar() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				for (WatchEvent<?> evento : key.pollEvents()) {
+					if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+						invalidarTodo();
+						continue;
+					}
+					String afectado = almacen.afectado(evento.context().toString());
+					if (AlmacenCertificados.TODOS.equals(afectado)) {
+						invalidarTodo();
+					} else if (afectado != null) {
+						invalidar(afectado);
+					}
+				}
+				if (!key.reset()) {
+					invalidarTodo();
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// cierre normal de la aplicación
+		}
+	}
+
+	private static final class Entrada {
+		final CertificadoMH certificado;
+		final long modificado;
+		final long cargado;
+		volatile long verificado;
+		volatile long accedido;
+		volatile PrivateKey llavePrivada;
+		volatile PublicKey llavePublica;
+		volatile ContextoFirma contexto;
+
+		Entrada(CertificadoMH certificado, long modificado, long cargado) {
+			this.certificado = certificado;
+			this.modificado = modificado;
+			this.cargado = cargado;
+			this.verificado = cargado;
+			this.accedido = cargado;
+		}
+	}
+}
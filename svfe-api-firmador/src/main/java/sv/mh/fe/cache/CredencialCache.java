@@ -0,0 +1,93 @@
+package sv.mh.fe.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.metricas.MetricasFirma.Cache;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.security.Cryptographic;
+
+/**
+ * Credenciales verificadas recientemente, por NIT. Una petición repetida con la
+ * misma contraseña se compara en tiempo constante con la que ya se verificó,
+ * sin calcular el SHA-512; solo una contraseña distinta, un certificado
+ * recargado o una entrada vencida pagan el hash.
+ *
+ * La contraseña verificada se guarda en memoria como bytes UTF-8 mientras no
+ * pase firmador.credenciales.ttl; no se escribe en disco ni en el log.
+ *
+ * Una entrada solo es válida para la instancia de certificado con la que se
+ * verificó, así que recargar el certificado obliga a verificar de nuevo.
+ */
+@Component
+public class CredencialCache {
+
+	private final Map<String, Credencial> credenciales = new ConcurrentHashMap<>();
+
+	@Autowired
+	private MetricasFirma metricas;
+
+	@Value("${firmador.credenciales.ttl:5m}")
+	private Duration ttl;
+
+	@Value("${firmador.cache.maximo:256}")
+	private int maximo;
+
+	@Autowired
+	private Cryptographic cryptographic;
+
+	/**
+	 * Método para verificar la contraseña contra la clave del certificado.
+	 * @param certificado
+	 * @param password, contraseña recibida
+	 * @return true si la contraseña corresponde al certificado
+	 * @throws NoSuchAlgorithmException
+	 */
+	public boolean verificar(CertificadoMH certificado, String password) throws NoSuchAlgorithmException {
+		long ahora = System.nanoTime();
+		byte[] bytes = password.getBytes(StandardCharsets.UTF_8);
+		Credencial credencial = credenciales.get(certificado.getNit());
+		if (credencial != null && credencial.certificado == certificado && ahora - credencial.verificado < ttl.toNanos()
+				&& MessageDigest.isEqual(credencial.password, bytes)) {
+			metricas.cache(Cache.CREDENCIAL, true);
+			return true;
+		}
+		metricas.cache(Cache.CREDENCIAL, false);
+		byte[] hash = cryptographic.digest(password, Cryptographic.SHA512);
+		if (!Cryptographic.isEqual(hash, certificado.getPrivateKey().getClave())) {
+			return false;
+		}
+		if (credenciales.size() >= maximo) {
+			credenciales.values().removeIf(c -> ahora - c.verificado >= ttl.toNanos());
+		}
+		if (credenciales.size() < maximo || credenciales.containsKey(certificado.getNit())) {
+			credenciales.put(certificado.getNit(), new Credencial(certificado, bytes, ahora));
+		}
+		return true;
+	}
+
+	public void invalidar(String nit) {
+		credenciales.remove(nit);
+	}
+
+	private static final class Credencial {
+		final CertificadoMH certificado;
+		final byte[] password;
+		final long verificado;
+
+		Credencial(CertificadoMH certificado, byte[] password, long verificado) {
+			this.certificado = certificado;
+			this.password = password;
+			this.verificado = verificado;
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package sv.mh.fe.cache;
+
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PostConstruct;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.metricas.MetricasFirma.Cache;
+import sv.mh.fe.security.ContextoFirma;
+import sv.mh.fe.security.Cryptographic;
+
+/**
+ * Cache de idempotencia de firmas. Los terminales que reintentan la misma
+ * petición reciben el JWS que ya se produjo, sin repetir la operación de firma,
+ * mientras no pase firmador.idempotencia.ventana.
+ *
+ * La clave es el NIT más el SHA-256 del texto que se firma (el DTE ya
+ * serializado), y cada entrada recuerda el {@link ContextoFirma} con el que se
+ * firmó: si el certificado del emisor cambia, su contexto también y la entrada
+ * deja de servir. El tamaño está limitado por cantidad de entradas y por bytes;
+ * al pasar cualquiera de los dos se descartan las de acceso más antiguo.
+ *
+ * Cada entrada guarda la firma como un CompletableFuture que se publica antes
+ * de firmar: si llegan dos reintentos a la vez, el segundo espera la firma del
+ * primero en lugar de repetirla. No hay un lock global, y esperar el futuro no
+ * fija el hilo virtual a su hilo de plataforma.
+ */
+@Component
+public class FirmaCache {
+
+	private static final Base64.Encoder BASE64 = Base64.getEncoder().withoutPadding();
+
+	/** memoria aproximada de una entrada sin contar la clave ni el JWS */
+	private static final int BYTES_ENTRADA = 96;
+
+	/** al desalojar se baja a este porcentaje de los límites, para no desalojar en cada firma */
+	private static final int PORCENTAJE_DESALOJO = 90;
+
+	@Autowired
+	private Cryptographic cryptographic;
+
+	@Autowired
+	private MetricasFirma metricas;
+
+	@Value("${firmador.idempotencia.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${firmador.idempotencia.ventana:10m}")
+	private Duration ventana;
+
+	@Value("${firmador.idempotencia.maximo:10000}")
+	private int maximo;
+
+	@Value("${firmador.idempotencia.memoria:32MB}")
+	private DataSize memoria;
+
+	private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	/** un solo hilo desaloja a la vez; los demás siguen sin esperarlo */
+	private final ReentrantLock desalojo = new ReentrantLock();
+
+	@PostConstruct
+	public void iniciar() {
+		metricas.medidor("firmador.idempotencia.entradas", "Firmas guardadas para reintentos", this::size);
+		metricas.medidor("firmador.idempotencia.bytes", "Memoria aproximada de las firmas guardadas", bytes::get);
+	}
+
+	/**
+	 * Método para calcular la clave de un documento.
+	 * @param nit
+	 * @param contenido, texto que se firma
+	 * @return clave, o null si el cache no está habilitado
+	 * @throws NoSuchAlgorithmException
+	 */
+	public String clave(String nit, String contenido) throws NoSuchAlgorithmException {
+		if (!habilitado) {
+			return null;
+		}
+		return nit + ':' + BASE64.encodeToString(cryptographic.digest(contenido, Cryptographic.SHA256));
+	}
+
+	/**
+	 * Método para obtener el JWS de un documento: el que ya se produjo dentro de
+	 * la ventana, el que está produciendo otro hilo, o uno nuevo.
+	 * @param clave, el resultado de {@link #clave(String, String)}; null firma sin cache
+	 * @param contexto, contexto de firma actual del emisor
+	 * @param firmador, operación de firma cuando no hay un JWS que reutilizar
+	 * @return JWS
+	 * @throws GeneralSecurityException si la firma falla
+	 */
+	public String firmar(String clave, ContextoFirma contexto, Firmador firmador) throws GeneralSecurityException {
+		if (clave == null) {
+			return firmador.firmar();
+		}
+		while (true) {
+			long ahora = System.nanoTime();
+			Entrada entrada = entradas.get(clave);
+			if (entrada != null && (entrada.contexto != contexto || ahora - entrada.creado > ventana.toNanos())) {
+				quitar(clave, entrada);
+				entrada = null;
+			}
+			if (entrada == null) {
+				Entrada nueva = new Entrada(contexto, ahora);
+				entrada = entradas.putIfAbsent(clave, nueva);
+				if (entrada == null) {
+					metricas.cache(Cache.IDEMPOTENCIA, false);
+					return producir(clave, nueva, firmador);
+				}
+			}
+			entrada.accedido = ahora;
+			try {
+				String firma = entrada.firma.join();
+				metricas.cache(Cache.IDEMPOTENCIA, true);
+				return firma;
+			} catch (CompletionException e) {
+				// la firma del otro hilo falló y ya quitó su entrada; se intenta de nuevo
+			}
+		}
+	}
+
+	private String producir(String clave, Entrada entrada, Firmador firmador) throws GeneralSecurityException {
+		String firma;
+		try {
+			firma = firmador.firmar();
+		} catch (GeneralSecurityException | RuntimeException | Error e) {
+			quitar(clave, entrada);
+			entrada.firma.completeExceptionally(e);
+			throw e;
+		}
+		entrada.firma.complete(firma);
+		int tamano = BYTES_ENTRADA + clave.length() + firma.length();
+		// si la entrada ya se quitó mientras se firmaba, no se cuenta
+		if (entrada.bytes.compareAndSet(0, tamano)) {
+			bytes.addAndGet(tamano);
+		}
+		if (excedido(100)) {
+			desalojar();
+		}
+		return firma;
+	}
+
+	public void invalidarTodo() {
+		for (Map.Entry<String, Entrada> e : entradas.entrySet()) {
+			quitar(e.getKey(), e.getValue());
+		}
+	}
+
+	public int size() {
+		return entradas.size();
+	}
+
+	private boolean excedido(int porcentaje) {
+		return entradas.size() * 100L > (long) maximo * porcentaje
+				|| bytes.get() * 100 > memoria.toBytes() * porcentaje;
+	}
+
+	/**
+	 * Quita las entradas vencidas y luego las de acceso más antiguo hasta bajar
+	 * de PORCENTAJE_DESALOJO de los límites. Solo corre al guardar una firma
+	 * nueva, nunca al devolver una del cache.
+	 */
+	private void desalojar() {
+		if (!desalojo.tryLock()) {
+			return;
+		}
+		try {
+			long vencidas = System.nanoTime() - ventana.toNanos();
+			List<Candidata> candidatas = new ArrayList<>(entradas.size());
+			for (Map.Entry<String, Entrada> e : entradas.entrySet()) {
+				if (e.getValue().creado - vencidas < 0) {
+					quitar(e.getKey(), e.getValue());
+				} else if (e.getValue().firma.isDone()) {
+					// el acceso se copia: ordenar por un valor que cambia rompe el sort
+					candidatas.add(new Candidata(e.getKey(), e.getValue(), e.getValue().accedido));
+				}
+			}
+			candidatas.sort(Comparator.comparingLong(c -> c.accedido));
+			for (int i = 0; i < candidatas.size() && excedido(PORCENTAJE_DESALOJO); i++) {
+				quitar(candidatas.get(i).clave, candidatas.get(i).entrada);
+			}
+		} finally {
+			desalojo.unlock();
+		}
+	}
+
+	private void quitar(String clave, Entrada entrada) {
+		if (entradas.remove(clave, entrada)) {
+			int tamano = entrada.bytes.getAndSet(-1);
+			if (tamano > 0) {
+				bytes.addAndGet(-tamano);
+			}
+		}
+	}
+
+	/**
+	 * Operación de firma que el cache ejecuta cuando no tiene el JWS.
+	 */
+	@FunctionalInterface
+	public interface Firmador {
+		String firmar() throws GeneralSecurityException;
+	}
+
+	private static final class Entrada {
+		final ContextoFirma contexto;
+		final CompletableFuture<String> firma = new CompletableFuture<>();
+		final long creado;
+		volatile long accedido;
+		/** 0 mientras se firma, el tamaño al guardarse, -1 al quitarse */
+		final AtomicInteger bytes = new AtomicInteger();
+
+		Entrada(ContextoFirma contexto, long creado) {
+			this.contexto = contexto;
+			this.creado = creado;
+			this.accedido = creado;
+		}
+	}
+
+	private static final class Candidata {
+		final String clave;
+		final Entrada entrada;
+		final long accedido;
+
+		Candidata(String clave, Entrada entrada, long accedido) {
+			this.clave = clave;
+			this.entrada = entrada;
+			this.accedido = accedido;
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package sv.mh.fe.cola;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import sv.mh.fe.business.FirmarDocumentoBusiness;
+import sv.mh.fe.cache.CertificadoCache;
+import sv.mh.fe.cola.Trabajo.Estado;
+import sv.mh.fe.constantes.Errores.errores;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.utils.Mensaje;
+import sv.mh.fe.utils.ResponseBody;
+
+/**
+ * Cola de firma asíncrona. Los trabajos se autentican al encolarse y los firma
+ * un grupo fijo de hilos, primero los de mayor {@link Prioridad} y dentro de la
+ * misma prioridad en orden de llegada. La firma la hace
+ * {@link FirmarDocumentoBusiness}.
+ *
+ * El estado se guarda en un {@link DiarioTrabajos}: al reiniciar, los trabajos
+ * que no terminaron se vuelven a encolar y los terminados se pueden seguir
+ * consultando hasta que vence su retención.
+ */
+@Service
+public class ColaFirma {
+
+	private static Logger logger = LoggerFactory.getLogger(ColaFirma.class);
+
+	private static final Comparator<Trabajo> ORDEN = Comparator.comparing(Trabajo::getPrioridad)
+			.thenComparingLong(Trabajo::getSecuencia);
+
+	@Autowired
+	private FirmarDocumentoBusiness business;
+
+	@Autowired
+	private CertificadoCache certificadoCache;
+
+	@Autowired
+	private Mensaje mensaje;
+
+	@Autowired
+	private MetricasFirma metricas;
+
+	@Value("${firmador.cola.hilos:0}")
+	private int hilos;
+
+	@Value("${firmador.cola.maximo:10000}")
+	private int maximo;
+
+	@Value("${firmador.cola.retencion:1h}")
+	private Duration retencion;
+
+	@Value("${firmador.cola.diario:${user.dir}/cola/trabajos.ndjson}")
+	private String archivoDiario;
+
+	/** hosts permitidos para el callback; ".dominio" permite sus subdominios */
+	@Value("${firmador.cola.callbacks:}")
+	private List<String> hostsCallback;
+
+	private final Map<String, Trabajo> trabajos = new ConcurrentHashMap<>();
+
+	private final PriorityBlockingQueue<Trabajo> pendientes = new PriorityBlockingQueue<>(64, ORDEN);
+
+	private final AtomicInteger enCola = new AtomicInteger();
+
+	private final AtomicLong secuencia = new AtomicLong();
+
+	private final List<Thread> trabajadores = new ArrayList<>();
+
+	private final ExecutorService callbacks = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final ScheduledExecutorService limpieza = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread hilo = new Thread(r, "cola-firma-limpieza");
+		hilo.setDaemon(true);
+		return hilo;
+	});
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private RestClient restClient;
+
+	private DiarioTrabajos diario;
+
+	@PostConstruct
+	public void iniciar() throws IOException {
+		SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+		factory.setConnectTimeout(Duration.ofSeconds(5));
+		factory.setReadTimeout(Duration.ofSeconds(10));
+		restClient = RestClient.builder().requestFactory(factory).build();
+
+		diario = new DiarioTrabajos(Paths.get(archivoDiario));
+		int recuperados = 0;
+		for (Trabajo trabajo : diario.abrir()) {
+			if (!trabajo.isTerminado() && trabajo.getDte() == null) {
+				continue;
+			}
+			trabajo.setSecuencia(secuencia.incrementAndGet());
+			trabajos.put(trabajo.getId(), trabajo);
+			if (!trabajo.isTerminado()) {
+				enCola.incrementAndGet();
+				pendientes.add(trabajo);
+				recuperados++;
+			}
+		}
+		diario.compactar(trabajos.values());
+		if (recuperados > 0) {
+			logger.info("Trabajos de firma recuperados del diario: " + recuperados);
+		}
+
+		int total = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+		for (int i = 1; i <= total; i++) {
+			Thread hilo = new Thread(this::atender, "cola-firma-" + i);
+			hilo.setDaemon(true);
+			hilo.start();
+			trabajadores.add(hilo);
+		}
+		limpieza.scheduleWithFixedDelay(this::depurar, 1, 1, TimeUnit.MINUTES);
+		metricas.medidor("firmador.cola.pendientes", "Trabajos de firma en espera", enCola::get);
+	}
+
+	@PreDestroy
+	public void detener() throws IOException {
+		trabajadores.forEach(Thread::interrupt);
+		limpieza.shutdownNow();
+		callbacks.shutdown();
+		diario.cerrar();
+	}
+
+	/**
+	 * Método para encolar un DTE ya autenticado y serializado.
+	 * @param certificado, certificado del emisor ya autenticado
+	 * @param dte, texto que se va a firmar
+	 * @param prioridad
+	 * @param callback, URL a la que se envía el trabajo terminado; puede ser null
+	 * @return trabajo encolado, o null si la cola está llena
+	 * @throws IOException si no se pudo registrar en el diario
+	 */
+	public Trabajo encolar(CertificadoMH certificado, String dte, Prioridad prioridad, String callback) throws IOException {
+		if (enCola.incrementAndGet() > maximo) {
+			enCola.decrementAndGet();
+			return null;
+		}
+		Trabajo trabajo = new Trabajo();
+		trabajo.setId(UUID.randomUUID().toString());
+		trabajo.setNit(certificado.getNit());
+		trabajo.setPrioridad(prioridad);
+		trabajo.setCallback(callback);
+		trabajo.setCreado(System.currentTimeMillis());
+		trabajo.setDte(dte);
+		trabajo.setSecuencia(secuencia.incrementAndGet());
+		// se publica antes de escribir el diario para que una compactación
+		// concurrente no lo pierda
+		trabajos.put(trabajo.getId(), trabajo);
+		try {
+			diario.encolado(trabajo);
+		} catch (IOException e) {
+			trabajos.remove(trabajo.getId());
+			enCola.decrementAndGet();
+			throw e;
+		}
+		pendientes.add(trabajo);
+		return trabajo;
+	}
+
+	/**
+	 * Método para validar la URL de callback antes de encolar, para que el
+	 * firmador no se pueda usar para enviar peticiones a su red interna.
+	 * @param callback, URL http o https
+	 * @return true si el host está en firmador.cola.callbacks o, sin esa lista,
+	 * si todas sus direcciones son públicas
+	 */
+	public boolean callbackPermitido(String callback) {
+		String host;
+		try {
+			URI uri = URI.create(callback);
+			String esquema = uri.getScheme();
+			if (!"http".equalsIgnoreCase(esquema) && !"https".equalsIgnoreCase(esquema) || uri.getHost() == null) {
+				return false;
+			}
+			host = uri.getHost().toLowerCase(Locale.ROOT);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		if (!hostsCallback.isEmpty()) {
+			for (String permitido : hostsCallback) {
+				permitido = permitido.trim().toLowerCase(Locale.ROOT);
+				if (permitido.startsWith(".") ? host.endsWith(permitido) : host.equals(permitido)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		try {
+			for (InetAddress direccion : InetAddress.getAllByName(host)) {
+				if (!publica(direccion)) {
+					return false;
+				}
+			}
+			return true;
+		} catch (UnknownHostException e) {
+			return false;
+		}
+	}
+
+	private static boolean publica(InetAddress direccion) {
+		if (direccion.isAnyLocalAddress() || direccion.isLoopbackAddress() || direccion.isLinkLocalAddress()
+				|| direccion.isSiteLocalAddress() || direccion.isMulticastAddress()) {
+			return false;
+		}
+		byte[] bytes = direccion.getAddress();
+		if (direccion instanceof Inet6Address) {
+			// fc00::/7, direcciones locales únicas
+			return (bytes[0] & 0xfe) != 0xfc;
+		}
+		// 100.64.0.0/10, NAT del proveedor
+		return !((bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64);
+	}
+
+	/**
+	 * @param id
+	 * @return trabajo, o null si no existe o ya venció su retención
+	 */
+	public Trabajo consultar(String id) {
+		return trabajos.get(id);
+	}
+
+	private void atender() {
+		while (!Thread.currentThread().isInterrupted()) {
+			Trabajo trabajo;
+			try {
+				trabajo = pendientes.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			enCola.decrementAndGet();
+			trabajo.setEstado(Estado.EN_PROCESO);
+			ResponseBody resultado = firmar(trabajo);
+			trabajo.setResultado(resultado);
+			trabajo.setTerminado(System.currentTimeMillis());
+			trabajo.setEstado(ResponseBody.status_ok.equals(resultado.getStatus()) ? Estado.FIRMADO : Estado.ERROR);
+			trabajo.setDte(null);
+			try {
+				diario.terminado(trabajo);
+			} catch (IOException e) {
+				logger.error("No se pudo registrar el trabajo " + trabajo.getId() + " en el diario: " + e.getMessage());
+			}
+			if (trabajo.getCallback() != null) {
+				callbacks.execute(() -> notificar(trabajo));
+			}
+		}
+	}
+
+	private ResponseBody firmar(Trabajo trabajo) {
+		CertificadoMH certificado;
+		try {
+			certificado = certificadoCache.obtener(trabajo.getNit());
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			return mensaje.error(errores.COD_812_NO_FILE, e.getMessage());
+		}
+		return business.firmarTexto(certificado, trabajo.getDte());
+	}
+
+	private void notificar(Trabajo trabajo) {
+		// se vuelve a validar: el host pudo cambiar de dirección desde que se encoló
+		if (!callbackPermitido(trabajo.getCallback())) {
+			logger.warn("Callback no permitido para el trabajo " + trabajo.getId() + ": " + trabajo.getCallback());
+			return;
+		}
+		try {
+			// como bytes para enviar Content-Length en lugar de chunked
+			restClient.post().uri(trabajo.getCallback()).contentType(MediaType.APPLICATION_JSON)
+					.body(mapper.writeValueAsBytes(trabajo)).retrieve().toBodilessEntity();
+		} catch (JsonProcessingException | RuntimeException e) {
+			logger.warn("No se pudo notificar el trabajo " + trabajo.getId() + " a " + trabajo.getCallback() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Elimina los trabajos terminados cuya retención venció y compacta el diario.
+	 */
+	private void depurar() {
+		long limite = System.currentTimeMillis() - retencion.toMillis();
+		boolean depurados = trabajos.values().removeIf(t -> t.isTerminado() && t.getTerminado() < limite);
+		if (depurados) {
+			try {
+				diario.compactar(new ArrayList<>(trabajos.values()));
+			} catch (IOException e) {
+				logger.error("No se pudo compactar el diario de firma: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package sv.mh.fe.cola;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import sv.mh.fe.utils.ResponseBody;
+
+/**
+ * Diario de solo escritura al final (NDJSON) con el estado de la cola. Cada
+ * trabajo escribe una línea al encolarse y otra al terminar; al iniciar se
+ * vuelve a leer para recuperar los pendientes y se reescribe solo con los
+ * trabajos vigentes. Las contraseñas no se guardan. Cada registro se lleva al
+ * disco con force antes de responder, así un trabajo aceptado no se pierde si
+ * se cae el equipo.
+ */
+class DiarioTrabajos {
+
+	private static Logger logger = LoggerFactory.getLogger(DiarioTrabajos.class);
+
+	private static final String ENCOLADO = "E";
+
+	private static final String TERMINADO = "T";
+
+	private final Path archivo;
+
+	private final ObjectMapper mapper = new ObjectMapper()
+			.setSerializationInclusion(JsonInclude.Include.NON_NULL)
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private FileChannel canal;
+
+	private BufferedWriter writer;
+
+	DiarioTrabajos(Path archivo) {
+		this.archivo = archivo;
+	}
+
+	/**
+	 * Lee el diario y lo deja abierto para agregar registros.
+	 * @return trabajos registrados, en el orden en que se encolaron
+	 * @throws IOException
+	 */
+	synchronized Collection<Trabajo> abrir() throws IOException {
+		Map<String, Trabajo> trabajos = new LinkedHashMap<>();
+		if (Files.exists(archivo)) {
+			try (BufferedReader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+				String linea;
+				while ((linea = reader.readLine()) != null) {
+					leer(linea, trabajos);
+				}
+			}
+		} else if (archivo.getParent() != null) {
+			Files.createDirectories(archivo.getParent());
+		}
+		abrirEscritura();
+		return trabajos.values();
+	}
+
+	private void leer(String linea, Map<String, Trabajo> trabajos) {
+		if (linea.isBlank()) {
+			return;
+		}
+		Registro registro;
+		try {
+			registro = mapper.readValue(linea, Registro.class);
+		} catch (JsonProcessingException e) {
+			// última línea incompleta si el proceso terminó mientras escribía
+			logger.warn("Registro del diario de firma descartado: " + e.getOriginalMessage());
+			return;
+		}
+		if (ENCOLADO.equals(registro.tipo)) {
+			Trabajo trabajo = new Trabajo();
+			trabajo.setId(registro.id);
+			trabajo.setNit(registro.nit);
+			trabajo.setPrioridad(registro.prioridad);
+			trabajo.setCallback(registro.callback);
+			trabajo.setCreado(registro.creado);
+			trabajo.setDte(registro.dte);
+			trabajos.put(registro.id, trabajo);
+		} else if (TERMINADO.equals(registro.tipo)) {
+			Trabajo trabajo = trabajos.get(registro.id);
+			if (trabajo != null) {
+				trabajo.setEstado(registro.estado);
+				trabajo.setResultado(registro.resultado);
+				trabajo.setTerminado(registro.terminado);
+				trabajo.setDte(null);
+			}
+		}
+	}
+
+	synchronized void encolado(Trabajo trabajo) throws IOException {
+		escribir(writer, encolamiento(trabajo));
+		sincronizar();
+	}
+
+	synchronized void terminado(Trabajo trabajo) throws IOException {
+		escribir(writer, terminacion(trabajo));
+		sincronizar();
+	}
+
+	private void sincronizar() throws IOException {
+		writer.flush();
+		canal.force(false);
+	}
+
+	private void abrirEscritura() throws IOException {
+		canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		writer = new BufferedWriter(Channels.newWriter(canal, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reescribe el diario solo con los trabajos recibidos, en un archivo temporal
+	 * que luego reemplaza al actual.
+	 * @param vigentes
+	 * @throws IOException
+	 */
+	synchronized void compactar(Collection<Trabajo> vigentes) throws IOException {
+		Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+		try (FileChannel canalNuevo = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			BufferedWriter nuevo = new BufferedWriter(Channels.newWriter(canalNuevo, StandardCharsets.UTF_8));
+			for (Trabajo trabajo : vigentes) {
+				if (trabajo.isTerminado()) {
+					escribir(nuevo, encolamiento(trabajo));
+					escribir(nuevo, terminacion(trabajo));
+				} else if (trabajo.getDte() != null) {
+					escribir(nuevo, encolamiento(trabajo));
+				}
+			}
+			nuevo.flush();
+			// el reemplazo no debe quedar en disco antes que el contenido
+			canalNuevo.force(false);
+		}
+		writer.close();
+		Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		abrirEscritura();
+	}
+
+	synchronized void cerrar() throws IOException {
+		if (writer != null) {
+			writer.close();
+		}
+	}
+
+	private void escribir(BufferedWriter destino, Registro registro) throws IOException {
+		destino.write(mapper.writeValueAsString(registro));
+		destino.write('\n');
+	}
+
+	private static Registro encolamiento(Trabajo trabajo) {
+		Registro registro = new Registro();
+		registro.tipo = ENCOLADO;
+		registro.id = trabajo.getId();
+		registro.nit = trabajo.getNit();
+		registro.prioridad = trabajo.getPrioridad();
+		registro.callback = trabajo.getCallback();
+		registro.creado = trabajo.getCreado();
+		registro.dte = trabajo.getDte();
+		return registro;
+	}
+
+	private static Registro terminacion(Trabajo trabajo) {
+		Registro registro = new Registro();
+		registro.tipo = TERMINADO;
+		registro.id = trabajo.getId();
+		registro.estado = trabajo.getEstado();
+		registro.resultado = trabajo.getResultado();
+		registro.terminado = trabajo.getTerminado();
+		return registro;
+	}
+
+	/**
+	 * Línea del diario; tipo E (encolado) o T (terminado).
+	 */
+	static class Registro {
+		public String tipo;
+		public String id;
+		public String nit;
+		public Prioridad prioridad;
+		public String callback;
+		public long creado;
+		public String dte;
+		public Trabajo.Estado estado;
+		public ResponseBody resultado;
+		public long terminado;
+	}
+}
@@ -0,0 +1,26 @@
+package sv.mh.fe.cola;
+
+/**
+ * Prioridad de un trabajo de firma; la cola atiende primero el valor de menor
+ * ordinal.
+ */
+public enum Prioridad {
+	/** ventas en línea, el cliente está esperando */
+	TIEMPO_REAL,
+	NORMAL,
+	/** reenvío de documentos emitidos en contingencia */
+	CONTINGENCIA;
+
+	/**
+	 * @param valor
+	 * @return prioridad con ese nombre, o null si no existe
+	 */
+	public static Prioridad de(String valor) {
+		for (Prioridad prioridad : values()) {
+			if (prioridad.name().equalsIgnoreCase(valor)) {
+				return prioridad;
+			}
+		}
+		return null;
+	}
+}
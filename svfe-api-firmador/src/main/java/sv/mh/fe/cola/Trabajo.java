@@ -0,0 +1,118 @@
+package sv.mh.fe.cola;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import sv.mh.fe.utils.ResponseBody;
+
+/**
+ * Trabajo de firma asíncrono. Es lo que recibe el cliente al consultar el
+ * trabajo y lo que se envía al callback; el DTE no se devuelve.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Trabajo {
+
+	public enum Estado {
+		PENDIENTE, EN_PROCESO, FIRMADO, ERROR
+	}
+
+	private String id;
+	private String nit;
+	private Prioridad prioridad;
+	private String callback;
+	private long creado;
+	private volatile long terminado;
+	private volatile Estado estado = Estado.PENDIENTE;
+	private volatile ResponseBody resultado;
+	private volatile String dte;
+	private long secuencia;
+
+	public String getId() {
+		return id;
+	}
+	public void setId(String id) {
+		this.id = id;
+	}
+	public String getNit() {
+		return nit;
+	}
+	public void setNit(String nit) {
+		this.nit = nit;
+	}
+	public Prioridad getPrioridad() {
+		return prioridad;
+	}
+	public void setPrioridad(Prioridad prioridad) {
+		this.prioridad = prioridad;
+	}
+	@JsonIgnore
+	public String getCallback() {
+		return callback;
+	}
+	public void setCallback(String callback) {
+		this.callback = callback;
+	}
+	public long getCreado() {
+		return creado;
+	}
+	public void setCreado(long creado) {
+		this.creado = creado;
+	}
+	public long getTerminado() {
+		return terminado;
+	}
+	public void setTerminado(long terminado) {
+		this.terminado = terminado;
+	}
+	public Estado getEstado() {
+		return estado;
+	}
+	public void setEstado(Estado estado) {
+		this.estado = estado;
+	}
+	public ResponseBody getResultado() {
+		return resultado;
+	}
+	public void setResultado(ResponseBody resultado) {
+		this.resultado = resultado;
+	}
+	@JsonIgnore
+	public String getDte() {
+		return dte;
+	}
+	public void setDte(String dte) {
+		this.dte = dte;
+	}
+	@JsonIgnore
+	public long getSecuencia() {
+		return secuencia;
+	}
+	public void setSecuencia(long secuencia) {
+		this.secuencia = secuencia;
+	}
+
+	/**
+	 * Copia para responder al cliente sin exponer el trabajo que siguen
+	 * modificando los hilos de la cola. El estado se lee primero: el resultado y
+	 * la hora de término se asignan antes de marcarlo terminado.
+	 * @return copia sin el DTE
+	 */
+	public Trabajo copia() {
+		Trabajo copia = new Trabajo();
+		copia.estado = estado;
+		copia.resultado = resultado;
+		copia.terminado = terminado;
+		copia.id = id;
+		copia.nit = nit;
+		copia.prioridad = prioridad;
+		copia.callback = callback;
+		copia.creado = creado;
+		copia.secuencia = secuencia;
+		return copia;
+	}
+
+	@JsonIgnore
+	public boolean isTerminado() {
+		return estado == Estado.FIRMADO || estado == Estado.ERROR;
+	}
+}
@@ -0,0 +1,128 @@
+package sv.mh.fe.config;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import sv.mh.fe.almacen.AlmacenCertificados;
+import sv.mh.fe.business.FirmarDocumentoBusiness;
+import sv.mh.fe.cache.CertificadoCache;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.security.AlgoritmoFirma;
+import sv.mh.fe.security.ContextoFirma;
+import sv.mh.fe.security.Cryptographic;
+
+/**
+ * Calentamiento al iniciar. Spring Boot reporta la aplicación como lista
+ * (/actuator/health/readiness) solo después de que terminan los
+ * ApplicationRunner, así que el tráfico llega cuando:
+ * <ul>
+ * <li>los certificados del almacén ya están en {@link CertificadoCache}, con la
+ * llave privada, la pública y el {@link ContextoFirma} preparados;</li>
+ * <li>el JIT ya compiló la serialización del DTE, el hash de la contraseña y la
+ * firma de cada {@link AlgoritmoFirma} que usan los emisores precargados, con
+ * llaves temporales para no usar la de ningún emisor.</li>
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty(name = "firmador.calentamiento.habilitado", havingValue = "true", matchIfMissing = true)
+public class CalentamientoFirma implements ApplicationRunner {
+
+	private static Logger logger = LoggerFactory.getLogger(CalentamientoFirma.class);
+
+	@Autowired
+	private AlmacenCertificados almacen;
+
+	@Autowired
+	private CertificadoCache certificadoCache;
+
+	@Autowired
+	private FirmarDocumentoBusiness business;
+
+	@Autowired
+	private Cryptographic cryptographic;
+
+	@Autowired
+	@Qualifier("firmaExecutor")
+	private ExecutorService firmaExecutor;
+
+	@Value("${firmador.calentamiento.firmas:200}")
+	private int firmas;
+
+	@Value("${firmador.cache.maximo:256}")
+	private int maximo;
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		long inicio = System.currentTimeMillis();
+		Set<AlgoritmoFirma> algoritmos = ConcurrentHashMap.newKeySet();
+		int cargados = precargar(algoritmos);
+		long precarga = System.currentTimeMillis() - inicio;
+		Set<AlgoritmoFirma> usados = algoritmos.isEmpty() ? EnumSet.of(AlgoritmoFirma.RS512) : EnumSet.copyOf(algoritmos);
+		for (AlgoritmoFirma algoritmo : usados) {
+			firmarPrueba(algoritmo);
+		}
+		logger.info("Calentamiento terminado: " + cargados + " certificados en " + precarga + " ms, "
+				+ firmas + " firmas de prueba con " + usados + "; total " + (System.currentTimeMillis() - inicio) + " ms");
+	}
+
+	/**
+	 * Carga en paralelo los certificados del almacén, sin pasar del máximo del
+	 * cache para no desalojar los que ya se cargaron.
+	 * @param algoritmos, se agregan los algoritmos de los emisores cargados
+	 */
+	private int precargar(Set<AlgoritmoFirma> algoritmos) throws Exception {
+		List<String> nits = almacen.nits();
+		if (nits.size() > maximo) {
+			logger.warn("El almacén tiene " + nits.size() + " certificados y el cache " + maximo + "; solo se precargan " + maximo);
+			nits = nits.subList(0, maximo);
+		}
+		AtomicInteger cargados = new AtomicInteger();
+		List<CompletableFuture<Void>> tareas = new ArrayList<>(nits.size());
+		for (String nit : nits) {
+			tareas.add(CompletableFuture.runAsync(() -> {
+				try {
+					CertificadoMH certificado = certificadoCache.obtener(nit);
+					algoritmos.add(certificadoCache.contexto(certificado).getAlgoritmo());
+					certificadoCache.llavePublica(nit);
+					cargados.incrementAndGet();
+				} catch (Exception e) {
+					logger.warn("No se pudo precargar el certificado " + nit + ": " + e.getMessage());
+				}
+			}, firmaExecutor));
+		}
+		CompletableFuture.allOf(tareas.toArray(new CompletableFuture[0])).join();
+		return cargados.get();
+	}
+
+	private void firmarPrueba(AlgoritmoFirma algoritmo) throws Exception {
+		if (firmas <= 0) {
+			return;
+		}
+		ContextoFirma contexto = new ContextoFirma(algoritmo.generarLlaves().getPrivate(), certificadoCache.proveedor());
+		Map<String, Object> dte = new LinkedHashMap<>();
+		dte.put("identificacion", Map.of("version", 1, "ambiente", "00"));
+		dte.put("cuerpoDocumento", List.of(Map.of("numItem", 1, "cantidad", 1.0, "precioUni", 1.0)));
+		for (int i = 0; i < firmas; i++) {
+			cryptographic.digest("calentamiento", Cryptographic.SHA512);
+			contexto.firmar(business.serializar(dte, (i & 1) == 0));
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package sv.mh.fe.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EjecutorConfig {
+
+	private static Logger logger = LoggerFactory.getLogger(EjecutorConfig.class);
+
+	/**
+	 * Pool para firmar documentos en paralelo (lotes y stream). Con
+	 * spring.threads.virtual.enabled=true, la misma propiedad que cambia Tomcat a
+	 * hilos virtuales, cada firma corre en su propio hilo virtual; si no, se usa un
+	 * hilo de plataforma por núcleo porque la firma RSA es trabajo de CPU.
+	 * @param virtuales
+	 * @param hilos
+	 * @return
+	 */
+	@Bean(name = "firmaExecutor", destroyMethod = "shutdown")
+	public ExecutorService firmaExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtuales,
+			@Value("${firmador.lote.hilos:0}") int hilos) {
+		if (virtuales) {
+			logger.info("Firmas en hilos virtuales");
+			return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("firma-", 1).factory());
+		}
+		int total = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+		AtomicInteger contador = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread hilo = new Thread(r, "firma-" + contador.incrementAndGet());
+			hilo.setDaemon(true);
+			return hilo;
+		};
+		return Executors.newFixedThreadPool(total, factory);
+	}
+}
@@ -13,7 +13,12 @@ public enum Errores {
 	COD_809_DATOS_REQUERIDOS("809","Son datos requeridos"),
 	COD_810_CONVERTIR_JSON_A_STRING("810","Problemas al convertir Json a String"),
 	COD_811_CONVERTIR_STRING_A_JSON("811","Problemas al convertir String a Json"),	
-	COD_812_NO_FILE("812","No se encontro el archivo");	
+	COD_812_NO_FILE("812","No se encontro el archivo"),
+	COD_813_COLA_LLENA("813","La cola de firma esta llena"),
+	COD_814_TRABAJO_NO_ENCONTRADO("814","No existe el trabajo de firma"),
+	COD_815_LIMITE_EXCEDIDO("815","Se excedio el limite de firmas para el nit"),
+	COD_816_CERTIFICADO_NO_VIGENTE("816","El certificado del nit esta vencido o aun no es vigente"),
+	COD_817_EXCEDE_RAFAGA("817","La peticion tiene mas documentos que la rafaga permitida para el nit");	
 		
 	private final String text;
 	private final String code;
@@ -44,5 +49,10 @@ public enum Errores {
 		public static final String COD_810_CONVERTIR_JSON_A_STRING = "810";
 		public static final String COD_811_CONVERTIR_STRING_A_JSON = "811";
 		public static final String COD_812_NO_FILE = "812";
+		public static final String COD_813_COLA_LLENA = "813";
+		public static final String COD_814_TRABAJO_NO_ENCONTRADO = "814";
+		public static final String COD_815_LIMITE_EXCEDIDO = "815";
+		public static final String COD_816_CERTIFICADO_NO_VIGENTE = "816";
+		public static final String COD_817_EXCEDE_RAFAGA = "817";
 	}
 }
\ No newline at end of file
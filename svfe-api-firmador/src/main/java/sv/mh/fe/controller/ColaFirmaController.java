@@ -0,0 +1,115 @@
+package sv.mh.fe.controller;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import jakarta.validation.Valid;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import sv.mh.fe.business.CertificadoBusiness;
+import sv.mh.fe.business.FirmarDocumentoBusiness;
+import sv.mh.fe.cola.ColaFirma;
+import sv.mh.fe.cola.Prioridad;
+import sv.mh.fe.cola.Trabajo;
+import sv.mh.fe.constantes.Errores;
+import sv.mh.fe.constantes.Errores.errores;
+import sv.mh.fe.filter.FirmarTrabajoFilter;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.validations.AbstractValidations;
+import sv.mh.fe.validations.FirmarDocumentoValidations;
+import sv.mh.fe.validations.ResultadoValidacion;
+
+@RestController
+@RequestMapping("/cola")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class ColaFirmaController extends Controller {
+
+	final static Logger logger = LoggerFactory.getLogger(ColaFirmaController.class);
+	
+	@Autowired
+	private CertificadoBusiness certificadoBusiness;
+	
+	@Autowired
+	private FirmarDocumentoBusiness business;
+	
+	@Autowired
+	private ColaFirma cola;
+	
+	@Autowired
+	private FirmarDocumentoValidations validation;
+	
+	/**
+	 * Encola un DTE para firmarlo de forma asíncrona. Las credenciales se validan
+	 * en esta petición; la respuesta trae el id para consultar el trabajo en
+	 * /cola/{id} y, si se envió callback, el trabajo terminado se envía por POST a
+	 * esa URL. El callback debe apuntar a un host permitido (ver {@link ColaFirma}).
+	 * @param filter, los mismos datos de /firmardocumento/ más prioridad y callback
+	 * @return trabajo en estado PENDIENTE
+	 */
+	@RequestMapping(value = "/", method = RequestMethod.POST)
+	public ResponseEntity<?> encolar(@Valid @RequestBody FirmarTrabajoFilter filter) {
+		try {
+			ResultadoValidacion resultado = validation.v9validar(filter);
+			if(!resultado.isValido()) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS,resultado.getRequeridos()));
+			}
+			if(filter.getCallback() != null && !cola.callbackPermitido(filter.getCallback())) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS, AbstractValidations.REQ_CALLBACK));
+			}
+			CertificadoMH certificado = certificadoBusiness.recuperarCertifiado(filter);
+			if(certificado == null) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA));
+			}
+			if(!indiceVigencia.vigente(certificado.getNit())) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_816_CERTIFICADO_NO_VIGENTE));
+			}
+			ResponseEntity<?> rechazo = admitir(certificado.getNit(), 1);
+			if(rechazo != null) {
+				return rechazo;
+			}
+			if(!(filter.getDteJson() instanceof Map)) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON));
+			}
+			String dteString;
+			try {
+				dteString = business.serializar(filter.getDteJson(), filter.getCompacto());
+			} catch (JsonProcessingException e) {
+				logger.info(errores.COD_810_CONVERTIR_JSON_A_STRING, e.getMessage());
+				return ResponseEntity.ok(mensaje.error(Errores.COD_810_CONVERTIR_JSON_A_STRING));
+			}
+			Prioridad prioridad = filter.getPrioridad() == null ? Prioridad.NORMAL : Prioridad.de(filter.getPrioridad());
+			Trabajo trabajo = cola.encolar(certificado, dteString, prioridad, filter.getCallback());
+			if(trabajo == null) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_813_COLA_LLENA));
+			}
+			return ResponseEntity.ok(mensaje.ok(trabajo.copia()));
+		} catch (IOException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_812_NO_FILE, e1.getMessage()));
+		} catch (NoSuchAlgorithmException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_804_ERROR_NO_CATALOGADO, e1.getMessage()));			
+		}
+	}
+	
+	/**
+	 * Consulta el estado de un trabajo; cuando está FIRMADO o ERROR el resultado
+	 * es el mismo que devolvería /firmardocumento/.
+	 * @param id
+	 * @return
+	 */
+	@GetMapping("/{id}")
+	public ResponseEntity<?> consultar(@PathVariable("id") String id) {
+		Trabajo trabajo = cola.consultar(id);
+		if(trabajo == null) {
+			return ResponseEntity.ok(mensaje.error(Errores.COD_814_TRABAJO_NO_ENCONTRADO));
+		}
+		return ResponseEntity.ok(mensaje.ok(trabajo.copia()));
+	}
+}
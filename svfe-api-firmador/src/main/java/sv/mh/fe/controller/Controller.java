@@ -1,12 +1,50 @@
 package sv.mh.fe.controller;
 
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 
+import sv.mh.fe.admision.LimitadorFirmas;
+import sv.mh.fe.constantes.Errores;
 import sv.mh.fe.utils.Mensaje;
+import sv.mh.fe.vigencia.IndiceVigencia;
 
 public class Controller {
 
 	@Autowired
 	public Mensaje mensaje;	
+	
+	@Autowired
+	public LimitadorFirmas limitador;
+	
+	@Autowired
+	public IndiceVigencia indiceVigencia;
+	
+	/**
+	 * Método para aplicar el límite de firmas del NIT antes de firmar. Se llama
+	 * después de validar la contraseña, así las peticiones con credenciales
+	 * inválidas no consumen las fichas del emisor.
+	 * @param nit
+	 * @param documentos, costo de la petición
+	 * @return null si se admite, o la respuesta 429 con Retry-After en segundos;
+	 * sin Retry-After si la petición supera la ráfaga del NIT
+	 */
+	protected ResponseEntity<?> admitir(String nit, int documentos) {
+		long espera = limitador.admitir(nit, documentos);
+		if (espera == 0) {
+			return null;
+		}
+		if (espera == LimitadorFirmas.EXCEDE_RAFAGA) {
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+					.body(mensaje.error(Errores.COD_817_EXCEDE_RAFAGA));
+		}
+		long segundos = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(espera + TimeUnit.SECONDS.toNanos(1) - 1));
+		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(segundos))
+				.body(mensaje.error(Errores.COD_815_LIMITE_EXCEDIDO));
+	}
 		
 }
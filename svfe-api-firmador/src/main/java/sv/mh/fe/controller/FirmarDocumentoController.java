@@ -1,25 +1,47 @@
 package sv.mh.fe.controller;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Map;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import sv.mh.fe.business.CertificadoBusiness;
+import sv.mh.fe.business.FirmarArchivoBusiness;
 import sv.mh.fe.business.FirmarDocumentoBusiness;
+import sv.mh.fe.business.VerificarFirmaBusiness;
+import sv.mh.fe.cache.CertificadoCache;
 import sv.mh.fe.constantes.Errores;
 import sv.mh.fe.constantes.Errores.errores;
 import sv.mh.fe.filter.FirmarDocumentoFilter;
+import sv.mh.fe.filter.FirmarLoteFilter;
+import sv.mh.fe.filter.VerificarLoteFilter;
 import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.models.minec.Certificado;
+import sv.mh.fe.utils.LectorDte;
+import sv.mh.fe.utils.ResponseBody;
+import sv.mh.fe.validations.AbstractValidations;
 import sv.mh.fe.validations.FirmarDocumentoValidations;
+import sv.mh.fe.validations.ResultadoValidacion;
 
 @RestController
 @RequestMapping("/firmardocumento")
@@ -28,15 +50,34 @@ public class FirmarDocumentoController extends Controller {
 
 	final static Logger logger = LoggerFactory.getLogger(FirmarDocumentoController.class);
 	
+	public static final String NDJSON = "application/x-ndjson";
+	
+	private final ObjectMapper mapper = new ObjectMapper();
+	
 	@Autowired
 	private CertificadoBusiness certificadoBusiness;
 	
 	@Autowired
 	private FirmarDocumentoBusiness business;
 	
+	@Autowired
+	private FirmarArchivoBusiness archivoBusiness;
+	
+	@Autowired
+	private VerificarFirmaBusiness verificarBusiness;
+	
+	@Autowired
+	private CertificadoCache certificadoCache;
+	
 	@Autowired
 	private FirmarDocumentoValidations validation;	 
 	
+	@Autowired
+	private LectorDte lectorDte;
+	
+	@Value("${firmador.lote.maximo:5000}")
+	private int maximoLote;
+	
 	/**
 	 * 
 	 * @param filter
@@ -47,21 +88,25 @@ public class FirmarDocumentoController extends Controller {
 	public ResponseEntity<?> firmar(@Valid @RequestBody FirmarDocumentoFilter filter) {
 		CertificadoMH certificado = null;		
 		try {			
-			validation.v5validar(filter);
-			if(validation.isValido()) {
+			ResultadoValidacion resultado = validation.v5validar(filter);
+			if(resultado.isValido()) {
 				certificado = certificadoBusiness.recuperarCertifiado(filter);
-				if(certificado != null) {		        
-					ObjectWriter ow = new ObjectMapper().writer().withDefaultPrettyPrinter();
+				if(certificado != null) {
+					if(!indiceVigencia.vigente(certificado.getNit())) {
+						return ResponseEntity.ok(mensaje.error(Errores.COD_816_CERTIFICADO_NO_VIGENTE));
+					}
+					ResponseEntity<?> rechazo = admitir(certificado.getNit(), 1);
+					if(rechazo != null) {
+						return rechazo;
+					}
+					if(!(filter.getDteJson() instanceof Map)) {
+						return ResponseEntity.ok(mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON));
+					}
 			        String dteString;
 					try {
-						dteString = ow.writeValueAsString(filter.getDteJson());
-						JSONObject dteObject = new JSONObject(dteString);					
-						if(dteObject != null) {
-							logger.info("dteObject != null");
-							String firma;
-							firma = business.firmarJSON(certificado, dteString);
-							return ResponseEntity.ok(mensaje.ok(firma));
-						}										
+						dteString = business.serializar(filter.getDteJson(), filter.getCompacto());
+						String firma = business.firmarJSON(certificado, dteString);
+						return ResponseEntity.ok(mensaje.ok(firma));
 					} catch (JsonProcessingException e) {
 						logger.info(errores.COD_810_CONVERTIR_JSON_A_STRING, e.getMessage());
 						return ResponseEntity.ok(mensaje.error(Errores.COD_810_CONVERTIR_JSON_A_STRING));
@@ -73,7 +118,7 @@ public class FirmarDocumentoController extends Controller {
 					return ResponseEntity.ok(mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA));
 				}
 			}else {
-				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS,validation.getRequeridos()));
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS,resultado.getRequeridos()));
 			}			
 		} catch (IOException e1) {
 			logger.error(e1.getMessage());
@@ -82,7 +127,283 @@ public class FirmarDocumentoController extends Controller {
 			logger.error(e1.getMessage());
 			return ResponseEntity.ok(mensaje.error(errores.COD_804_ERROR_NO_CATALOGADO, e1.getMessage()));			
 		}
-		return ResponseEntity.ok(mensaje.error(Errores.COD_804_ERROR_NO_CATALOGADO));
+	}
+	
+	/**
+	 * Firma un DTE usando como payload los bytes originales de dteJson, sin
+	 * deserializarlo ni volver a escribirlo. Con compacto=true solo se eliminan
+	 * los espacios en blanco fuera de las cadenas.
+	 * @param cuerpo
+	 * @return
+	 */
+	@RequestMapping(value = "/crudo/", method = RequestMethod.POST)
+	public ResponseEntity<?> firmarCrudo(@RequestBody byte[] cuerpo) {
+		try {
+			FirmarDocumentoFilter filter;
+			try {
+				filter = lectorDte.leer(cuerpo);
+			} catch (JsonProcessingException e) {
+				logger.info(errores.COD_811_CONVERTIR_STRING_A_JSON, e.getMessage());
+				return ResponseEntity.ok(mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON));
+			}
+			ResultadoValidacion resultado = validation.v7validar(filter);
+			if(!resultado.isValido()) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS,resultado.getRequeridos()));
+			}
+			CertificadoMH certificado = certificadoBusiness.recuperarCertifiado(filter);
+			if(certificado == null) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA));
+			}
+			if(!indiceVigencia.vigente(certificado.getNit())) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_816_CERTIFICADO_NO_VIGENTE));
+			}
+			ResponseEntity<?> rechazo = admitir(certificado.getNit(), 1);
+			if(rechazo != null) {
+				return rechazo;
+			}
+			try {
+				return ResponseEntity.ok(mensaje.ok(business.firmarJSON(certificado, filter.getDte())));
+			} catch (Exception e) {
+				logger.info(errores.COD_811_CONVERTIR_STRING_A_JSON, e.getMessage());
+				return ResponseEntity.ok(mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON));
+			}
+		} catch (IOException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_812_NO_FILE, e1.getMessage()));
+		} catch (NoSuchAlgorithmException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_804_ERROR_NO_CATALOGADO, e1.getMessage()));			
+		}
+	}
+
+	/**
+	 * Firma varios DTE de un mismo emisor en una sola petición. La contraseña se
+	 * valida y el certificado se carga una sola vez para todo el lote.
+	 * @param filter
+	 * @return resultado de cada documento en el orden recibido
+	 */
+	@RequestMapping(value = "/lote/", method = RequestMethod.POST)
+	public ResponseEntity<?> firmarLote(@Valid @RequestBody FirmarLoteFilter filter) {
+		try {
+			ResultadoValidacion resultado = validation.v6validar(filter, maximoLote);
+			if(!resultado.isValido()) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS,resultado.getRequeridos()));
+			}
+			CertificadoMH certificado = certificadoBusiness.recuperarCertifiado(filter);
+			if(certificado == null) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA));
+			}
+			if(!indiceVigencia.vigente(certificado.getNit())) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_816_CERTIFICADO_NO_VIGENTE));
+			}
+			ResponseEntity<?> rechazo = admitir(certificado.getNit(), filter.getDteJsons().size());
+			if(rechazo != null) {
+				return rechazo;
+			}
+			return ResponseEntity.ok(mensaje.ok(business.firmarLote(certificado, filter.getDteJsons(), filter.getCompacto())));
+		} catch (IOException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_812_NO_FILE, e1.getMessage()));
+		} catch (NoSuchAlgorithmException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_804_ERROR_NO_CATALOGADO, e1.getMessage()));			
+		}
+	}
+
+	/**
+	 * Firma un flujo NDJSON. La primera línea contiene las credenciales
+	 * (nit y passwordPri) y cada línea siguiente es un DTE; la respuesta es
+	 * NDJSON con el resultado de cada documento en el orden recibido.
+	 * @param request
+	 * @param response
+	 * @throws IOException
+	 */
+	@RequestMapping(value = "/stream/", method = RequestMethod.POST, consumes = NDJSON)
+	public void firmarStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setContentType(NDJSON);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		BufferedReader entrada = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+		Writer salida = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+		ResponseBody error = null;
+		try {
+			String credenciales = entrada.readLine();
+			FirmarDocumentoFilter filter = credenciales == null ? new FirmarDocumentoFilter()
+					: mapper.readValue(credenciales, FirmarDocumentoFilter.class);
+			ResultadoValidacion resultado = validation.v3validar(filter);
+			if(!resultado.isValido()) {
+				error = mensaje.error(errores.COD_809_DATOS_REQUERIDOS,resultado.getRequeridos());
+			}else {
+				CertificadoMH certificado = certificadoBusiness.recuperarCertifiado(filter);
+				if(certificado == null) {
+					error = mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA);
+				}else if(!indiceVigencia.vigente(certificado.getNit())) {
+					error = mensaje.error(Errores.COD_816_CERTIFICADO_NO_VIGENTE);
+				}else {
+					long total = business.firmarStream(certificado, entrada, salida);
+					logger.info("Documentos firmados en stream: " + total);
+				}
+			}
+		} catch (JsonProcessingException e) {
+			logger.info(errores.COD_811_CONVERTIR_STRING_A_JSON, e.getMessage());
+			error = mensaje.error(Errores.COD_811_CONVERTIR_STRING_A_JSON);
+		} catch (NoSuchAlgorithmException e1) {
+			logger.error(e1.getMessage());
+			error = mensaje.error(errores.COD_804_ERROR_NO_CATALOGADO, e1.getMessage());
+		} catch (IOException e1) {
+			if(response.isCommitted()) {
+				throw e1;
+			}
+			logger.error(e1.getMessage());
+			error = mensaje.error(errores.COD_812_NO_FILE, e1.getMessage());
+		}
+		if(error != null) {
+			salida.write(mapper.writeValueAsString(error));
+			salida.write('\n');
+			salida.flush();
+		}
+	}
+
+	/**
+	 * Firma DTE guardados en el directorio firmador.archivos.base. Si
+	 * nombreDocumento es un directorio se firman en paralelo todos sus archivos
+	 * .json, cobrando una ficha del límite por archivo; si es un archivo, solo ese. El JWS se escribe en nombreFirma (archivo o
+	 * directorio, relativo a la misma base) o, si no se envía, reemplaza al
+	 * original.
+	 * @param filter
+	 * @return cantidad de archivos firmados y errores por archivo
+	 */
+	@RequestMapping(value = "/archivos/", method = RequestMethod.POST)
+	public ResponseEntity<?> firmarArchivos(@Valid @RequestBody FirmarDocumentoFilter filter) {
+		try {
+			ResultadoValidacion resultado = validation.v10validar(filter);
+			if(!resultado.isValido()) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS,resultado.getRequeridos()));
+			}
+			Path origen = archivoBusiness.resolver(filter.getNombreDocumento());
+			Path destino = filter.getNombreFirma() == null ? origen : archivoBusiness.resolver(filter.getNombreFirma());
+			if(origen == null || destino == null) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS, AbstractValidations.REQ_RUTA_FUERA_BASE));
+			}
+			if(!Files.exists(origen)) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_812_NO_FILE));
+			}
+			CertificadoMH certificado = certificadoBusiness.recuperarCertifiado(filter);
+			if(certificado == null) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA));
+			}
+			if(!indiceVigencia.vigente(certificado.getNit())) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_816_CERTIFICADO_NO_VIGENTE));
+			}
+			if(Files.isDirectory(origen)) {
+				// cada archivo se cobra al firmarlo
+				return ResponseEntity.ok(mensaje.ok(archivoBusiness.firmarDirectorio(certificado, origen, destino)));
+			}
+			ResponseEntity<?> rechazo = admitir(certificado.getNit(), 1);
+			if(rechazo != null) {
+				return rechazo;
+			}
+			archivoBusiness.firmarArchivo(certificado, origen, destino);
+			return ResponseEntity.ok(mensaje.ok(destino.getFileName().toString()));
+		} catch (IOException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_812_NO_FILE, e1.getMessage()));
+		} catch (GeneralSecurityException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_804_ERROR_NO_CATALOGADO, e1.getMessage()));			
+		}
+	}
+
+	/**
+	 * Verifica un JWS con la llave pública del certificado del NIT. No requiere
+	 * contraseña.
+	 * @param filter, nit y compactSerialization
+	 * @return el DTE firmado si la firma es válida
+	 */
+	@RequestMapping(value = "/verificar/", method = RequestMethod.POST)
+	public ResponseEntity<?> verificar(@Valid @RequestBody FirmarDocumentoFilter filter) {
+		try {
+			ResultadoValidacion resultado = validation.v2validar(filter);
+			if(!resultado.isValido()) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS,resultado.getRequeridos()));
+			}
+			ResponseEntity<?> rechazo = admitir(filter.getNit(), 1);
+			if(rechazo != null) {
+				return rechazo;
+			}
+			PublicKey llave = certificadoCache.llavePublica(filter.getNit());
+			if(llave == null) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA));
+			}
+			return ResponseEntity.ok(verificarBusiness.verificar(llave, filter.getCompactSerialization()));
+		} catch (IOException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_812_NO_FILE, e1.getMessage()));
+		}
+	}
+
+	/**
+	 * Verifica varios JWS de un mismo emisor en una sola petición.
+	 * @param filter, nit y compactSerializations
+	 * @return resultado de cada documento en el orden recibido
+	 */
+	@RequestMapping(value = "/verificar/lote/", method = RequestMethod.POST)
+	public ResponseEntity<?> verificarLote(@Valid @RequestBody VerificarLoteFilter filter) {
+		try {
+			ResultadoValidacion resultado = validation.v8validar(filter, maximoLote);
+			if(!resultado.isValido()) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_809_DATOS_REQUERIDOS,resultado.getRequeridos()));
+			}
+			ResponseEntity<?> rechazo = admitir(filter.getNit(), filter.getCompactSerializations().size());
+			if(rechazo != null) {
+				return rechazo;
+			}
+			PublicKey llave = certificadoCache.llavePublica(filter.getNit());
+			if(llave == null) {
+				return ResponseEntity.ok(mensaje.error(Errores.COD_803_ERROR_LLAVE_PRUBLICA));
+			}
+			return ResponseEntity.ok(mensaje.ok(verificarBusiness.verificarLote(llave, filter.getCompactSerializations())));
+		} catch (IOException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_812_NO_FILE, e1.getMessage()));
+		}
+	}
+
+	/**
+	 * Detalle público del certificado de un emisor, sin llaves.
+	 * @param nit
+	 * @return sujeto, emisor, vigencia y extensiones del certificado
+	 */
+	@GetMapping("/certificado/{nit}")
+	public ResponseEntity<?> certificado(@PathVariable String nit) {
+		try {
+			Certificado detalle = certificadoBusiness.detalle(nit);
+			if(detalle == null) {
+				return ResponseEntity.ok(mensaje.error(errores.COD_812_NO_FILE, nit));
+			}
+			return ResponseEntity.ok(mensaje.ok(detalle));
+		} catch (IOException e1) {
+			logger.error(e1.getMessage());
+			return ResponseEntity.ok(mensaje.error(errores.COD_812_NO_FILE, e1.getMessage()));
+		}
+	}
+
+	/**
+	 * Certificados vencidos o que vencen dentro de firmador.vigencia.aviso.
+	 * @return nit y fin de vigencia, del que vence primero al último
+	 */
+	@GetMapping("/vencimientos")
+	public ResponseEntity<?> vencimientos() {
+		return ResponseEntity.ok(mensaje.ok(indiceVigencia.porVencer()));
+	}
+
+	/**
+	 * Uso por NIT del límite de firmas: documentos aceptados, rechazados y fichas
+	 * disponibles en este momento.
+	 * @return
+	 */
+	@GetMapping("/uso")
+	public ResponseEntity<?> uso() {
+		return ResponseEntity.ok(mensaje.ok(limitador.uso()));
 	}
 
 	@GetMapping("/status")
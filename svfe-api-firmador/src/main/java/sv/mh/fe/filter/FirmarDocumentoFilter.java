@@ -11,6 +11,7 @@ public class FirmarDocumentoFilter {
 	private Object dteJson;
 	private String dte;
 	private boolean activo;
+	private boolean compacto;
 	
 
 	public String getPasswordPub() {
@@ -37,6 +38,12 @@ public class FirmarDocumentoFilter {
 	public void setActivo(boolean activo) {
 		this.activo = activo;
 	}
+	public boolean getCompacto() {
+		return compacto;
+	}
+	public void setCompacto(boolean compacto) {
+		this.compacto = compacto;
+	}
 	public String getNombreDocumento() {
 		return nombreDocumento;
 	}
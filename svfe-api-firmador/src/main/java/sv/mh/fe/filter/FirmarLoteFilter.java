@@ -0,0 +1,16 @@
+package sv.mh.fe.filter;
+
+import java.util.List;
+
+public class FirmarLoteFilter extends FirmarDocumentoFilter {
+
+	private List<Object> dteJsons;
+
+	public List<Object> getDteJsons() {
+		return dteJsons;
+	}
+	public void setDteJsons(List<Object> dteJsons) {
+		this.dteJsons = dteJsons;
+	}
+
+}
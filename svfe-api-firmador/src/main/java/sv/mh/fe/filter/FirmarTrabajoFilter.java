@@ -0,0 +1,21 @@
+package sv.mh.fe.filter;
+
+public class FirmarTrabajoFilter extends FirmarDocumentoFilter {
+
+	private String prioridad;
+	private String callback;
+
+	public String getPrioridad() {
+		return prioridad;
+	}
+	public void setPrioridad(String prioridad) {
+		this.prioridad = prioridad;
+	}
+	public String getCallback() {
+		return callback;
+	}
+	public void setCallback(String callback) {
+		this.callback = callback;
+	}
+
+}
@@ -0,0 +1,16 @@
+package sv.mh.fe.filter;
+
+import java.util.List;
+
+public class VerificarLoteFilter extends FirmarDocumentoFilter {
+
+	private List<String> compactSerializations;
+
+	public List<String> getCompactSerializations() {
+		return compactSerializations;
+	}
+	public void setCompactSerializations(List<String> compactSerializations) {
+		this.compactSerializations = compactSerializations;
+	}
+
+}
@@ -0,0 +1,172 @@
+package sv.mh.fe.metricas;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Métricas del firmador, publicadas en /actuator/prometheus. Los medidores se
+ * crean una sola vez y se guardan en campos, así registrar una medición no busca
+ * en el registro ni crea objetos.
+ *
+ * <ul>
+ * <li>firmador.etapa{etapa}: tiempo de cada etapa de la firma</li>
+ * <li>http.server.requests (Spring Boot): tiempo total por endpoint</li>
+ * <li>firmador.cache{cache,resultado}: aciertos y fallos de los caches</li>
+ * <li>firmador.errores{codigo}: respuestas de error por código de {@link sv.mh.fe.constantes.Errores}</li>
+ * <li>firmador.dte.bytes: tamaño del payload firmado</li>
+ * <li>firmador.admision{resultado}: documentos aceptados y rechazados por el límite por NIT</li>
+ * </ul>
+ */
+@Component
+public class MetricasFirma {
+
+	public enum Etapa {
+		/** lectura del archivo del certificado */
+		DISCO,
+		/** deserialización del XML del certificado */
+		XML,
+		/** carga completa desde el almacén en un cache miss */
+		ALMACEN,
+		/** hash y verificación de la contraseña */
+		PASSWORD,
+		/** decodificación de la llave privada o pública */
+		LLAVE,
+		/** construcción del JWS y operación RSA */
+		RSA,
+		/** verificación de un JWS con la llave pública */
+		VERIFICACION
+	}
+
+	public enum Cache {
+		CERTIFICADO, CREDENCIAL, IDEMPOTENCIA
+	}
+
+	private final MeterRegistry registry;
+
+	private final Map<Etapa, Timer> etapas = new EnumMap<>(Etapa.class);
+
+	private final Map<Cache, Counter> aciertos = new EnumMap<>(Cache.class);
+
+	private final Map<Cache, Counter> fallos = new EnumMap<>(Cache.class);
+
+	private final Map<String, Counter> errores = new ConcurrentHashMap<>();
+
+	private final DistributionSummary tamano;
+
+	private final Counter admitidos;
+
+	private final Counter rechazados;
+
+	public MetricasFirma(MeterRegistry registry) {
+		this.registry = registry;
+		for (Etapa etapa : Etapa.values()) {
+			etapas.put(etapa, Timer.builder("firmador.etapa")
+					.tag("etapa", etapa.name().toLowerCase())
+					.description("Tiempo de cada etapa de la firma")
+					.register(registry));
+		}
+		for (Cache cache : Cache.values()) {
+			String nombre = cache.name().toLowerCase();
+			Counter acierto = Counter.builder("firmador.cache").tag("cache", nombre).tag("resultado", "hit").register(registry);
+			Counter fallo = Counter.builder("firmador.cache").tag("cache", nombre).tag("resultado", "miss").register(registry);
+			aciertos.put(cache, acierto);
+			fallos.put(cache, fallo);
+			Gauge.builder("firmador.cache.tasa", () -> {
+				double total = acierto.count() + fallo.count();
+				return total == 0 ? 0 : acierto.count() / total;
+			}).tag("cache", nombre).description("Proporción de aciertos desde el inicio").register(registry);
+		}
+		this.tamano = DistributionSummary.builder("firmador.dte.bytes")
+				.baseUnit("bytes")
+				.description("Tamaño del DTE firmado")
+				.serviceLevelObjectives(1024, 4096, 16384, 65536, 262144, 1048576)
+				.register(registry);
+		this.admitidos = Counter.builder("firmador.admision").tag("resultado", "aceptado").register(registry);
+		this.rechazados = Counter.builder("firmador.admision").tag("resultado", "rechazado").register(registry);
+	}
+
+	/**
+	 * @return marca de tiempo para pasar luego a {@link #registrar(Etapa, long)}
+	 */
+	public static long iniciar() {
+		return System.nanoTime();
+	}
+
+	public void registrar(Etapa etapa, long inicio) {
+		etapas.get(etapa).record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+	}
+
+	public void cache(Cache cache, boolean acierto) {
+		(acierto ? aciertos : fallos).get(cache).increment();
+	}
+
+	public void error(String codigo) {
+		errores.computeIfAbsent(codigo == null ? "desconocido" : codigo,
+				c -> Counter.builder("firmador.errores").tag("codigo", c).register(registry))
+				.increment();
+	}
+
+	public void tamano(int bytes) {
+		tamano.record(bytes);
+	}
+
+	/**
+	 * Registra el tamaño en bytes UTF-8 de un DTE en texto, sin codificarlo.
+	 * @param texto
+	 */
+	public void tamano(CharSequence texto) {
+		tamano.record(bytesUtf8(texto));
+	}
+
+	/**
+	 * @param texto
+	 * @return largo del texto codificado en UTF-8; un surrogate suelto cuenta como '?'
+	 */
+	static int bytesUtf8(CharSequence texto) {
+		int largo = texto.length();
+		int bytes = largo;
+		for (int i = 0; i < largo; i++) {
+			char c = texto.charAt(i);
+			if (c < 0x80) {
+				continue;
+			}
+			if (c < 0x800) {
+				bytes += 1;
+			} else if (Character.isHighSurrogate(c) && i + 1 < largo && Character.isLowSurrogate(texto.charAt(i + 1))) {
+				// los dos char del par se codifican en 4 bytes
+				bytes += 2;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				// String.getBytes lo reemplaza por '?'
+			} else {
+				bytes += 2;
+			}
+		}
+		return bytes;
+	}
+
+	public void admision(boolean aceptado, int documentos) {
+		(aceptado ? admitidos : rechazados).increment(documentos);
+	}
+
+	/**
+	 * Registra un medidor cuyo valor se lee al publicar las métricas.
+	 * @param nombre
+	 * @param descripcion
+	 * @param valor
+	 */
+	public void medidor(String nombre, String descripcion, Supplier<Number> valor) {
+		Gauge.builder(nombre, valor).description(descripcion).register(registry);
+	}
+}
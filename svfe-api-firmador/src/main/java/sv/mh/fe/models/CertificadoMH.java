@@ -1,9 +1,11 @@
 package sv.mh.fe.models;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import sv.mh.fe.models.minec.Certificado;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Date;
 
@@ -23,6 +25,13 @@ public class CertificadoMH extends AbsDocumentos{
 	private Boolean verificado;
 	@JsonFormat(pattern = "yyyy-MM-dd'Y'HH:mm:ss.SSS'Z'")
 	private Date fechaVerificacion;
+	
+	/** vigencia leída del registro binario, cuando no se cargó el detalle XML */
+	@JsonIgnore
+	private Instant inicioVigencia;
+	
+	@JsonIgnore
+	private Instant finVigencia;
 		
 	public String getNit() {
 		return nit;
@@ -69,6 +78,34 @@ public class CertificadoMH extends AbsDocumentos{
 		this.verificado = verificado;
 	}
 
+	@JsonIgnore
+	public Instant getInicioVigencia() {
+		if (inicioVigencia == null && certificado != null && certificado.getBasicEstructure() != null
+				&& certificado.getBasicEstructure().getValidity() != null) {
+			return certificado.getBasicEstructure().getValidity().getNotBefore();
+		}
+		return inicioVigencia;
+	}
+
+	@JsonIgnore
+	public void setInicioVigencia(Instant inicioVigencia) {
+		this.inicioVigencia = inicioVigencia;
+	}
+
+	@JsonIgnore
+	public Instant getFinVigencia() {
+		if (finVigencia == null && certificado != null && certificado.getBasicEstructure() != null
+				&& certificado.getBasicEstructure().getValidity() != null) {
+			return certificado.getBasicEstructure().getValidity().getNotAfter();
+		}
+		return finVigencia;
+	}
+
+	@JsonIgnore
+	public void setFinVigencia(Instant finVigencia) {
+		this.finVigencia = finVigencia;
+	}
+
 	public Date getFechaVerificacion() {
 		return fechaVerificacion;
 	}
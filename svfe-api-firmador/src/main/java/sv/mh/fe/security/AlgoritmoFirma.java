@@ -0,0 +1,145 @@
+package sv.mh.fe.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.Base64;
+
+/**
+ * Algoritmos JWS con los que puede firmar un emisor. El algoritmo no se
+ * configura: sale de la llave del certificado (el campo algorithm de la
+ * {@link sv.mh.fe.models.Llave}), así un emisor con llave EC firma con ECDSA y
+ * los certificados RSA existentes siguen firmando con RS512.
+ *
+ * Las firmas ECDSA se piden en formato P1363 (R||S), que es el que usa JWS, en
+ * lugar del DER que devuelve SHA256withECDSA.
+ */
+public enum AlgoritmoFirma {
+
+	/** RSASSA-PKCS1-v1_5 con SHA-512, llaves RSA */
+	RS512("RS512", "SHA512withRSA", "SHA512withRSA", null),
+
+	/** RSASSA-PSS con SHA-512, llaves RSASSA-PSS */
+	PS512("PS512", "RSASSA-PSS", "RSASSA-PSS", new PSSParameterSpec("SHA-512", "MGF1", MGF1ParameterSpec.SHA512, 64, 1)),
+
+	/** ECDSA P-256 con SHA-256, llaves EC */
+	ES256("ES256", "SHA256withECDSAinP1363Format", "SHA256withPLAIN-ECDSA", null),
+
+	/** ECDSA P-384 con SHA-384, llaves EC */
+	ES384("ES384", "SHA384withECDSAinP1363Format", "SHA384withPLAIN-ECDSA", null);
+
+	public static final String LLAVE_RSA = "RSA";
+
+	public static final String LLAVE_RSA_PSS = "RSASSA-PSS";
+
+	public static final String LLAVE_EC = "EC";
+
+	private final String jws;
+
+	private final String jca;
+
+	private final String jcaBouncyCastle;
+
+	private final AlgorithmParameterSpec parametros;
+
+	/** {"alg":"..."} en base64url seguido del punto separador */
+	private final byte[] encabezado;
+
+	private AlgoritmoFirma(String jws, String jca, String jcaBouncyCastle, AlgorithmParameterSpec parametros) {
+		this.jws = jws;
+		this.jca = jca;
+		this.jcaBouncyCastle = jcaBouncyCastle;
+		this.parametros = parametros;
+		this.encabezado = (Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(("{\"alg\":\"" + jws + "\"}").getBytes(StandardCharsets.UTF_8)) + ".")
+				.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Método para elegir el algoritmo de una llave privada o pública.
+	 * @param llave
+	 * @return RS512 para RSA, PS512 para RSASSA-PSS, ES256 o ES384 según la curva EC
+	 * @throws InvalidKeyException si la llave no es de un tipo soportado
+	 */
+	public static AlgoritmoFirma de(Key llave) throws InvalidKeyException {
+		if (llave instanceof ECKey) {
+			int bits = ((ECKey) llave).getParams().getCurve().getField().getFieldSize();
+			if (bits == 256) {
+				return ES256;
+			}
+			if (bits == 384) {
+				return ES384;
+			}
+			throw new InvalidKeyException("Curva EC no soportada: " + bits + " bits");
+		}
+		if (LLAVE_RSA_PSS.equalsIgnoreCase(llave.getAlgorithm())) {
+			return PS512;
+		}
+		if (LLAVE_RSA.equalsIgnoreCase(llave.getAlgorithm())) {
+			return RS512;
+		}
+		throw new InvalidKeyException("Tipo de llave no soportado: " + llave.getAlgorithm());
+	}
+
+	/**
+	 * Método para generar un par de llaves de este algoritmo, para el
+	 * calentamiento y las pruebas de rendimiento.
+	 * @return llaves RSA 2048 o EC de la curva del algoritmo
+	 * @throws GeneralSecurityException
+	 */
+	public KeyPair generarLlaves() throws GeneralSecurityException {
+		KeyPairGenerator generador;
+		switch (this) {
+		case ES256:
+			generador = KeyPairGenerator.getInstance(LLAVE_EC);
+			generador.initialize(new ECGenParameterSpec("secp256r1"));
+			break;
+		case ES384:
+			generador = KeyPairGenerator.getInstance(LLAVE_EC);
+			generador.initialize(new ECGenParameterSpec("secp384r1"));
+			break;
+		case PS512:
+			generador = KeyPairGenerator.getInstance(LLAVE_RSA_PSS);
+			generador.initialize(KeyGenerator.keysize);
+			break;
+		default:
+			generador = KeyPairGenerator.getInstance(LLAVE_RSA);
+			generador.initialize(KeyGenerator.keysize);
+		}
+		return generador.generateKeyPair();
+	}
+
+	/**
+	 * @return identificador alg del encabezado JWS
+	 */
+	public String getJws() {
+		return jws;
+	}
+
+	/**
+	 * @param bouncyCastle, si el proveedor es BouncyCastle
+	 * @return nombre JCA de la firma en el proveedor
+	 */
+	public String getJca(boolean bouncyCastle) {
+		return bouncyCastle ? jcaBouncyCastle : jca;
+	}
+
+	/**
+	 * @return parámetros que se asignan a la Signature, o null
+	 */
+	public AlgorithmParameterSpec getParametros() {
+		return parametros;
+	}
+
+	byte[] getEncabezado() {
+		return encabezado;
+	}
+}
@@ -0,0 +1,156 @@
+package sv.mh.fe.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Contexto de firma JWS de un emisor. El proveedor, la llave, el
+ * {@link AlgoritmoFirma} y el encabezado protegido ya codificado se preparan
+ * una sola vez; por cada documento solo se codifica el payload y se ejecuta la
+ * operación de firma.
+ *
+ * Con RS512 el resultado es el mismo que produce jose4j con
+ * AlgorithmIdentifiers.RSA_USING_SHA512, porque RSASSA-PKCS1-v1_5 es
+ * determinista; PS512 y ES256/ES384 no lo son, pero jose4j los verifica igual.
+ */
+public final class ContextoFirma {
+
+	public static final String ALGORITMO = "SHA512withRSA";
+
+	public static final String PROVEEDOR_JDK = "jdk";
+
+	public static final String PROVEEDOR_BC = "bc";
+
+	private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+	private static final Provider BOUNCY_CASTLE = new BouncyCastleProvider();
+
+	/** no hay más firmas simultáneas que núcleos; lo demás sería basura retenida */
+	private static final int MAXIMO_POOL = Runtime.getRuntime().availableProcessors();
+
+	private final PrivateKey llave;
+
+	private final Provider proveedor;
+
+	private final AlgoritmoFirma algoritmo;
+
+	/** encabezado del algoritmo, ya codificado */
+	private final byte[] encabezado;
+
+	/**
+	 * Signature no es thread-safe; después de sign() queda lista para otra firma
+	 * con la misma llave, así que se reutilizan desde un pool. Un pico de hilos
+	 * (virtuales) crea instancias de más; al devolverlas solo se guardan hasta
+	 * MAXIMO_POOL y el resto se descarta.
+	 */
+	private final Queue<Signature> firmas = new ConcurrentLinkedQueue<>();
+
+	/** instancias en el pool; size() de la cola recorre toda la lista */
+	private final AtomicInteger enPool = new AtomicInteger();
+
+	/**
+	 * @param llave, llave privada del emisor; de ella sale el algoritmo
+	 * @param proveedor, el resultado de {@link #proveedor(String)}
+	 * @throws GeneralSecurityException si la llave no es de un tipo soportado
+	 */
+	public ContextoFirma(PrivateKey llave, Provider proveedor) throws GeneralSecurityException {
+		this.llave = llave;
+		this.proveedor = proveedor;
+		this.algoritmo = AlgoritmoFirma.de(llave);
+		this.encabezado = algoritmo.getEncabezado();
+		devolver(nueva());
+	}
+
+	/**
+	 * Método para resolver el proveedor JCA configurado una sola vez.
+	 * @param nombre, jdk (los proveedores por defecto de la JVM) o bc (BouncyCastle)
+	 * @return proveedor; con jdk, el de RS512, y cada algoritmo usa el proveedor de la JVM que lo implementa
+	 * @throws GeneralSecurityException si el proveedor no tiene SHA512withRSA
+	 */
+	public static Provider proveedor(String nombre) throws GeneralSecurityException {
+		if (PROVEEDOR_BC.equalsIgnoreCase(nombre)) {
+			return BOUNCY_CASTLE;
+		}
+		return Signature.getInstance(ALGORITMO).getProvider();
+	}
+
+	/**
+	 * Método para crear el JWS en serialización compacta.
+	 * @param payload, texto que se firma
+	 * @return encabezado.payload.firma en base64url
+	 * @throws GeneralSecurityException
+	 */
+	public String firmar(String payload) throws GeneralSecurityException {
+		return new String(jws(BASE64URL.encode(payload.getBytes(StandardCharsets.UTF_8))), StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Método para crear el JWS de un payload binario sin convertirlo a texto; los
+	 * bytes se firman tal como vienen.
+	 * @param payload, bytes que se firman; se consumen hasta su límite
+	 * @return encabezado.payload.firma en base64url, como bytes ASCII
+	 * @throws GeneralSecurityException
+	 */
+	public byte[] firmar(ByteBuffer payload) throws GeneralSecurityException {
+		ByteBuffer cuerpo = BASE64URL.encode(payload);
+		return jws(cuerpo.array());
+	}
+
+	private byte[] jws(byte[] cuerpo) throws GeneralSecurityException {
+		Signature firma = firmas.poll();
+		if (firma == null) {
+			firma = nueva();
+		} else {
+			enPool.decrementAndGet();
+		}
+		firma.update(encabezado);
+		firma.update(cuerpo);
+		// si sign() falla la instancia queda en un estado desconocido y no se devuelve al pool
+		byte[] resultado = BASE64URL.encode(firma.sign());
+		devolver(firma);
+
+		byte[] jws = new byte[encabezado.length + cuerpo.length + 1 + resultado.length];
+		System.arraycopy(encabezado, 0, jws, 0, encabezado.length);
+		System.arraycopy(cuerpo, 0, jws, encabezado.length, cuerpo.length);
+		jws[encabezado.length + cuerpo.length] = '.';
+		System.arraycopy(resultado, 0, jws, encabezado.length + cuerpo.length + 1, resultado.length);
+		return jws;
+	}
+
+	public Provider getProveedor() {
+		return proveedor;
+	}
+
+	public AlgoritmoFirma getAlgoritmo() {
+		return algoritmo;
+	}
+
+	private void devolver(Signature firma) {
+		if (enPool.incrementAndGet() <= MAXIMO_POOL) {
+			firmas.offer(firma);
+		} else {
+			enPool.decrementAndGet();
+		}
+	}
+
+	private Signature nueva() throws GeneralSecurityException {
+		boolean bouncyCastle = proveedor == BOUNCY_CASTLE;
+		Signature firma = bouncyCastle ? Signature.getInstance(algoritmo.getJca(true), proveedor)
+				: Signature.getInstance(algoritmo.getJca(false));
+		if (algoritmo.getParametros() != null) {
+			firma.setParameter(algoritmo.getParametros());
+		}
+		firma.initSign(llave);
+		return firma;
+	}
+}
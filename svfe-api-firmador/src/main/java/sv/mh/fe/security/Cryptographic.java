@@ -3,6 +3,10 @@ package sv.mh.fe.security;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.springframework.stereotype.Component;
 
@@ -13,23 +17,69 @@ public class Cryptographic {
 	final static public String SHA256 = "SHA-256";
 	final static public String SHA512 = "SHA-512";
 	
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	/**
+	 * Instancias de MessageDigest reutilizables por algoritmo, para no buscar el
+	 * proveedor en cada llamada. Se usa un pool en lugar de ThreadLocal para que
+	 * también funcione con hilos que no se reutilizan.
+	 */
+	private final Map<String, Queue<MessageDigest>> digests = new ConcurrentHashMap<>();
+	
 	public String encrypt(String p) throws NoSuchAlgorithmException {	
 		return encrypt(p, SHA256);
 	}
 	
 	public String encrypt(String p, String sha) throws NoSuchAlgorithmException  {
-		MessageDigest diget = MessageDigest.getInstance(sha);
-		byte[] encodedhash = diget.digest(p.getBytes(StandardCharsets.UTF_8));
-		return bytesToHex(encodedhash);		
+		return bytesToHex(digest(p, sha));		
+	}
+	
+	/**
+	 * Método para obtener el hash de un texto sin convertirlo a hexadecimal.
+	 * @param p
+	 * @param sha
+	 * @return
+	 * @throws NoSuchAlgorithmException
+	 */
+	public byte[] digest(String p, String sha) throws NoSuchAlgorithmException {
+		Queue<MessageDigest> pool = digests.computeIfAbsent(sha, k -> new ConcurrentLinkedQueue<>());
+		MessageDigest diget = pool.poll();
+		if (diget == null) {
+			diget = MessageDigest.getInstance(sha);
+		}
+		try {
+			return diget.digest(p.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			pool.offer(diget);
+		}
+	}
+	
+	/**
+	 * Compara en tiempo constante un hash con su representación hexadecimal.
+	 * @param hash
+	 * @param hex
+	 * @return
+	 */
+	public static boolean isEqual(byte[] hash, String hex) {
+		if (hex == null || hex.length() != hash.length * 2) {
+			return false;
+		}
+		int diferencia = 0;
+		for (int i = 0; i < hash.length; i++) {
+			int alto = Character.digit(hex.charAt(2 * i), 16);
+			int bajo = Character.digit(hex.charAt(2 * i + 1), 16);
+			diferencia |= (alto << 4 | bajo) ^ (hash[i] & 0xff);
+			diferencia |= (alto | bajo) & 0x80000000;
+		}
+		return diferencia == 0;
 	}
 	
 	private static String bytesToHex(byte[] hash) {
-		StringBuffer hexString = new StringBuffer();
+		char[] hexString = new char[hash.length * 2];
 		for (int i = 0; i < hash.length; i++) {
-			String hex = Integer.toHexString(0xff & hash[i]);
-			if(hex.length() == 1) hexString.append('0');
-			hexString.append(hex);
+			hexString[2 * i] = HEX[(hash[i] >> 4) & 0x0f];
+			hexString[2 * i + 1] = HEX[hash[i] & 0x0f];
 		}
-		return hexString.toString();
+		return new String(hexString);
 	}	
 }
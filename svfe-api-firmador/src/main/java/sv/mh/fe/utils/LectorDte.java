@@ -0,0 +1,103 @@
+package sv.mh.fe.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import sv.mh.fe.filter.FirmarDocumentoFilter;
+
+/**
+ * Lee una petición de firma directamente de los bytes recibidos. Los campos
+ * simples se leen como tokens y el dteJson no se deserializa: se toma el rango
+ * de bytes original del cuerpo para usarlo como payload del JWS.
+ */
+@Service
+public class LectorDte {
+
+	private final JsonFactory factory = new JsonFactory();
+
+	/**
+	 * Método para leer el filtro de firma sin construir árboles JSON.
+	 * @param cuerpo, bytes UTF-8 de la petición
+	 * @return filtro con el DTE original en el campo dte, o null en dte si no se envió
+	 * @throws IOException si el cuerpo no es JSON o dteJson no es un objeto
+	 */
+	public FirmarDocumentoFilter leer(byte[] cuerpo) throws IOException {
+		FirmarDocumentoFilter filter = new FirmarDocumentoFilter();
+		int inicio = -1;
+		int fin = -1;
+		try (JsonParser parser = factory.createParser(cuerpo)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new JsonParseException(parser, "Se esperaba un objeto JSON");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String campo = parser.currentName();
+				JsonToken valor = parser.nextToken();
+				switch (campo) {
+				case "nit":
+					filter.setNit(valor == JsonToken.VALUE_NULL ? null : parser.getValueAsString());
+					break;
+				case "passwordPri":
+					filter.setPasswordPri(valor == JsonToken.VALUE_NULL ? null : parser.getValueAsString());
+					break;
+				case "compacto":
+					filter.setCompacto(parser.getValueAsBoolean());
+					break;
+				case "dteJson":
+					if (valor == JsonToken.VALUE_NULL) {
+						break;
+					}
+					if (valor != JsonToken.START_OBJECT) {
+						throw new JsonParseException(parser, "dteJson debe ser un objeto JSON");
+					}
+					inicio = (int) parser.currentTokenLocation().getByteOffset();
+					parser.skipChildren();
+					fin = (int) parser.currentLocation().getByteOffset();
+					break;
+				default:
+					parser.skipChildren();
+				}
+			}
+		}
+		if (inicio >= 0) {
+			filter.setDte(filter.getCompacto() ? compactar(cuerpo, inicio, fin)
+					: new String(cuerpo, inicio, fin - inicio, StandardCharsets.UTF_8));
+		}
+		return filter;
+	}
+
+	/**
+	 * Elimina los espacios en blanco fuera de cadenas de un rango JSON ya
+	 * validado, sin alterar el texto de números ni cadenas.
+	 * @param json
+	 * @param inicio
+	 * @param fin
+	 * @return JSON compacto
+	 */
+	public static String compactar(byte[] json, int inicio, int fin) {
+		byte[] salida = new byte[fin - inicio];
+		int n = 0;
+		boolean enCadena = false;
+		for (int i = inicio; i < fin; i++) {
+			byte b = json[i];
+			if (enCadena) {
+				salida[n++] = b;
+				if (b == '\\') {
+					salida[n++] = json[++i];
+				} else if (b == '"') {
+					enCadena = false;
+				}
+			} else if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+				salida[n++] = b;
+				enCadena = b == '"';
+			}
+		}
+		return new String(salida, 0, n, StandardCharsets.UTF_8);
+	}
+}
@@ -3,6 +3,7 @@ package sv.mh.fe.utils;
 import java.io.IOException;
 
 import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.core.JsonFactory;
@@ -11,10 +12,14 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import sv.mh.fe.constantes.Errores;
+import sv.mh.fe.metricas.MetricasFirma;
 
 @Service
 public class Mensaje {
 
+	@Autowired
+	private MetricasFirma metricas;
+
 	public ResponseBody ok(Object body) {
 		ResponseBody responseBody = new ResponseBody();
 		responseBody.setStatus(ResponseBody.status_ok);
@@ -35,6 +40,7 @@ public class Mensaje {
 	}	
 	
 	public ResponseBody error(String codigo, String mensaje) {
+		metricas.error(codigo);
 		ResponseBody responseBody = new ResponseBody();
 		BodyMensaje body = new BodyMensaje(codigo, mensaje);
 		responseBody.setStatus(ResponseBody.status_error);
@@ -43,6 +49,7 @@ public class Mensaje {
 	}
 	
 	public ResponseBody error(String codigo, Object mensaje) {
+		metricas.error(codigo);
 		ResponseBody responseBody = new ResponseBody();
 		BodyMensaje body = new BodyMensaje(codigo, mensaje);
 		responseBody.setStatus(ResponseBody.status_error);
@@ -65,6 +72,7 @@ public class Mensaje {
 	}
 	
 	public ResponseBody error(Errores error) {
+		metricas.error(error.getCode());
 		ResponseBody responseBody = new ResponseBody();
 		BodyMensaje body = new BodyMensaje(error.getCode(), error.getText());
 		responseBody.setStatus(ResponseBody.status_error);
@@ -2,6 +2,7 @@ package sv.mh.fe.validations;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,13 +16,19 @@ public abstract class AbstractValidations {
 	public static String REQ_DATOS = "Objeto se recibió vacío";
 	public static String REQ_NIT_FORMATO = "Formato de NIT no valido - (00000000000000)  ";
 	public static String REQ_JWS = "JSON WEB Signing es requerido";
+	public static String REQ_JWS_LOTE = "Lista de JSON WEB Signing es requerida";
 	public static String REQ_NOMBRE_DOCUMENTO = "El nombre del docuemnto es requerido";
 	public static String REQ_NOMBRE_FIRMA = "El nombre del firma es requerido";
+	public static String REQ_RUTA_FUERA_BASE = "La ruta esta fuera del directorio de documentos";
 	public static String REQ_JSON_DTE = "JsonDTE es requerido";
+	public static String REQ_JSON_DTE_LOTE = "Lista de JsonDTE es requerida";
+	public static String REQ_JSON_DTE_LOTE_MAXIMO = "El lote excede el máximo de documentos permitido: ";
 	public static String REQ_CLAVE_PRIVADA = "Clave privada es requerida";
 	public static String REQ_CONFIRMACION_PRI = "Clave priva y confirmación no son iguales";
 	public static String REQ_CLAVE_PUBLICA = "Clave publica es requerida";
 	public static String REQ_CONFIRMACION_PUB = "Clave publica y confirmación no son iguales";
+	public static String REQ_PRIORIDAD = "Prioridad no valida (TIEMPO_REAL, NORMAL, CONTINGENCIA)";
+	public static String REQ_CALLBACK = "URL de callback no valida";
 	public static String REQ_COMPACT_SERIALIZATION = "La Serialización Compacta es requerida";
 	
 	public static String REQ_SUBJECT_CONTRY_NAME = "Nombre del país es requerido";
@@ -34,37 +41,45 @@ public abstract class AbstractValidations {
 	public static String REQ_SUBJECT_DESCRIPCION = "NRC es un campo requerido";
 	public static String REQ_SUBJECT_EMAIL_ORGANI = "Correo de organización es un campo requerido";
 	
-	protected List<String> requeridos = null;
-	protected String validarNIT = null;
+	private static final Pattern NIT = Pattern.compile("\\d{14}");
 	
-	protected Boolean valido = null;	
-	
-	public List<String> ValidarNIT(String nit){
-		List<String> requeridos = new ArrayList<>();				
+	/**
+	 * Valida el NIT y agrega el error a la lista.
+	 * @param nit
+	 * @param requeridos, lista acumulada; puede ser null
+	 * @return lista con el error agregado, o la misma recibida si el NIT es valido
+	 */
+	protected static List<String> ValidarNIT(String nit, List<String> requeridos){
 		if(nit==null) {
-			requeridos.add(REQ_NIT);
-		}else if(!nit.matches("\\d{14}")){
-			requeridos.add(REQ_NIT_FORMATO);
+			return agregar(requeridos, REQ_NIT);
+		}else if(!NIT.matcher(nit).matches()){
+			return agregar(requeridos, REQ_NIT_FORMATO);
+		}
+		return requeridos;
+	}
+	
+	/**
+	 * Agrega un error creando la lista solo cuando hace falta, así una validación
+	 * exitosa no reserva memoria.
+	 */
+	protected static List<String> agregar(List<String> requeridos, String mensaje) {
+		if(requeridos == null) {
+			requeridos = new ArrayList<>(2);
 		}
+		requeridos.add(mensaje);
 		return requeridos;
 	}
+	
+	protected static boolean vacio(String valor) {
+		return valor == null || valor.length()<=0;
+	}
 		
-	public boolean isValido() {
-		valido = false;		
-		if(requeridos.size() == 0)
-			valido = true;
-		else {
+	protected static ResultadoValidacion resultado(List<String> requeridos) {
+		ResultadoValidacion resultado = ResultadoValidacion.de(requeridos);
+		if(!resultado.isValido()) {
 			logger.info("isValido(): "+requeridos.size());
 		}
-		return valido;
-	}	
-	
-	public List<String> getRequeridos() {
-		return requeridos;
+		return resultado;
 	}
 
-	public void setRequeridos(List<String> requeridos) {
-		this.requeridos = requeridos;
-	}	
-
 }
@@ -5,63 +5,123 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import sv.mh.fe.cola.Prioridad;
 import sv.mh.fe.filter.FirmarDocumentoFilter;
+import sv.mh.fe.filter.FirmarLoteFilter;
+import sv.mh.fe.filter.FirmarTrabajoFilter;
+import sv.mh.fe.filter.VerificarLoteFilter;
 
 
+/**
+ * Validaciones de las peticiones de firma. No guarda estado: cada método
+ * devuelve un {@link ResultadoValidacion} propio de la llamada.
+ */
 @Service
 public class FirmarDocumentoValidations extends AbstractValidations {
 	
 	public static Logger logger = LoggerFactory.getLogger(FirmarDocumentoValidations.class);
 	
-	public List<String> v2validar(FirmarDocumentoFilter filter) {		
-		this.requeridos = ValidarNIT(filter.getNit());
-		if(filter.getCompactSerialization() == null || filter.getCompactSerialization().length()<=0) {
-			this.requeridos.add(REQ_JWS);
+	public ResultadoValidacion v2validar(FirmarDocumentoFilter filter) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
+		if(vacio(filter.getCompactSerialization())) {
+			requeridos = agregar(requeridos, REQ_JWS);
 		}		
-		return this.requeridos;
+		return resultado(requeridos);
 	}
 	
-	public List<String> v1validar(FirmarDocumentoFilter filter) {		
-		this.requeridos = ValidarNIT(filter.getNit());
-		if(filter.getNombreDocumento() == null || filter.getNombreDocumento().length()<=0) {
-			this.requeridos.add(REQ_NOMBRE_DOCUMENTO);
+	public ResultadoValidacion v1validar(FirmarDocumentoFilter filter) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
+		if(vacio(filter.getNombreDocumento())) {
+			requeridos = agregar(requeridos, REQ_NOMBRE_DOCUMENTO);
 		}
-		if(filter.getNombreFirma() == null || filter.getNombreFirma().length()<=0) {
-			this.requeridos.add(REQ_NOMBRE_FIRMA);
+		if(vacio(filter.getNombreFirma())) {
+			requeridos = agregar(requeridos, REQ_NOMBRE_FIRMA);
 		}
 		
 		logger.info("requeridos: "+requeridos);
-		return requeridos;
+		return resultado(requeridos);
 	}
 	
-	public List<String> v3validar(FirmarDocumentoFilter filter) {		
-		this.requeridos = ValidarNIT(filter.getNit());
-		if(this.validarNIT!=null) {
-			this.requeridos.add(this.validarNIT);
-		}
-//		if(filter.getDteJson() == null || filter.getDteJson().length()<=0) {
-//			this.requeridos.add(REQ_JSON_DTE);
-//		}
-		if(filter.getPasswordPri() == null || filter.getPasswordPri().length()<=0) {
-			this.requeridos.add(REQ_CLAVE_PRIVADA);
-		}
-		return requeridos;
+	public ResultadoValidacion v3validar(FirmarDocumentoFilter filter) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
+		if(vacio(filter.getPasswordPri())) {
+			requeridos = agregar(requeridos, REQ_CLAVE_PRIVADA);
+		}
+		return resultado(requeridos);
 	}
 	
-	public List<String> v5validar(FirmarDocumentoFilter filter) {		
-		this.requeridos = ValidarNIT(filter.getNit());
+	public ResultadoValidacion v5validar(FirmarDocumentoFilter filter) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
 		if(filter.getDteJson() == null) {
-			this.requeridos.add(REQ_JSON_DTE);
+			requeridos = agregar(requeridos, REQ_JSON_DTE);
 		}
-		if(filter.getPasswordPri() == null || filter.getPasswordPri().length()<=0) {
-			this.requeridos.add(REQ_CLAVE_PRIVADA);
+		if(vacio(filter.getPasswordPri())) {
+			requeridos = agregar(requeridos, REQ_CLAVE_PRIVADA);
 		}
-		return requeridos;
+		return resultado(requeridos);
 	}		
 	
-	public String getValidarNIT() {
-		return this.validarNIT;
+	public ResultadoValidacion v6validar(FirmarLoteFilter filter, int maximo) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
+		if(filter.getDteJsons() == null || filter.getDteJsons().isEmpty()) {
+			requeridos = agregar(requeridos, REQ_JSON_DTE_LOTE);
+		}else if(filter.getDteJsons().size() > maximo) {
+			requeridos = agregar(requeridos, REQ_JSON_DTE_LOTE_MAXIMO + maximo);
+		}
+		if(vacio(filter.getPasswordPri())) {
+			requeridos = agregar(requeridos, REQ_CLAVE_PRIVADA);
+		}
+		return resultado(requeridos);
+	}
+	
+	public ResultadoValidacion v7validar(FirmarDocumentoFilter filter) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
+		if(filter.getDte() == null) {
+			requeridos = agregar(requeridos, REQ_JSON_DTE);
+		}
+		if(vacio(filter.getPasswordPri())) {
+			requeridos = agregar(requeridos, REQ_CLAVE_PRIVADA);
+		}
+		return resultado(requeridos);
+	}
+	
+	public ResultadoValidacion v8validar(VerificarLoteFilter filter, int maximo) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
+		if(filter.getCompactSerializations() == null || filter.getCompactSerializations().isEmpty()) {
+			requeridos = agregar(requeridos, REQ_JWS_LOTE);
+		}else if(filter.getCompactSerializations().size() > maximo) {
+			requeridos = agregar(requeridos, REQ_JSON_DTE_LOTE_MAXIMO + maximo);
+		}
+		return resultado(requeridos);
+	}
+	
+	public ResultadoValidacion v9validar(FirmarTrabajoFilter filter) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
+		if(filter.getDteJson() == null) {
+			requeridos = agregar(requeridos, REQ_JSON_DTE);
+		}
+		if(vacio(filter.getPasswordPri())) {
+			requeridos = agregar(requeridos, REQ_CLAVE_PRIVADA);
+		}
+		if(filter.getPrioridad() != null && Prioridad.de(filter.getPrioridad()) == null) {
+			requeridos = agregar(requeridos, REQ_PRIORIDAD);
+		}
+		String callback = filter.getCallback();
+		if(callback != null && !callback.startsWith("http://") && !callback.startsWith("https://")) {
+			requeridos = agregar(requeridos, REQ_CALLBACK);
+		}
+		return resultado(requeridos);
 	}
 	
+	public ResultadoValidacion v10validar(FirmarDocumentoFilter filter) {		
+		List<String> requeridos = ValidarNIT(filter.getNit(), null);
+		if(vacio(filter.getNombreDocumento())) {
+			requeridos = agregar(requeridos, REQ_NOMBRE_DOCUMENTO);
+		}
+		if(vacio(filter.getPasswordPri())) {
+			requeridos = agregar(requeridos, REQ_CLAVE_PRIVADA);
+		}
+		return resultado(requeridos);
+	}
 	
 }
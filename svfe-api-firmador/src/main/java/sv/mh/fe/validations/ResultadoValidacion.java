@@ -0,0 +1,43 @@
+package sv.mh.fe.validations;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado inmutable de una validación. Cada llamada a un validador devuelve su
+ * propio resultado, por lo que el validador puede compartirse entre hilos.
+ */
+public final class ResultadoValidacion {
+
+	public static final ResultadoValidacion VALIDO = new ResultadoValidacion(Collections.emptyList());
+
+	private final List<String> requeridos;
+
+	private ResultadoValidacion(List<String> requeridos) {
+		this.requeridos = requeridos;
+	}
+
+	/**
+	 * @param requeridos, mensajes de error o null si no hubo errores
+	 * @return
+	 */
+	public static ResultadoValidacion de(List<String> requeridos) {
+		if (requeridos == null || requeridos.isEmpty()) {
+			return VALIDO;
+		}
+		return new ResultadoValidacion(Collections.unmodifiableList(requeridos));
+	}
+
+	public boolean isValido() {
+		return requeridos.isEmpty();
+	}
+
+	public List<String> getRequeridos() {
+		return requeridos;
+	}
+
+	@Override
+	public String toString() {
+		return "ResultadoValidacion [requeridos=" + requeridos + "]";
+	}
+}
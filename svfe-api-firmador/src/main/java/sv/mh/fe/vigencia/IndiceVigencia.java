@@ -0,0 +1,186 @@
+package sv.mh.fe.vigencia;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import sv.mh.fe.almacen.AlmacenCertificados;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.models.CertificadoMH;
+
+/**
+ * Índice en memoria de la vigencia (notBefore / notAfter) del certificado de
+ * cada NIT, para rechazar antes de firmar los documentos que el Ministerio de
+ * Hacienda rechazaría por certificado vencido.
+ *
+ * El índice se actualiza cada vez que {@link sv.mh.fe.cache.CertificadoCache}
+ * carga un certificado y con un recorrido periódico de todo el almacén, que
+ * además reporta en el log los emisores cuyo certificado vence pronto.
+ */
+@Component
+public class IndiceVigencia {
+
+	private static Logger logger = LoggerFactory.getLogger(IndiceVigencia.class);
+
+	@Autowired
+	private AlmacenCertificados almacen;
+
+	@Autowired
+	private MetricasFirma metricas;
+
+	@Value("${firmador.vigencia.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${firmador.vigencia.aviso:30d}")
+	private Duration aviso;
+
+	@Value("${firmador.vigencia.reporte:24h}")
+	private Duration reporte;
+
+	private final Map<String, Vigencia> vigencias = new ConcurrentHashMap<>();
+
+	private final AtomicInteger porVencer = new AtomicInteger();
+
+	private final ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread hilo = new Thread(r, "indice-vigencia");
+		hilo.setDaemon(true);
+		return hilo;
+	});
+
+	@PostConstruct
+	public void iniciar() {
+		metricas.medidor("firmador.certificados.por_vencer", "Certificados vencidos o que vencen dentro del aviso", porVencer::get);
+		if (reporte.toMillis() > 0) {
+			programador.scheduleWithFixedDelay(this::reportar, 0, reporte.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void detener() {
+		programador.shutdownNow();
+	}
+
+	/**
+	 * Método para registrar la vigencia de un certificado recién cargado.
+	 * @param certificado
+	 */
+	public void registrar(CertificadoMH certificado) {
+		Instant inicio = certificado.getInicioVigencia();
+		Instant fin = certificado.getFinVigencia();
+		if (inicio == null && fin == null) {
+			vigencias.remove(certificado.getNit());
+			return;
+		}
+		vigencias.put(certificado.getNit(), new Vigencia(inicio == null ? Long.MIN_VALUE : inicio.toEpochMilli(),
+				fin == null ? Long.MAX_VALUE : fin.toEpochMilli()));
+	}
+
+	/**
+	 * Método para validar la vigencia del certificado de un NIT.
+	 * @param nit
+	 * @return false solo si el certificado tiene fechas y hoy está fuera de ellas
+	 */
+	public boolean vigente(String nit) {
+		if (!habilitado) {
+			return true;
+		}
+		Vigencia vigencia = vigencias.get(nit);
+		if (vigencia == null) {
+			return true;
+		}
+		long ahora = System.currentTimeMillis();
+		return ahora >= vigencia.inicio && ahora <= vigencia.fin;
+	}
+
+	/**
+	 * @return certificados vencidos o que vencen dentro de firmador.vigencia.aviso,
+	 *         del que vence primero al último
+	 */
+	public List<Vencimiento> porVencer() {
+		long limite = System.currentTimeMillis() + aviso.toMillis();
+		List<Vencimiento> lista = new ArrayList<>();
+		for (Map.Entry<String, Vigencia> e : vigencias.entrySet()) {
+			if (e.getValue().fin <= limite) {
+				lista.add(new Vencimiento(e.getKey(), Instant.ofEpochMilli(e.getValue().fin)));
+			}
+		}
+		lista.sort(Comparator.comparing(Vencimiento::getFinVigencia));
+		return lista;
+	}
+
+	/**
+	 * Recorre el almacén para indexar también los certificados que no están en
+	 * cache y reporta los que vencen pronto.
+	 */
+	private void reportar() {
+		try {
+			List<String> nits = almacen.nits();
+			for (String nit : nits) {
+				try {
+					registrar(almacen.cargar(nit));
+				} catch (IOException | RuntimeException e) {
+					logger.warn("No se pudo leer la vigencia del certificado " + nit + ": " + e.getMessage());
+				}
+			}
+			vigencias.keySet().retainAll(nits);
+		} catch (IOException | RuntimeException e) {
+			logger.error("No se pudo recorrer el almacén de certificados: " + e.getMessage());
+		}
+		List<Vencimiento> lista = porVencer();
+		porVencer.set(lista.size());
+		long ahora = System.currentTimeMillis();
+		for (Vencimiento vencimiento : lista) {
+			if (vencimiento.getFinVigencia().toEpochMilli() < ahora) {
+				logger.warn("Certificado vencido: " + vencimiento.getNit() + " desde " + vencimiento.getFinVigencia());
+			} else {
+				logger.warn("Certificado por vencer: " + vencimiento.getNit() + " el " + vencimiento.getFinVigencia());
+			}
+		}
+	}
+
+	private static final class Vigencia {
+		/** epoch millis */
+		final long inicio;
+		final long fin;
+
+		Vigencia(long inicio, long fin) {
+			this.inicio = inicio;
+			this.fin = fin;
+		}
+	}
+
+	public static class Vencimiento {
+
+		private final String nit;
+		private final Instant finVigencia;
+
+		Vencimiento(String nit, Instant finVigencia) {
+			this.nit = nit;
+			this.finVigencia = finVigencia;
+		}
+
+		public String getNit() {
+			return nit;
+		}
+		public Instant getFinVigencia() {
+			return finVigencia;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package sv.mh.fe;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.ECGenParameterSpec;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import sv.mh.fe.constantes.TipoLlave;
+import sv.mh.fe.metricas.MetricasFirma;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.models.Llave;
+import sv.mh.fe.models.minec.BasicEstructure;
+import sv.mh.fe.models.minec.Certificado;
+import sv.mh.fe.models.minec.Subject;
+import sv.mh.fe.security.Cryptographic;
+
+/**
+ * Certificados de prueba con el mismo formato que los archivos .crt de uploads.
+ */
+public final class DatosPrueba {
+
+	public static final String NIT = "06141234567890";
+	public static final String PASSWORD = "secreto";
+
+	private DatosPrueba() {
+	}
+
+	public static MetricasFirma metricas() {
+		return new MetricasFirma(new SimpleMeterRegistry());
+	}
+
+	public static KeyPair rsa() throws Exception {
+		KeyPairGenerator generador = KeyPairGenerator.getInstance("RSA");
+		generador.initialize(2048);
+		return generador.generateKeyPair();
+	}
+
+	/**
+	 * Par EC en la curva indicada, por ejemplo secp256r1 o secp384r1.
+	 */
+	public static KeyPair ec(String curva) throws Exception {
+		KeyPairGenerator generador = KeyPairGenerator.getInstance("EC");
+		generador.initialize(new ECGenParameterSpec(curva));
+		return generador.generateKeyPair();
+	}
+
+	public static CertificadoMH certificado(String nit, String password) throws Exception {
+		return certificado(nit, password, rsa());
+	}
+
+	public static CertificadoMH certificado(String nit, String password, KeyPair par) throws NoSuchAlgorithmException {
+		String clave = new Cryptographic().encrypt(password, Cryptographic.SHA512);
+		String algoritmo = par.getPrivate().getAlgorithm();
+
+		Llave privada = new Llave();
+		privada.setKeyType(TipoLlave.PRIVATE);
+		privada.setAlgorithm(algoritmo);
+		privada.setFormat("PKCS#8");
+		privada.setEncodied(par.getPrivate().getEncoded());
+		privada.setClave(clave);
+
+		Llave publica = new Llave();
+		publica.setKeyType(TipoLlave.PUBLIC);
+		publica.setAlgorithm(algoritmo);
+		publica.setFormat("X.509");
+		publica.setEncodied(par.getPublic().getEncoded());
+		publica.setClave(clave);
+
+		Certificado detalle = new Certificado();
+		detalle.setBasicEstructure(new BasicEstructure(new Subject(), publica));
+
+		CertificadoMH certificado = new CertificadoMH();
+		certificado.setNit(nit);
+		certificado.setActivo(true);
+		certificado.setPrivateKey(privada);
+		certificado.setPublicKey(publica);
+		certificado.setCertificado(detalle);
+		return certificado;
+	}
+}
@@ -0,0 +1,136 @@
+package sv.mh.fe.admision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sv.mh.fe.DatosPrueba;
+
+public class LimitadorFirmasTest {
+
+	@Test
+	public void admiteLaRafagaYLuegoLaTasa() throws Exception {
+		LimitadorFirmas limitador = limitador(20, 10, 100);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(0, limitador.admitir("a", 1), "documento " + i);
+		}
+		// cubeta vacía: la siguiente ficha llega en 1/20 de segundo
+		long espera = limitador.admitir("a", 1);
+		assertTrue(espera > 0 && espera <= TimeUnit.MILLISECONDS.toNanos(50), "espera: " + espera);
+		// un lote espera hasta tener todas sus fichas
+		long esperaLote = limitador.admitir("a", 4);
+		assertTrue(esperaLote > espera && esperaLote <= TimeUnit.MILLISECONDS.toNanos(200),
+				"espera: " + esperaLote);
+
+		// otro emisor no se ve afectado
+		assertEquals(0, limitador.admitir("b", 10));
+
+		TimeUnit.NANOSECONDS.sleep(espera);
+		assertEquals(0, limitador.admitir("a", 1));
+
+		LimitadorFirmas.UsoNit uso = limitador.uso().stream().filter(u -> u.getNit().equals("a")).findFirst().get();
+		assertEquals(11, uso.getAceptados());
+		assertEquals(5, uso.getRechazados());
+	}
+
+	@Test
+	public void loteMayorQueLaRafagaNoCabe() throws Exception {
+		LimitadorFirmas limitador = limitador(20, 10, 100);
+		assertEquals(LimitadorFirmas.EXCEDE_RAFAGA, limitador.admitir("a", 11));
+		// el rechazo no consumió fichas
+		assertEquals(0, limitador.admitir("a", 10));
+		// esperar cobra por partes del tamaño de la ráfaga
+		long inicio = System.nanoTime();
+		limitador.esperar("a", 12);
+		assertTrue(System.nanoTime() - inicio >= TimeUnit.MILLISECONDS.toNanos(500));
+	}
+
+	@Test
+	public void deshabilitadoAdmiteTodo() {
+		LimitadorFirmas limitador = limitador(1, 1, 1);
+		ReflectionTestUtils.setField(limitador, "habilitado", false);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(0, limitador.admitir("a", 1000));
+		}
+		assertEquals(0, limitador.size());
+	}
+
+	@Test
+	public void configuracionInvalidaSeRechaza() {
+		for (double tasa : new double[] { 0, -1, Double.NaN, Double.POSITIVE_INFINITY, 2e9, 1e-12 }) {
+			assertThrows(IllegalStateException.class, () -> limitador(tasa, 100, 10), "tasa " + tasa);
+		}
+		assertThrows(IllegalStateException.class, () -> limitador(50, 0, 10));
+		assertThrows(IllegalStateException.class, () -> limitador(50, 100, 0));
+		// una ficha por hora con ráfaga de un día es válida
+		limitador(1 / 3600.0, 24, 10);
+	}
+
+	@Test
+	public void cubetasNoPasanDelMaximo() {
+		LimitadorFirmas limitador = limitador(1, 5, 100);
+		// cada NIT deja su cubeta sin llenar, así que ninguna se puede quitar por estar llena
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(0, limitador.admitir("nit-" + i, 1));
+			assertTrue(limitador.size() <= 100, "cubetas: " + limitador.size());
+		}
+	}
+
+	@Test
+	public void seDesalojaLaDeUsoMasAntiguo() {
+		LimitadorFirmas limitador = limitador(1, 5, 10);
+		for (int i = 0; i < 10; i++) {
+			limitador.admitir("nit-" + i, 5);
+		}
+		// nit-0 se sigue usando: conserva su cubeta vacía y sigue rechazado
+		assertTrue(limitador.admitir("nit-0", 1) > 0);
+		limitador.admitir("nuevo", 1);
+		assertTrue(limitador.admitir("nit-0", 1) > 0);
+		// nit-1 era el de uso más antiguo y volvió con la cubeta llena
+		assertEquals(0, limitador.admitir("nit-1", 5));
+	}
+
+	@Test
+	public void maximoConHilosConcurrentes() throws Exception {
+		LimitadorFirmas limitador = limitador(1, 5, 50);
+		ExecutorService hilos = Executors.newFixedThreadPool(8);
+		CountDownLatch inicio = new CountDownLatch(1);
+		for (int h = 0; h < 8; h++) {
+			int hilo = h;
+			hilos.submit(() -> {
+				inicio.await();
+				for (int i = 0; i < 2000; i++) {
+					limitador.admitir(hilo + "-" + i, 1);
+				}
+				return null;
+			});
+		}
+		inicio.countDown();
+		hilos.shutdown();
+		assertTrue(hilos.awaitTermination(30, TimeUnit.SECONDS));
+		// a lo más una cubeta de más por hilo que entró mientras otro desalojaba
+		assertTrue(limitador.size() <= 50 + 8, "cubetas: " + limitador.size());
+		List<LimitadorFirmas.UsoNit> uso = limitador.uso();
+		assertEquals(limitador.size(), uso.size());
+	}
+
+	public static LimitadorFirmas limitador(double tasa, int rafaga, int maximo) {
+		LimitadorFirmas limitador = new LimitadorFirmas();
+		ReflectionTestUtils.setField(limitador, "metricas", DatosPrueba.metricas());
+		ReflectionTestUtils.setField(limitador, "habilitado", true);
+		ReflectionTestUtils.setField(limitador, "tasa", tasa);
+		ReflectionTestUtils.setField(limitador, "rafaga", rafaga);
+		ReflectionTestUtils.setField(limitador, "maximo", maximo);
+		limitador.iniciar();
+		return limitador;
+	}
+}
@@ -0,0 +1,193 @@
+package sv.mh.fe.almacen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sv.mh.fe.DatosPrueba;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.models.minec.Validity;
+
+public class MapeadoAlmacenCertificadosTest {
+
+	private static final String OTRO_NIT = "06149876543210";
+
+	@TempDir
+	Path directorio;
+
+	@Test
+	public void almacenIdaYVuelta() throws Exception {
+		Map<String, CertificadoMH> certificados = certificados();
+		Path archivo = directorio.resolve("certificados.svks");
+
+		MapeadoAlmacenCertificados.escribir(archivo, certificados);
+		MapeadoAlmacenCertificados almacen = new MapeadoAlmacenCertificados(archivo.toString());
+
+		assertEquals(certificados.keySet(), new HashSet<>(almacen.nits()));
+		for (CertificadoMH certificado : certificados.values()) {
+			RegistroCertificadoTest.iguales(certificado, almacen.cargar(certificado.getNit()));
+		}
+		assertEquals(Files.getLastModifiedTime(archivo).toMillis(), almacen.version(DatosPrueba.NIT));
+		assertThrows(NoSuchFileException.class, () -> almacen.cargar("00000000000000"));
+		try (var archivos = Files.list(directorio)) {
+			assertEquals(1, archivos.count(), "no quedan temporales");
+		}
+	}
+
+	@Test
+	public void vuelveAMapearAlReemplazarElArchivo() throws Exception {
+		Path archivo = directorio.resolve("certificados.svks");
+		CertificadoMH primero = RegistroCertificadoTest.certificado();
+		MapeadoAlmacenCertificados.escribir(archivo, Map.of(DatosPrueba.NIT, primero));
+		Files.setLastModifiedTime(archivo, FileTime.fromMillis(1_000_000L));
+		MapeadoAlmacenCertificados almacen = new MapeadoAlmacenCertificados(archivo.toString());
+		RegistroCertificadoTest.iguales(primero, almacen.cargar(DatosPrueba.NIT));
+
+		Map<String, CertificadoMH> nuevos = certificados();
+		MapeadoAlmacenCertificados.escribir(archivo, nuevos);
+
+		assertEquals(2, almacen.nits().size());
+		RegistroCertificadoTest.iguales(nuevos.get(DatosPrueba.NIT), almacen.cargar(DatosPrueba.NIT));
+	}
+
+	@Test
+	public void leeAlmacenesDeFormato1() throws Exception {
+		Map<String, CertificadoMH> certificados = certificados();
+		Path archivo = directorio.resolve("certificados.svks");
+		Map<String, byte[]> registros = new LinkedHashMap<>();
+		for (CertificadoMH certificado : certificados.values()) {
+			byte[] registro = RegistroCertificado.escribir(certificado);
+			// el formato 1 es el mismo registro sin las fechas de vigencia
+			registros.put(certificado.getNit(), Arrays.copyOf(registro, registro.length - 16));
+		}
+		Files.write(archivo, almacen(1, registros));
+
+		MapeadoAlmacenCertificados almacen = new MapeadoAlmacenCertificados(archivo.toString());
+
+		for (CertificadoMH certificado : certificados.values()) {
+			CertificadoMH leido = almacen.cargar(certificado.getNit());
+			assertEquals(certificado.getNit(), leido.getNit());
+			assertEquals(certificado.getPrivateKey().getAlgorithm(), leido.getPrivateKey().getAlgorithm());
+			assertNotNull(leido.getPrivateKey().getEncodied());
+			assertNull(leido.getInicioVigencia());
+			assertNull(leido.getFinVigencia());
+		}
+	}
+
+	@Test
+	public void rechazaFormatosDesconocidos() throws Exception {
+		Map<String, byte[]> registros = Map.of(DatosPrueba.NIT, RegistroCertificado.escribir(RegistroCertificadoTest.certificado()));
+
+		for (int formato : new int[] { 0, MapeadoAlmacenCertificados.FORMATO + 1 }) {
+			Path archivo = directorio.resolve("formato" + formato + ".svks");
+			Files.write(archivo, almacen(formato, registros));
+			IOException error = assertThrows(IOException.class, () -> new MapeadoAlmacenCertificados(archivo.toString()).nits());
+			assertEquals("Formato de almacen no valido: " + archivo, error.getMessage());
+		}
+
+		Path snapshot = directorio.resolve("otro.svks");
+		byte[] contenido = almacen(MapeadoAlmacenCertificados.FORMATO, registros);
+		ByteBuffer.wrap(contenido).putInt(0, RegistroCertificado.MAGIC_SNAPSHOT);
+		Files.write(snapshot, contenido);
+		assertThrows(IOException.class, () -> new MapeadoAlmacenCertificados(snapshot.toString()).nits());
+	}
+
+	@Test
+	public void rechazaAlmacenesTruncados() throws Exception {
+		Path completo = directorio.resolve("completo.svks");
+		MapeadoAlmacenCertificados.escribir(completo, certificados());
+		byte[] contenido = Files.readAllBytes(completo);
+
+		// cualquier corte deja la cabecera, el índice o el último registro incompleto
+		for (int largo = 0; largo < contenido.length; largo += 7) {
+			Path archivo = directorio.resolve("truncado" + largo + ".svks");
+			Files.write(archivo, Arrays.copyOf(contenido, largo));
+			assertThrows(IOException.class, () -> new MapeadoAlmacenCertificados(archivo.toString()).nits(), "truncado a " + largo);
+		}
+		Path archivo = directorio.resolve("sinUltimoByte.svks");
+		Files.write(archivo, Arrays.copyOf(contenido, contenido.length - 1));
+		assertThrows(IOException.class, () -> new MapeadoAlmacenCertificados(archivo.toString()).nits());
+	}
+
+	@Test
+	public void rechazaIndicesDanados() throws Exception {
+		Map<String, byte[]> registros = Map.of(DatosPrueba.NIT, RegistroCertificado.escribir(RegistroCertificadoTest.certificado()));
+		byte[] contenido = almacen(MapeadoAlmacenCertificados.FORMATO, registros);
+		int posicionIndice = 12 + 4 + DatosPrueba.NIT.length();
+
+		byte[] cantidad = contenido.clone();
+		ByteBuffer.wrap(cantidad).putInt(8, -1);
+		byte[] cantidadEnorme = contenido.clone();
+		ByteBuffer.wrap(cantidadEnorme).putInt(8, Integer.MAX_VALUE);
+		byte[] posicion = contenido.clone();
+		ByteBuffer.wrap(posicion).putInt(posicionIndice, contenido.length);
+		byte[] largo = contenido.clone();
+		ByteBuffer.wrap(largo).putInt(posicionIndice + 4, contenido.length);
+		byte[] nit = contenido.clone();
+		ByteBuffer.wrap(nit).putInt(12, Integer.MAX_VALUE);
+
+		for (byte[] danado : List.of(cantidad, cantidadEnorme, posicion, largo, nit)) {
+			Path archivo = Files.createTempFile(directorio, "danado", ".svks");
+			Files.write(archivo, danado);
+			assertThrows(IOException.class, () -> new MapeadoAlmacenCertificados(archivo.toString()).nits());
+		}
+	}
+
+	private static Map<String, CertificadoMH> certificados() throws Exception {
+		CertificadoMH otro = DatosPrueba.certificado(OTRO_NIT, "otra", DatosPrueba.ec("secp256r1"));
+		otro.setActivo(false);
+		otro.getCertificado().getBasicEstructure()
+				.setValidity(new Validity(Instant.parse("2025-06-01T00:00:00Z"), Instant.parse("2027-06-01T00:00:00Z")));
+		Map<String, CertificadoMH> certificados = new LinkedHashMap<>();
+		certificados.put(DatosPrueba.NIT, RegistroCertificadoTest.certificado());
+		certificados.put(OTRO_NIT, otro);
+		return certificados;
+	}
+
+	/**
+	 * Almacén armado a mano con la versión indicada en la cabecera, con el mismo
+	 * diseño que {@link MapeadoAlmacenCertificados#escribir}.
+	 */
+	private static byte[] almacen(int formato, Map<String, byte[]> registros) throws IOException {
+		int largoIndice = 0;
+		for (String nit : registros.keySet()) {
+			largoIndice += 4 + nit.length() + 8;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream datos = new DataOutputStream(bytes);
+		datos.writeInt(MapeadoAlmacenCertificados.MAGIC);
+		datos.writeInt(formato);
+		datos.writeInt(registros.size());
+		int posicion = 12 + largoIndice;
+		for (Map.Entry<String, byte[]> registro : registros.entrySet()) {
+			RegistroCertificado.escribirTexto(datos, registro.getKey());
+			datos.writeInt(posicion);
+			datos.writeInt(registro.getValue().length);
+			posicion += registro.getValue().length;
+		}
+		for (byte[] registro : registros.values()) {
+			datos.write(registro);
+		}
+		datos.flush();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,231 @@
+package sv.mh.fe.almacen;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import sv.mh.fe.DatosPrueba;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.models.Llave;
+import sv.mh.fe.models.minec.Validity;
+
+public class RegistroCertificadoTest {
+
+	private static final long TAMANO_XML = 4321;
+
+	private static final FileTime MODIFICADO = FileTime.fromMillis(1_700_000_000_000L);
+
+	/** magic, formato, tamaño del XML y CRC32 */
+	private static final int CABECERA = 20;
+
+	/** las dos fechas de vigencia que agrega el formato 2 al final del registro */
+	private static final int FECHAS = 16;
+
+	@TempDir
+	Path directorio;
+
+	@Test
+	public void snapshotIdaYVuelta() throws Exception {
+		CertificadoMH original = certificado();
+		Path destino = directorio.resolve(DatosPrueba.NIT + DirectorioAlmacenCertificados.EXTENSION_SNAPSHOT);
+
+		RegistroCertificado.escribirSnapshot(destino, original, MODIFICADO, TAMANO_XML);
+
+		assertEquals(MODIFICADO, Files.getLastModifiedTime(destino));
+		try (var archivos = Files.list(directorio)) {
+			assertEquals(1, archivos.count(), "no quedan temporales");
+		}
+		byte[] contenido = Files.readAllBytes(destino);
+		ByteBuffer cabecera = ByteBuffer.wrap(contenido);
+		assertEquals(RegistroCertificado.MAGIC_SNAPSHOT, cabecera.getInt());
+		assertEquals(RegistroCertificado.FORMATO, cabecera.getInt());
+		assertEquals(TAMANO_XML, cabecera.getLong());
+
+		iguales(original, RegistroCertificado.leerSnapshot(contenido, TAMANO_XML));
+	}
+
+	@Test
+	public void registroSinFechasNiEstado() throws Exception {
+		CertificadoMH original = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD);
+		// sin el detalle XML no hay vigencia
+		original.setCertificado(null);
+		original.setActivo(null);
+		original.getPublicKey().setClave(null);
+
+		byte[] registro = RegistroCertificado.escribir(original);
+		CertificadoMH leido = RegistroCertificado.leer(ByteBuffer.wrap(registro), RegistroCertificado.FORMATO);
+
+		iguales(original, leido);
+		assertNull(leido.getActivo());
+		assertNull(leido.getInicioVigencia());
+		assertNull(leido.getFinVigencia());
+	}
+
+	@Test
+	public void leeSnapshotsDeFormato1() throws Exception {
+		CertificadoMH original = certificado();
+		byte[] registro = RegistroCertificado.escribir(original);
+		// el formato 1 es el mismo registro sin las fechas de vigencia
+		byte[] formato1 = snapshot(Arrays.copyOf(registro, registro.length - FECHAS), 1);
+
+		CertificadoMH leido = RegistroCertificado.leerSnapshot(formato1, TAMANO_XML);
+
+		assertNotNull(leido);
+		assertEquals(original.getNit(), leido.getNit());
+		assertArrayEquals(original.getPrivateKey().getEncodied(), leido.getPrivateKey().getEncodied());
+		assertArrayEquals(original.getPublicKey().getEncodied(), leido.getPublicKey().getEncodied());
+		assertNull(leido.getInicioVigencia());
+		assertNull(leido.getFinVigencia());
+	}
+
+	@Test
+	public void descartaSnapshotsTruncados() throws Exception {
+		byte[] contenido = snapshot(RegistroCertificado.escribir(certificado()), RegistroCertificado.FORMATO);
+
+		for (int largo = 0; largo < contenido.length; largo++) {
+			assertNull(RegistroCertificado.leerSnapshot(Arrays.copyOf(contenido, largo), TAMANO_XML), "truncado a " + largo);
+		}
+		assertNotNull(RegistroCertificado.leerSnapshot(contenido, TAMANO_XML));
+	}
+
+	@Test
+	public void descartaSnapshotsDanados() throws Exception {
+		byte[] contenido = snapshot(RegistroCertificado.escribir(certificado()), RegistroCertificado.FORMATO);
+
+		// cualquier byte cambiado del registro deja de coincidir con el CRC
+		for (int i = CABECERA; i < contenido.length; i++) {
+			byte[] danado = contenido.clone();
+			danado[i] ^= 0x5A;
+			assertNull(RegistroCertificado.leerSnapshot(danado, TAMANO_XML), "byte " + i);
+		}
+
+		byte[] crc = contenido.clone();
+		ByteBuffer.wrap(crc).putInt(16, ByteBuffer.wrap(contenido).getInt(16) + 1);
+		assertNull(RegistroCertificado.leerSnapshot(crc, TAMANO_XML));
+	}
+
+	@Test
+	public void descartaRegistrosConLargosFueraDeRangoAunqueElCrcCoincida() throws Exception {
+		byte[] registro = RegistroCertificado.escribir(certificado());
+		// largo del NIT enorme: sin la validación reservaría 2 GB
+		ByteBuffer.wrap(registro).putInt(0, Integer.MAX_VALUE);
+		assertNull(RegistroCertificado.leerSnapshot(snapshot(registro, RegistroCertificado.FORMATO), TAMANO_XML));
+
+		byte[] tipo = RegistroCertificado.escribir(certificado());
+		// tipo de llave desconocido: "PRIVATE" pasa a "PRIVATX"
+		int posicion = new String(tipo, StandardCharsets.ISO_8859_1).indexOf("PRIVATE") + 6;
+		tipo[posicion] = 'X';
+		assertNull(RegistroCertificado.leerSnapshot(snapshot(tipo, RegistroCertificado.FORMATO), TAMANO_XML));
+	}
+
+	@Test
+	public void descartaCabecerasDesconocidas() throws Exception {
+		byte[] registro = RegistroCertificado.escribir(certificado());
+
+		assertNull(RegistroCertificado.leerSnapshot(snapshot(registro, RegistroCertificado.FORMATO + 1), TAMANO_XML));
+		assertNull(RegistroCertificado.leerSnapshot(snapshot(registro, 0), TAMANO_XML));
+
+		byte[] anterior = snapshot(registro, RegistroCertificado.FORMATO);
+		ByteBuffer.wrap(anterior).putInt(0, 0x53564342);
+		assertNull(RegistroCertificado.leerSnapshot(anterior, TAMANO_XML));
+
+		// generado de un XML de otro tamaño
+		assertNull(RegistroCertificado.leerSnapshot(snapshot(registro, RegistroCertificado.FORMATO), TAMANO_XML + 1));
+	}
+
+	@Test
+	public void directorioRegeneraElSnapshotDesactualizadoODanado() throws Exception {
+		CertificadoMH original = certificado();
+		XmlMapper xmlMapper = new XmlMapper();
+		xmlMapper.registerModule(new JavaTimeModule());
+		Path xml = directorio.resolve(DatosPrueba.NIT + DirectorioAlmacenCertificados.EXTENSION);
+		Path binario = directorio.resolve(DatosPrueba.NIT + DirectorioAlmacenCertificados.EXTENSION_SNAPSHOT);
+		Files.writeString(xml, xmlMapper.writeValueAsString(original));
+		Files.setLastModifiedTime(xml, MODIFICADO);
+		DirectorioAlmacenCertificados almacen = new DirectorioAlmacenCertificados(directorio.toString(), true);
+
+		iguales(original, almacen.cargar(DatosPrueba.NIT));
+		assertEquals(MODIFICADO, Files.getLastModifiedTime(binario));
+		byte[] generado = Files.readAllBytes(binario);
+
+		// con la misma fecha y tamaño se lee el snapshot sin tocar el XML
+		byte[] ilegible = new byte[(int) Files.size(xml)];
+		Arrays.fill(ilegible, (byte) ' ');
+		Files.write(xml, ilegible);
+		Files.setLastModifiedTime(xml, MODIFICADO);
+		iguales(original, almacen.cargar(DatosPrueba.NIT));
+
+		// un XML nuevo cambia la fecha de modificación
+		CertificadoMH nuevo = certificado();
+		Files.writeString(xml, xmlMapper.writeValueAsString(nuevo));
+		iguales(nuevo, almacen.cargar(DatosPrueba.NIT));
+		assertEquals(Files.getLastModifiedTime(xml), Files.getLastModifiedTime(binario));
+		assertFalse(Arrays.equals(generado, Files.readAllBytes(binario)));
+
+		// un snapshot truncado con la fecha correcta se regenera
+		byte[] actual = Files.readAllBytes(binario);
+		Files.write(binario, Arrays.copyOf(actual, actual.length / 2));
+		Files.setLastModifiedTime(binario, Files.getLastModifiedTime(xml));
+		iguales(nuevo, almacen.cargar(DatosPrueba.NIT));
+		assertArrayEquals(actual, Files.readAllBytes(binario));
+	}
+
+	static CertificadoMH certificado() throws Exception {
+		CertificadoMH certificado = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD);
+		// el registro toma la vigencia del detalle, igual que al generarlo del XML
+		certificado.getCertificado().getBasicEstructure()
+				.setValidity(new Validity(Instant.parse("2024-01-01T00:00:00Z"), Instant.parse("2026-01-01T00:00:00Z")));
+		return certificado;
+	}
+
+	static void iguales(CertificadoMH esperado, CertificadoMH actual) {
+		assertNotNull(actual);
+		assertEquals(esperado.getNit(), actual.getNit());
+		assertEquals(esperado.getActivo(), actual.getActivo());
+		assertEquals(esperado.getInicioVigencia(), actual.getInicioVigencia());
+		assertEquals(esperado.getFinVigencia(), actual.getFinVigencia());
+		iguales(esperado.getPrivateKey(), actual.getPrivateKey());
+		iguales(esperado.getPublicKey(), actual.getPublicKey());
+	}
+
+	private static void iguales(Llave esperada, Llave actual) {
+		assertEquals(esperada.getKeyType(), actual.getKeyType());
+		assertEquals(esperada.getAlgorithm(), actual.getAlgorithm());
+		assertEquals(esperada.getFormat(), actual.getFormat());
+		assertEquals(esperada.getClave(), actual.getClave());
+		assertArrayEquals(esperada.getEncodied(), actual.getEncodied());
+	}
+
+	/**
+	 * Snapshot armado a mano con el CRC correcto, para probar formatos y
+	 * registros que escribirSnapshot no genera.
+	 */
+	private static byte[] snapshot(byte[] registro, int formato) {
+		CRC32 crc = new CRC32();
+		crc.update(registro);
+		return ByteBuffer.allocate(CABECERA + registro.length)
+				.putInt(RegistroCertificado.MAGIC_SNAPSHOT)
+				.putInt(formato)
+				.putLong(TAMANO_XML)
+				.putInt((int) crc.getValue())
+				.put(registro)
+				.array();
+	}
+}
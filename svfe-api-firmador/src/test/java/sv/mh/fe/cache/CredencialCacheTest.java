@@ -0,0 +1,88 @@
+package sv.mh.fe.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sv.mh.fe.DatosPrueba;
+import sv.mh.fe.models.CertificadoMH;
+import sv.mh.fe.security.Cryptographic;
+
+public class CredencialCacheTest {
+
+	private final AtomicInteger hashes = new AtomicInteger();
+
+	private final CredencialCache cache = new CredencialCache();
+
+	@BeforeEach
+	public void iniciar() {
+		// cuenta los SHA-512 que calcula el cache
+		ReflectionTestUtils.setField(cache, "cryptographic", new Cryptographic() {
+			@Override
+			public byte[] digest(String p, String sha) throws NoSuchAlgorithmException {
+				hashes.incrementAndGet();
+				return super.digest(p, sha);
+			}
+		});
+		ReflectionTestUtils.setField(cache, "metricas", DatosPrueba.metricas());
+		ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(5));
+		ReflectionTestUtils.setField(cache, "maximo", 256);
+	}
+
+	@Test
+	public void aciertoNoCalculaElHash() throws Exception {
+		CertificadoMH certificado = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD);
+
+		assertTrue(cache.verificar(certificado, DatosPrueba.PASSWORD));
+		assertEquals(1, hashes.get());
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(cache.verificar(certificado, DatosPrueba.PASSWORD));
+		}
+		assertEquals(1, hashes.get());
+
+		// otra contraseña no acierta y se rechaza con el hash
+		assertFalse(cache.verificar(certificado, "otra"));
+		assertEquals(2, hashes.get());
+		assertTrue(cache.verificar(certificado, DatosPrueba.PASSWORD));
+		assertEquals(2, hashes.get());
+	}
+
+	@Test
+	public void certificadoRotadoInvalidaLaEntrada() throws Exception {
+		CertificadoMH anterior = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD);
+		assertTrue(cache.verificar(anterior, DatosPrueba.PASSWORD));
+
+		// con la misma contraseña, el certificado recargado se verifica de nuevo
+		CertificadoMH recargado = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD);
+		assertTrue(cache.verificar(recargado, DatosPrueba.PASSWORD));
+		assertEquals(2, hashes.get());
+
+		// el certificado nuevo del mismo NIT tiene otra contraseña: la anterior ya no sirve
+		CertificadoMH nuevo = DatosPrueba.certificado(DatosPrueba.NIT, "nueva");
+		assertFalse(cache.verificar(nuevo, DatosPrueba.PASSWORD));
+		assertEquals(3, hashes.get());
+		assertTrue(cache.verificar(nuevo, "nueva"));
+		assertEquals(4, hashes.get());
+		assertTrue(cache.verificar(nuevo, "nueva"));
+		assertEquals(4, hashes.get());
+	}
+
+	@Test
+	public void entradaVencidaVuelveACalcularElHash() throws Exception {
+		ReflectionTestUtils.setField(cache, "ttl", Duration.ZERO);
+		CertificadoMH certificado = DatosPrueba.certificado(DatosPrueba.NIT, DatosPrueba.PASSWORD);
+
+		assertTrue(cache.verificar(certificado, DatosPrueba.PASSWORD));
+		assertTrue(cache.verificar(certificado, DatosPrueba.PASSWORD));
+		assertEquals(2, hashes.get());
+	}
+}
@@ -0,0 +1,157 @@
+package sv.mh.fe.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.GeneralSecurityException;
+import java.security.SignatureException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import sv.mh.fe.DatosPrueba;
+import sv.mh.fe.security.ContextoFirma;
+import sv.mh.fe.security.Cryptographic;
+
+public class FirmaCacheTest {
+
+	private static ContextoFirma contexto;
+
+	private final AtomicInteger firmas = new AtomicInteger();
+
+	@BeforeAll
+	public static void contexto() throws Exception {
+		contexto = new ContextoFirma(DatosPrueba.rsa().getPrivate(), ContextoFirma.proveedor(ContextoFirma.PROVEEDOR_JDK));
+	}
+
+	@Test
+	public void reintentosSimultaneosEsperanLaMismaFirma() throws Exception {
+		FirmaCache cache = cache(Duration.ofMinutes(10), 100, DataSize.ofMegabytes(1));
+		String clave = cache.clave(DatosPrueba.NIT, "{\"dte\":1}");
+		CountDownLatch firmando = new CountDownLatch(1);
+		CountDownLatch continuar = new CountDownLatch(1);
+
+		ExecutorService hilos = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> resultados = new ArrayList<>();
+			resultados.add(hilos.submit(() -> cache.firmar(clave, contexto, () -> {
+				firmando.countDown();
+				esperar(continuar);
+				return "jws-" + firmas.incrementAndGet();
+			})));
+			// los demás llegan mientras la primera firma sigue en curso
+			assertTrue(firmando.await(10, TimeUnit.SECONDS));
+			for (int i = 0; i < 7; i++) {
+				resultados.add(hilos.submit(() -> cache.firmar(clave, contexto, () -> "jws-" + firmas.incrementAndGet())));
+			}
+			Thread.sleep(100);
+			continuar.countDown();
+			for (Future<String> resultado : resultados) {
+				assertEquals("jws-1", resultado.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			hilos.shutdownNow();
+		}
+		assertEquals(1, firmas.get());
+		assertEquals("jws-1", cache.firmar(clave, contexto, this::firmar));
+		assertEquals(1, firmas.get());
+	}
+
+	@Test
+	public void firmaFallidaNoQuedaEnElCache() throws Exception {
+		FirmaCache cache = cache(Duration.ofMinutes(10), 100, DataSize.ofMegabytes(1));
+		String clave = cache.clave(DatosPrueba.NIT, "{\"dte\":1}");
+
+		assertThrows(SignatureException.class, () -> cache.firmar(clave, contexto, () -> {
+			throw new SignatureException("falla");
+		}));
+		assertEquals(0, cache.size());
+		assertEquals("jws-1", cache.firmar(clave, contexto, this::firmar));
+	}
+
+	@Test
+	public void otroContextoOVentanaVencidaFirmanDeNuevo() throws Exception {
+		FirmaCache cache = cache(Duration.ofMinutes(10), 100, DataSize.ofMegabytes(1));
+		String clave = cache.clave(DatosPrueba.NIT, "{\"dte\":1}");
+		assertEquals("jws-1", cache.firmar(clave, contexto, this::firmar));
+
+		// el certificado del emisor se recargó
+		ContextoFirma nuevo = new ContextoFirma(DatosPrueba.rsa().getPrivate(), contexto.getProveedor());
+		assertEquals("jws-2", cache.firmar(clave, nuevo, this::firmar));
+		assertEquals("jws-2", cache.firmar(clave, nuevo, this::firmar));
+
+		FirmaCache sinVentana = cache(Duration.ZERO, 100, DataSize.ofMegabytes(1));
+		assertEquals("jws-3", sinVentana.firmar(clave, contexto, this::firmar));
+		assertEquals("jws-4", sinVentana.firmar(clave, contexto, this::firmar));
+	}
+
+	@Test
+	public void desalojaPorCantidadYPorBytes() throws Exception {
+		FirmaCache porCantidad = cache(Duration.ofMinutes(10), 10, DataSize.ofMegabytes(1));
+		for (int i = 0; i < 100; i++) {
+			porCantidad.firmar(porCantidad.clave(DatosPrueba.NIT, "{\"dte\":" + i + "}"), contexto, this::firmar);
+			assertTrue(porCantidad.size() <= 10, "entradas: " + porCantidad.size());
+		}
+
+		// cada entrada ocupa más de 1 KB con este JWS
+		String jws = "x".repeat(1024);
+		FirmaCache porBytes = cache(Duration.ofMinutes(10), 10000, DataSize.ofKilobytes(8));
+		for (int i = 0; i < 100; i++) {
+			porBytes.firmar(porBytes.clave(DatosPrueba.NIT, "{\"dte\":" + i + "}"), contexto, () -> jws);
+			assertTrue(porBytes.size() <= 8, "entradas: " + porBytes.size());
+		}
+
+		// la de uso más reciente se conserva
+		String reciente = porBytes.clave(DatosPrueba.NIT, "{\"dte\":99}");
+		assertEquals(jws, porBytes.firmar(reciente, contexto, this::firmar));
+	}
+
+	@Test
+	public void deshabilitadoNoGuarda() throws Exception {
+		FirmaCache cache = cache(Duration.ofMinutes(10), 100, DataSize.ofMegabytes(1));
+		ReflectionTestUtils.setField(cache, "habilitado", false);
+		String clave = cache.clave(DatosPrueba.NIT, "{\"dte\":1}");
+		assertNull(clave);
+		assertEquals("jws-1", cache.firmar(clave, contexto, this::firmar));
+		assertEquals("jws-2", cache.firmar(clave, contexto, this::firmar));
+		assertEquals(0, cache.size());
+	}
+
+	private static void esperar(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String firmar() throws GeneralSecurityException {
+		return "jws-" + firmas.incrementAndGet();
+	}
+
+	private static FirmaCache cache(Duration ventana, int maximo, DataSize memoria) {
+		FirmaCache cache = new FirmaCache();
+		ReflectionTestUtils.setField(cache, "cryptographic", new Cryptographic());
+		ReflectionTestUtils.setField(cache, "metricas", DatosPrueba.metricas());
+		ReflectionTestUtils.setField(cache, "habilitado", true);
+		ReflectionTestUtils.setField(cache, "ventana", ventana);
+		ReflectionTestUtils.setField(cache, "maximo", maximo);
+		ReflectionTestUtils.setField(cache, "memoria", memoria);
+		cache.iniciar();
+		return cache;
+	}
+}
@@ -0,0 +1,145 @@
+package sv.mh.fe.cola;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sv.mh.fe.utils.ResponseBody;
+
+public class DiarioTrabajosTest {
+
+	@TempDir
+	Path directorio;
+
+	@Test
+	public void recuperaPendientesDespuesDeUnaCaida() throws Exception {
+		Path archivo = directorio.resolve("cola/trabajos.ndjson");
+		DiarioTrabajos diario = new DiarioTrabajos(archivo);
+		assertTrue(diario.abrir().isEmpty());
+
+		Trabajo firmado = trabajo("a", Prioridad.NORMAL);
+		Trabajo pendiente = trabajo("b", Prioridad.TIEMPO_REAL);
+		Trabajo otro = trabajo("c", Prioridad.CONTINGENCIA);
+		diario.encolado(firmado);
+		diario.encolado(pendiente);
+		diario.encolado(otro);
+		terminar(firmado);
+		diario.terminado(firmado);
+
+		// el proceso se cae sin cerrar el diario y a media línea
+		Files.writeString(archivo, "{\"tipo\":\"T\",\"id\":\"c\",\"est", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+		DiarioTrabajos reabierto = new DiarioTrabajos(archivo);
+		List<Trabajo> recuperados = new ArrayList<>(reabierto.abrir());
+		assertEquals(List.of("a", "b", "c"), recuperados.stream().map(Trabajo::getId).collect(Collectors.toList()));
+
+		Trabajo a = recuperados.get(0);
+		assertTrue(a.isTerminado());
+		assertEquals(Trabajo.Estado.FIRMADO, a.getEstado());
+		assertEquals("jws-a", a.getResultado().getBody());
+		assertNull(a.getDte());
+
+		Trabajo b = recuperados.get(1);
+		assertFalse(b.isTerminado());
+		assertEquals(Prioridad.TIEMPO_REAL, b.getPrioridad());
+		assertEquals("06141234567890", b.getNit());
+		assertEquals("https://erp.ejemplo.com/firmas", b.getCallback());
+		assertEquals(pendiente.getCreado(), b.getCreado());
+		assertEquals("{\"dte\":\"b\"}", b.getDte());
+
+		// la línea incompleta se descartó: c sigue pendiente
+		assertFalse(recuperados.get(2).isTerminado());
+
+		// como en ColaFirma.iniciar, se compacta antes de escribir: el registro
+		// nuevo no queda pegado a la línea incompleta
+		reabierto.compactar(recuperados);
+		reabierto.encolado(trabajo("d", Prioridad.NORMAL));
+		reabierto.cerrar();
+		assertEquals(List.of("a", "b", "c", "d"), new DiarioTrabajos(archivo).abrir().stream().map(Trabajo::getId)
+				.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void compactarDejaSoloLosVigentes() throws Exception {
+		Path archivo = directorio.resolve("trabajos.ndjson");
+		DiarioTrabajos diario = new DiarioTrabajos(archivo);
+		diario.abrir();
+		Trabajo firmado = trabajo("a", Prioridad.NORMAL);
+		Trabajo pendiente = trabajo("b", Prioridad.NORMAL);
+		Trabajo vencido = trabajo("c", Prioridad.NORMAL);
+		for (Trabajo trabajo : List.of(firmado, pendiente, vencido)) {
+			diario.encolado(trabajo);
+		}
+		terminar(firmado);
+		diario.terminado(firmado);
+		terminar(vencido);
+		diario.terminado(vencido);
+		assertEquals(5, Files.readAllLines(archivo).size());
+
+		// c ya pasó su retención y no se incluye
+		diario.compactar(List.of(firmado, pendiente));
+		assertEquals(3, Files.readAllLines(archivo).size());
+		assertFalse(Files.exists(directorio.resolve("trabajos.ndjson.tmp")));
+
+		// después de compactar se sigue escribiendo en el archivo nuevo
+		terminar(pendiente);
+		diario.terminado(pendiente);
+		diario.cerrar();
+
+		Map<String, Trabajo> leidos = new DiarioTrabajos(archivo).abrir().stream()
+				.collect(Collectors.toMap(Trabajo::getId, Function.identity()));
+		assertEquals(List.of("a", "b"), leidos.keySet().stream().sorted().collect(Collectors.toList()));
+		assertTrue(leidos.get("a").isTerminado());
+		assertTrue(leidos.get("b").isTerminado());
+		assertEquals("jws-b", leidos.get("b").getResultado().getBody());
+	}
+
+	@Test
+	public void compactarOmitePendientesSinDte() throws Exception {
+		Path archivo = directorio.resolve("trabajos.ndjson");
+		DiarioTrabajos diario = new DiarioTrabajos(archivo);
+		diario.abrir();
+		Trabajo sinDte = trabajo("a", Prioridad.NORMAL);
+		sinDte.setDte(null);
+
+		diario.compactar(List.of(sinDte, trabajo("b", Prioridad.NORMAL)));
+		diario.cerrar();
+
+		assertEquals(List.of("b"), new DiarioTrabajos(archivo).abrir().stream().map(Trabajo::getId)
+				.collect(Collectors.toList()));
+	}
+
+	private static Trabajo trabajo(String id, Prioridad prioridad) {
+		Trabajo trabajo = new Trabajo();
+		trabajo.setId(id);
+		trabajo.setNit("06141234567890");
+		trabajo.setPrioridad(prioridad);
+		trabajo.setCallback("https://erp.ejemplo.com/firmas");
+		trabajo.setCreado(System.currentTimeMillis());
+		trabajo.setDte("{\"dte\":\"" + id + "\"}");
+		return trabajo;
+	}
+
+	private static void terminar(Trabajo trabajo) {
+		ResponseBody resultado = new ResponseBody();
+		resultado.setStatus(ResponseBody.status_ok);
+		resultado.setBody("jws-" + trabajo.getId());
+		trabajo.setResultado(resultado);
+		trabajo.setTerminado(System.currentTimeMillis());
+		trabajo.setEstado(Trabajo.Estado.FIRMADO);
+	}
+}
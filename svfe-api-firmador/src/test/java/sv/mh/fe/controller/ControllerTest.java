@@ -0,0 +1,68 @@
+package sv.mh.fe.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sv.mh.fe.DatosPrueba;
+import sv.mh.fe.admision.LimitadorFirmasTest;
+import sv.mh.fe.constantes.Errores;
+import sv.mh.fe.utils.BodyMensaje;
+import sv.mh.fe.utils.Mensaje;
+import sv.mh.fe.utils.ResponseBody;
+
+/**
+ * Respuesta 429 de la admisión: Retry-After en segundos enteros, redondeado
+ * hacia arriba, y sin Retry-After cuando la petición no cabe en la ráfaga.
+ */
+public class ControllerTest {
+
+	@Test
+	public void retryAfterRedondeaHaciaArriba() {
+		// una ficha cada 2 segundos
+		Controller controller = controller(0.5, 2);
+		assertNull(controller.admitir(DatosPrueba.NIT, 2));
+
+		ResponseEntity<?> respuesta = controller.admitir(DatosPrueba.NIT, 1);
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, respuesta.getStatusCode());
+		assertEquals("2", respuesta.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		assertEquals(Errores.COD_815_LIMITE_EXCEDIDO.getCode(), codigo(respuesta));
+
+		// dos fichas: un poco menos de 4 segundos
+		assertEquals("4", controller.admitir(DatosPrueba.NIT, 2).getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+	}
+
+	@Test
+	public void esperaMenorQueUnSegundoPideUnSegundo() {
+		Controller controller = controller(50, 5);
+		assertNull(controller.admitir(DatosPrueba.NIT, 5));
+		assertEquals("1", controller.admitir(DatosPrueba.NIT, 1).getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+	}
+
+	@Test
+	public void loteMayorQueLaRafagaSinRetryAfter() {
+		Controller controller = controller(50, 5);
+		ResponseEntity<?> respuesta = controller.admitir(DatosPrueba.NIT, 6);
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, respuesta.getStatusCode());
+		assertNull(respuesta.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		assertEquals(Errores.COD_817_EXCEDE_RAFAGA.getCode(), codigo(respuesta));
+	}
+
+	private static Controller controller(double tasa, int rafaga) {
+		Mensaje mensaje = new Mensaje();
+		ReflectionTestUtils.setField(mensaje, "metricas", DatosPrueba.metricas());
+		Controller controller = new Controller();
+		controller.mensaje = mensaje;
+		controller.limitador = LimitadorFirmasTest.limitador(tasa, rafaga, 100);
+		return controller;
+	}
+
+	private static String codigo(ResponseEntity<?> respuesta) {
+		return ((BodyMensaje) ((ResponseBody) respuesta.getBody()).getBody()).getCodigo();
+	}
+}
@@ -0,0 +1,25 @@
+package sv.mh.fe.metricas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricasFirmaTest {
+
+	@Test
+	public void bytesUtf8IgualQueGetBytes() {
+		String[] textos = {
+				"",
+				"{\"a\":1}",
+				"{\"nombre\":\"José Peña\",\"direccion\":\"Cañas, San Salvador\"}",
+				"€ 12.50 — áéíóú",
+				"emoji 😀 fin",
+				"suelto \uD800 y \uDC00 al final \uD83D"
+		};
+		for (String texto : textos) {
+			assertEquals(texto.getBytes(StandardCharsets.UTF_8).length, MetricasFirma.bytesUtf8(texto), texto);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package sv.mh.fe.security;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+
+import org.jose4j.jwa.AlgorithmConstraints;
+import org.jose4j.jwa.AlgorithmConstraints.ConstraintType;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.junit.jupiter.api.Test;
+
+import sv.mh.fe.DatosPrueba;
+
+/**
+ * El JWS que arma ContextoFirma llega a Hacienda tal cual: con RS512 debe ser
+ * idéntico byte a byte al de jose4j, y con los demás algoritmos jose4j debe
+ * verificarlo.
+ */
+public class ContextoFirmaTest {
+
+	private static final String[] PAYLOADS = {
+			"{\"identificacion\":{\"version\":1,\"tipoDte\":\"01\"}}",
+			"{\"nombre\":\"José Peña\",\"direccion\":\"Cañas — San Salvador\",\"emoji\":\"😀\"}",
+			""
+	};
+
+	@Test
+	public void rs512IgualQueJose4j() throws Exception {
+		KeyPair par = DatosPrueba.rsa();
+		for (String nombre : new String[] { ContextoFirma.PROVEEDOR_JDK, ContextoFirma.PROVEEDOR_BC }) {
+			ContextoFirma contexto = new ContextoFirma(par.getPrivate(), ContextoFirma.proveedor(nombre));
+			assertEquals(AlgoritmoFirma.RS512, contexto.getAlgoritmo());
+			for (String payload : PAYLOADS) {
+				String esperado = jose4j(par, payload);
+				assertEquals(esperado, contexto.firmar(payload), nombre);
+				// el contexto reutiliza la Signature del pool: la segunda firma también debe coincidir
+				assertEquals(esperado, contexto.firmar(payload), nombre);
+				assertArrayEquals(esperado.getBytes(StandardCharsets.US_ASCII),
+						contexto.firmar(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8))), nombre);
+			}
+		}
+	}
+
+	@Test
+	public void ps512VerificaConJose4j() throws Exception {
+		verificar(AlgoritmoFirma.PS512.generarLlaves(), AlgoritmoFirma.PS512, AlgorithmIdentifiers.RSA_PSS_USING_SHA512);
+	}
+
+	@Test
+	public void es256VerificaConJose4j() throws Exception {
+		verificar(DatosPrueba.ec("secp256r1"), AlgoritmoFirma.ES256, AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256);
+	}
+
+	@Test
+	public void es384VerificaConJose4j() throws Exception {
+		verificar(DatosPrueba.ec("secp384r1"), AlgoritmoFirma.ES384, AlgorithmIdentifiers.ECDSA_USING_P384_CURVE_AND_SHA384);
+	}
+
+	private void verificar(KeyPair par, AlgoritmoFirma algoritmo, String identificador) throws Exception {
+		assertEquals(identificador, algoritmo.getJws());
+		for (String nombre : new String[] { ContextoFirma.PROVEEDOR_JDK, ContextoFirma.PROVEEDOR_BC }) {
+			ContextoFirma contexto = new ContextoFirma(par.getPrivate(), ContextoFirma.proveedor(nombre));
+			assertEquals(algoritmo, contexto.getAlgoritmo(), nombre);
+			for (String payload : PAYLOADS) {
+				for (String firma : new String[] { contexto.firmar(payload), new String(
+						contexto.firmar(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8))), StandardCharsets.US_ASCII) }) {
+					JsonWebSignature jws = new JsonWebSignature();
+					jws.setAlgorithmConstraints(new AlgorithmConstraints(ConstraintType.WHITELIST, identificador));
+					jws.setCompactSerialization(firma);
+					jws.setKey(par.getPublic());
+					assertTrue(jws.verifySignature(), nombre + " " + algoritmo);
+					assertEquals(payload, jws.getPayload());
+					assertEquals(identificador, jws.getAlgorithmHeaderValue());
+				}
+			}
+		}
+	}
+
+	private static String jose4j(KeyPair par, String payload) throws Exception {
+		JsonWebSignature jws = new JsonWebSignature();
+		jws.setPayload(payload);
+		jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA512);
+		jws.setKey(par.getPrivate());
+		return jws.getCompactSerialization();
+	}
+}
@@ -0,0 +1,135 @@
+package sv.mh.fe.validations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import sv.mh.fe.filter.FirmarDocumentoFilter;
+import sv.mh.fe.filter.FirmarLoteFilter;
+import sv.mh.fe.filter.FirmarTrabajoFilter;
+
+/**
+ * Un solo FirmarDocumentoValidations se comparte entre todas las peticiones;
+ * estas pruebas verifican que el resultado de una llamada no se mezcla con el de
+ * otra que corre al mismo tiempo.
+ */
+public class FirmarDocumentoValidationsTest {
+
+	private static final String NIT = "06141234567890";
+
+	private static final int HILOS = 16;
+
+	private static final int ITERACIONES = 5000;
+
+	private final FirmarDocumentoValidations validation = new FirmarDocumentoValidations();
+
+	@Test
+	public void validoDevuelveResultadoCompartidoInmutable() {
+		ResultadoValidacion resultado = validation.v5validar(documento(NIT, "secreto"));
+		assertSame(ResultadoValidacion.VALIDO, resultado);
+		assertThrows(UnsupportedOperationException.class, () -> resultado.getRequeridos().add("x"));
+	}
+
+	@Test
+	public void invalidoNoSePuedeModificar() {
+		ResultadoValidacion resultado = validation.v5validar(documento("123", null));
+		assertThrows(UnsupportedOperationException.class, () -> resultado.getRequeridos().clear());
+	}
+
+	@Test
+	public void resultadosNoSeMezclanEntreHilos() throws Exception {
+		List<Caso> casos = List.of(
+				new Caso(() -> validation.v5validar(documento(NIT, "secreto")), Collections.emptyList()),
+				new Caso(() -> validation.v5validar(documento("0614", null)),
+						List.of(AbstractValidations.REQ_NIT_FORMATO, AbstractValidations.REQ_CLAVE_PRIVADA)),
+				new Caso(() -> validation.v6validar(lote(null, 3), 2),
+						List.of(AbstractValidations.REQ_NIT, AbstractValidations.REQ_JSON_DTE_LOTE_MAXIMO + 2)),
+				new Caso(() -> validation.v9validar(trabajo()),
+						List.of(AbstractValidations.REQ_JSON_DTE, AbstractValidations.REQ_CLAVE_PRIVADA,
+								AbstractValidations.REQ_PRIORIDAD, AbstractValidations.REQ_CALLBACK)));
+
+		ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+		CountDownLatch inicio = new CountDownLatch(1);
+		List<Future<Integer>> tareas = new ArrayList<>(HILOS);
+		try {
+			for (int h = 0; h < HILOS; h++) {
+				int desfase = h;
+				tareas.add(hilos.submit(() -> {
+					inicio.await();
+					int errores = 0;
+					for (int i = 0; i < ITERACIONES; i++) {
+						// cada hilo recorre los casos en otro orden para que se crucen
+						Caso caso = casos.get((i + desfase) % casos.size());
+						ResultadoValidacion resultado = caso.validar.get();
+						if (resultado.isValido() != caso.esperado.isEmpty()
+								|| !resultado.getRequeridos().equals(caso.esperado)) {
+							errores++;
+						}
+					}
+					return errores;
+				}));
+			}
+			inicio.countDown();
+			int errores = 0;
+			for (Future<Integer> tarea : tareas) {
+				errores += tarea.get(60, TimeUnit.SECONDS);
+			}
+			assertEquals(0, errores, "resultados mezclados entre hilos");
+		} finally {
+			hilos.shutdownNow();
+			assertTrue(hilos.awaitTermination(10, TimeUnit.SECONDS));
+		}
+	}
+
+	private static FirmarDocumentoFilter documento(String nit, String password) {
+		FirmarDocumentoFilter filter = new FirmarDocumentoFilter();
+		filter.setNit(nit);
+		filter.setPasswordPri(password);
+		filter.setDteJson(Map.of("a", 1));
+		return filter;
+	}
+
+	private static FirmarLoteFilter lote(String nit, int documentos) {
+		FirmarLoteFilter filter = new FirmarLoteFilter();
+		filter.setNit(nit);
+		filter.setPasswordPri("secreto");
+		List<Object> dtes = new ArrayList<>();
+		for (int i = 0; i < documentos; i++) {
+			dtes.add(Map.of("a", i));
+		}
+		filter.setDteJsons(dtes);
+		return filter;
+	}
+
+	private static FirmarTrabajoFilter trabajo() {
+		FirmarTrabajoFilter filter = new FirmarTrabajoFilter();
+		filter.setNit(NIT);
+		filter.setPrioridad("URGENTE");
+		filter.setCallback("ftp://erp/firmas");
+		return filter;
+	}
+
+	private static final class Caso {
+		final Supplier<ResultadoValidacion> validar;
+		final List<String> esperado;
+
+		Caso(Supplier<ResultadoValidacion> validar, List<String> esperado) {
+			this.validar = validar;
+			this.esperado = esperado;
+		}
+	}
+}